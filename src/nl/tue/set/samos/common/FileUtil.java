@@ -32,12 +32,15 @@ import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Vector;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import nl.tue.set.samos.extract.FragmentHierarchy.ComposedFragment;
 import nl.tue.set.samos.feature.NTreeApted;
+import nl.tue.set.samos.feature.corpus.FeatureCorpus;
 import nl.tue.set.samos.feature.parser.JSONParser;
 
 public class FileUtil {
@@ -65,6 +68,8 @@ public class FileUtil {
 			finalSize = size - featureCount + 1;
 		else if (unit.equals("BIGRAM"))
 			finalSize = size + 1; // featureCount + 1 also
+		else if (unit.equals("TRIGRAM"))
+			finalSize = size + 2; // featureCount + 2 also
 		else if (unit.equals("UNIGRAM"))
 			finalSize = size; // featureCount also
 		if (size != finalSize) {
@@ -78,17 +83,26 @@ public class FileUtil {
 	}
 	
 	public static void printFeatureSizes(String featureFolder, String targetFolder, String unit){
-		File dir = new File(featureFolder);
-		File[] files = dir.listFiles();
-		
 		Vector<Integer> sizeVector = new Vector<Integer>();
-				
-		for (File file: files){
-			if (file.isFile()) {
-				if (file.getName().equals(DS_STORE)) continue;
-				if (!file.getName().endsWith(".features")) continue;	
-							
-				sizeVector.add(getSize(file, unit));													
+		
+		// the corpus already has the sizes computed during extraction, in the order of the feature file names
+		FeatureCorpus corpus = openCorpus(featureFolder);
+		if (corpus != null) {
+			for (int i=0; i<corpus.size(); i++)
+				sizeVector.add(corpus.getFragmentSize(i));
+		} else {
+			File dir = new File(featureFolder);
+			File[] files = dir.listFiles();
+			// in the order of the names in names.csv, as for the corpus
+			Arrays.sort(files, (f1, f2) -> f1.getName().compareTo(f2.getName()));
+					
+			for (File file: files){
+				if (file.isFile()) {
+					if (file.getName().equals(DS_STORE)) continue;
+					if (!file.getName().endsWith(".features")) continue;	
+								
+					sizeVector.add(getSize(file, unit));													
+				}
 			}
 		}
 		
@@ -115,18 +129,66 @@ public class FileUtil {
 	}
 	
 
+	// sizes of the fragments composed from a hierarchical extraction, as printFeatureSizes 
+	public static void printFeatureSizes(List<ComposedFragment> fragments, String targetFolder){
+		try {
+			FileWriter fr = new FileWriter(new File(targetFolder + "/sizes.csv"));
+			for (ComposedFragment fragment : fragments)
+				fr.write(fragment.size + "\n");
+			fr.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	// the feature corpus in the folder, or null if there is none or it cannot be read
+	private static FeatureCorpus openCorpus(String featureFolder) {
+		try {
+			return FeatureCorpus.open(featureFolder);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
 	public static final String FILE_EXTENSION = ".ecore";
 	public static final int PREFIX_SIZE = 0;
 	public static void printFilenameList(String featurePath, String outputPath){
 		printFilenameList(featurePath, outputPath, FILE_EXTENSION, PREFIX_SIZE);
 	}
 	
+	// names of the fragments composed from a hierarchical extraction, as printFilenameList 
+	public static void printFilenameList(List<ComposedFragment> fragments, String outputPath){
+		try {
+			FileWriter fr = new FileWriter(new File(outputPath + "/names.csv"));
+			for (ComposedFragment fragment : fragments)
+				fr.write(fragment.name + "\n");
+			fr.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
 	public static void printFilenameList(String featurePath, String outputPath, String fileExtension, int prefixSize){
 		try{
 			File folder = new File(featurePath);
 
 			File output = new File(outputPath + "/names.csv");
 			FileWriter fr = new FileWriter(output);
+			
+			// the feature files may not be written, take the names of the fragments in the corpus instead
+			FeatureCorpus corpus = fileExtension.equals(Constants.featureFileSuffix) ? openCorpus(featurePath) : null;
+			if (corpus != null) {
+				logger.info("fragments in the feature corpus: " + corpus.size());
+				for (int i=0; i<corpus.size(); i++){
+					String name = corpus.getName(i) + fileExtension;
+					name = name.substring(prefixSize, name.length()-(fileExtension.length()));
+					fr.write(name);
+					fr.write("\n");
+				}
+				fr.close();
+				return;
+			}
 
 			File[] files = folder.listFiles(new FilenameFilter(){
 				@Override
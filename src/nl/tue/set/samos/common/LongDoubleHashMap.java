@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.common;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive long keys to primitive double values, with open addressing (linear probing) in two parallel arrays. 
+ * A lookup is a single probe sequence without any boxing or allocation. Not thread-safe.
+ */
+public class LongDoubleHashMap {
+	// marks a free slot; a real Long.MIN_VALUE key is stored separately
+	private static final long FREE = Long.MIN_VALUE;
+	private static final double MAX_LOAD = 0.5;
+	
+	private long[] keys;
+	private double[] values;
+	private int size = 0;
+	private boolean hasFreeKey = false;
+	private double freeKeyValue;
+	
+	public LongDoubleHashMap() {
+		this(1024);
+	}
+	
+	public LongDoubleHashMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+		keys = new long[capacity];
+		values = new double[capacity];
+		Arrays.fill(keys, FREE);
+	}
+	
+	// the value for the key, or missing if there is none
+	public double get(long key, double missing) {
+		if (key == FREE)
+			return hasFreeKey ? freeKeyValue : missing;
+		int mask = keys.length - 1;
+		for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+			if (keys[slot] == key)
+				return values[slot];
+			if (keys[slot] == FREE)
+				return missing;
+		}
+	}
+	
+	public void put(long key, double value) {
+		if (key == FREE) {
+			if (!hasFreeKey)
+				size++;
+			hasFreeKey = true;
+			freeKeyValue = value;
+			return;
+		}
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while (keys[slot] != FREE && keys[slot] != key)
+			slot = (slot + 1) & mask;
+		if (keys[slot] == FREE) {
+			keys[slot] = key;
+			if (++size > keys.length * MAX_LOAD) {
+				values[slot] = value;
+				grow();
+				return;
+			}
+		}
+		values[slot] = value;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public void clear() {
+		Arrays.fill(keys, FREE);
+		size = 0;
+		hasFreeKey = false;
+	}
+	
+	private void grow() {
+		long[] oldKeys = keys;
+		double[] oldValues = values;
+		keys = new long[2 * oldKeys.length];
+		values = new double[2 * oldValues.length];
+		Arrays.fill(keys, FREE);
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] == FREE)
+				continue;
+			int slot = hash(oldKeys[i]) & mask;
+			while (keys[slot] != FREE)
+				slot = (slot + 1) & mask;
+			keys[slot] = oldKeys[i];
+			values[slot] = oldValues[i];
+		}
+	}
+	
+	// fibonacci hashing, spreading the high and low bits of the key over the table
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
@@ -32,6 +32,7 @@ import nl.tue.set.samos.common.enums.EXTRACT_STR;
 import nl.tue.set.samos.common.enums.FREQ;
 import nl.tue.set.samos.common.enums.IDF;
 import nl.tue.set.samos.common.enums.NGRAM_CMP;
+import nl.tue.set.samos.common.enums.SCOPE;
 import nl.tue.set.samos.common.enums.STRUCTURE;
 import nl.tue.set.samos.common.enums.SYNONYM;
 import nl.tue.set.samos.common.enums.SYNONYM_TRESHOLD;
@@ -54,6 +55,9 @@ public class Parameters {
 	public FREQ _FREQ;
 	
 	public VSM_MODE _VSM_MODE;
+	
+	// scope of the fragments to compose from a hierarchical extraction (see FragmentHierarchy), null to take the fragments as extracted
+	public SCOPE _SCOPE;
 
 	public Parameters(EXTRACT_STR _EXTRACT_STR, UNIT _UNIT, STRUCTURE _STRUCTURE, WEIGHT _WEIGHT, IDF _IDF,
 			TYPE_MATCH _TYPE_MATCH, SYNONYM _SYNONYM, SYNONYM_TRESHOLD _SYNONYM_TRESHOLD,
@@ -27,5 +27,7 @@
 package nl.tue.set.samos.common.enums;
 
 public enum SCOPE {
-	MODEL, EPACKAGE, ECLASS
+	MODEL, EPACKAGE, ECLASS, 
+	// the finest fragments along with their containment hierarchy, from which the fragments of the other scopes are composed (see FragmentHierarchy)
+	HIERARCHY
 }
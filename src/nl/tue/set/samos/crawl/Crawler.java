@@ -88,8 +88,13 @@ public class Crawler {
 	
 	// crawl target dataset (zenodo or atl zoo at the moment) and store it in the target folder under project root's data folder.  
 	public static void crawl(String targetFolder, String urlPattern) throws MalformedURLException, IOException {
+		crawl(targetFolder, urlPattern, true);
+	}
+	
+	// unpackArchives: false keeps the downloaded zenodo zip file as data/<target>.zip instead of unpacking it, it can be used as the data input directly
+	public static void crawl(String targetFolder, String urlPattern, boolean unpackArchives) throws MalformedURLException, IOException {
 			if (targetFolder.equals("zenodo"))				
-				crawlZenodo(targetFolder, urlPattern);
+				crawlZenodo(targetFolder, urlPattern, unpackArchives);
 			else if (targetFolder.equals("atlzoo"))
 				crawlATLZoo(targetFolder, urlPattern);
 			else
@@ -109,6 +114,16 @@ public class Crawler {
 	
 	// crawls the target zenodo zip file and unzips it 
 	public static void crawlZenodo(String targetFolder, String urlPattern) throws MalformedURLException, IOException{
+		crawlZenodo(targetFolder, urlPattern, true);
+	}
+	
+	// crawls the target zenodo zip file, and unzips it if unpackArchives is set
+	public static void crawlZenodo(String targetFolder, String urlPattern, boolean unpackArchives) throws MalformedURLException, IOException{
+		if (!unpackArchives) {
+			FileUtils.copyURLToFile(new URL(urlPattern), new File("data/" + targetFolder.replaceAll("/+$", "") + ".zip"));
+			return;
+		}
+		
 		if (!targetFolder.endsWith("/")) targetFolder += "/";
 		
 		String path = urlPattern;
@@ -26,22 +26,17 @@
 
 package nl.tue.set.samos.extract;
 
-import java.io.File;
-import java.time.Duration;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 import org.eclipse.emf.common.util.EList;
-import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EAnnotation;
 import org.eclipse.emf.ecore.EAttribute;
 import org.eclipse.emf.ecore.EClass;
@@ -59,49 +54,64 @@ import org.eclipse.emf.ecore.ETypeParameter;
 import org.eclipse.emf.ecore.ETypedElement;
 import org.eclipse.emf.ecore.EcoreFactory;
 import org.eclipse.emf.ecore.resource.Resource;
-import org.eclipse.emf.ecore.resource.ResourceSet;
-import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
-import org.eclipse.emf.ecore.util.EcoreUtil;
-import org.eclipse.emf.ecore.xmi.impl.EcoreResourceFactoryImpl;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
 import nl.tue.set.samos.common.Constants;
 import nl.tue.set.samos.common.Pair;
 import nl.tue.set.samos.common.Util;
+import nl.tue.set.samos.common.enums.SCOPE;
 import nl.tue.set.samos.common.enums.STRUCTURE;
 import nl.tue.set.samos.common.enums.UNIT;
 /**
  * This is the main basic feature extractor for Ecore metamodels. It iterates over a given metamodel and extracts features according to the given configuration.
  * 
- *  scope	[MODEL | EPACKAGE | ECLASS] the scope/granularity of feature extraction
+ *  scope	[MODEL | EPACKAGE | ECLASS | HIERARCHY] the scope/granularity of feature extraction, or all of them at once (see FragmentHierarchy)
  * 
  *  unit	[NAME | ATTRIBUTED] the unit of extraction per model element
  *  
- *  structure [UNIGRAM | BIGRAM | NTREE] the structure of the extracted features
+ *  structure [UNIGRAM | BIGRAM | TRIGRAM | NTREE] the structure of the extracted features
 */
 public class EcoreExtractorImpl extends IExtractor {
 
 	final Logger logger = LoggerFactory.getLogger(EcoreExtractorImpl.class);	
 	
+	final EcoreModelLoader loader = new EcoreModelLoader();
+
+	// shared by all the extractors, the generators created from it write the JSON features directly without an intermediate object tree
+	static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	@Override
+	// the loaded resources are kept until all the features of the file are extracted, and unloaded afterwards
+	public void process(ModelInput input, SCOPE _SCOPE, UNIT[] units, STRUCTURE[] structures, FeatureSink[] sinks) {
+		try {
+			super.process(input, _SCOPE, units, structures, sinks);
+		} finally {
+			loader.unload();
+		}
+	}
+	
 	@Override
 	// iterates over the containment tree of a metamodel and returns all model elements of a certain type
-	public List<Object> getAllContainedObjectsByType(File f, String scope) {	
+	public List<Object> getAllContainedObjectsByType(ModelInput input, String scope) {	
 		try {			
-			Resource metamodel_resource;
-			ResourceSet resourceSet = new ResourceSetImpl();
-			resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("*", 
-					new EcoreResourceFactoryImpl());
-
-			metamodel_resource = resourceSet.getResource(
-					URI.createFileURI(f.getAbsolutePath()),true);
+			loader.setCacheFolder(MODEL_CACHE_FOLDER);
+			Resource metamodel_resource = loader.load(input);
 
 			List<EObject> objects = new ArrayList<EObject>();
 			
 			EList<EObject> topContents = metamodel_resource.getContents();		
 			for(EObject o: topContents)
-				getAllEObjects(o, objects);
+				if (!getAllEObjects(o, objects)) {
+					logger.warn("stopped reading " + input.getPath() + " after " + MAX_ELEMENTS_PER_MODEL + " elements");
+					break;
+				}
+			
+			if (PREPROCESS_LEMMATIZE)
+				prefetchLemmas(objects);
 			
 			List<Object> results = new ArrayList<Object>();
 			for (EObject eo : objects) {
@@ -110,26 +120,36 @@ public class EcoreExtractorImpl extends IExtractor {
 			}
 			return results;
 		} catch (Exception ex) {
-			logger.error("Could not process " + f.getAbsolutePath());
+			logger.error("Could not process " + input.getPath());
 			ex.printStackTrace();
 		} catch (Error er) {
-			logger.error("Could not process " + f.getAbsolutePath());
+			logger.error("Could not process " + input.getPath());
 			er.printStackTrace();
 		}
 		
 		return null;
 	}
 	
-	// recursively find all the EObjects in a model and accumulate them in a list. 
-	public void getAllEObjects(EObject object, List<EObject> objects){		
-		// filter
-		if (isFiltered(object))
-			return;
-		
-		objects.add(object);
-		List<Object> topContents = getNextElements(object);
-		for (Object o: topContents)
-			getAllEObjects((EObject)o, objects);
+	// lemmatize the names of all the named elements of a model in one go, instead of one by one during the extraction
+	private void prefetchLemmas(List<EObject> objects) {
+		List<String> names = new ArrayList<String>();
+		for (EObject eo : objects)
+			if (eo instanceof ENamedElement)
+				names.add(((ENamedElement) eo).getName());
+		nlp.prefetchLemmas(names, PREPROCESS_TOKENIZE);
+	}
+	
+	// find all the EObjects in a model in preorder and accumulate them in a list, within the element budget. 
+	// iterative (see ModelTraversal), returns false if the budget is exhausted
+	public boolean getAllEObjects(EObject object, List<EObject> objects){		
+		int budget = MAX_ELEMENTS_PER_MODEL - objects.size();
+		if (MAX_ELEMENTS_PER_MODEL > 0 && budget <= 0)
+			return false;
+		// the filtered elements have no next elements, so their contents are skipped as well
+		return ModelTraversal.preorder((Object) object, this::getNextElements, budget, o -> {
+			if (!isFiltered(o))
+				objects.add((EObject) o);
+		});
 	}
 	
 	// at the moment filtering these three types for clustering and clone detection purposes. 
@@ -160,6 +180,31 @@ public class EcoreExtractorImpl extends IExtractor {
 		return null;
 	}
 
+	@Override
+	// for trees, the size is known from the number of children, so there is no need to parse the generated feature. 
+	// the trigrams are handed over to the sink as they are enumerated, rather than collected first 
+	public void extractFeatures(Object object, UNIT _UNIT, STRUCTURE _STRUCTURE, FeatureSink sink) {
+		if (_STRUCTURE == STRUCTURE.TRIGRAM && !PREPROCESS_TOKENIZE) {
+			if (!isFiltered(object) && object instanceof ENamedElement)
+				generatePathFeatures((EObject) object, _UNIT, 3, feature -> sink.feature(feature, 1));
+			return;
+		}
+		if (_STRUCTURE != STRUCTURE.NTREE || PREPROCESS_TOKENIZE) {
+			super.extractFeatures(object, _UNIT, _STRUCTURE, sink);
+			return;
+		}
+		
+		// filter
+		if (isFiltered(object) || !(object instanceof ENamedElement))
+			return;
+		
+		// workaround with timeout in case we have resolving problems etc.			
+		Pair<String, Integer> tree = ExtractionTimeout.getInstance().call(
+				() -> generateTreeFromChildren((EObject) object, _UNIT));
+		if (tree != null)
+			sink.feature(tree.x, tree.y);
+	}
+
 	@Override
 	// get all the directly connected elements in the metamodel structure
 	public List<Object> getNextElements(Object object) {
@@ -205,31 +250,13 @@ public class EcoreExtractorImpl extends IExtractor {
 				}
 				return results;
 				
+		} else if (_STRUCTURE == STRUCTURE.TRIGRAM) {
+			generatePathFeatures(object, _UNIT, 3, results::add);
+			return results;
 		} else { // NTREE
 			// workaround with timeout in case we have resolving problems etc.			
-			String result = null;
-			{
-				final Duration timeout = Duration.ofSeconds(10);
-				ExecutorService executor = Executors.newSingleThreadExecutor();
-				final Future<String> handler = executor.submit(new Callable<String>() {
-				    @Override
-				    public String call() throws Exception {
-				        return (String) generateFeatureFromChildren(object, _UNIT, Util.isJSON(_STRUCTURE));
-				    }
-				});
-
-				try {
-					result = handler.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
-				} catch (TimeoutException e) {
-					e.printStackTrace();
-				    handler.cancel(true);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				} catch (ExecutionException e) {
-					e.printStackTrace();
-				}
-				executor.shutdownNow();
-			}
+			String result = ExtractionTimeout.getInstance().call(
+					() -> generateFeatureFromChildren(object, _UNIT, Util.isJSON(_STRUCTURE)));
 
 			if (result != null) {
 				String[] splits = result.split("\n");
@@ -239,12 +266,22 @@ public class EcoreExtractorImpl extends IExtractor {
 		}
 	}
 
+	// get the type of a typed element. Proxies into other resources are only resolved if RESOLVE_PROXIES is set (guarded with a timeout)  
+	public EClassifier getEType(ETypedElement typed) {
+		if (!RESOLVE_PROXIES)
+			return ProxyNameResolver.getEType(typed);
+		if (typed instanceof EReference && ((EReference)typed).isResolveProxies())
+			return ExtractionTimeout.getInstance().call(() -> typed.getEType());
+		return typed.getEType();
+	}
+
 	// get the supertypes of a given EClass instance 
 	public List<EClass> getSupertypes(EObject object) {
 		List<EClass> supertypes = new ArrayList<EClass>();
 		if (object instanceof EClass){
-			if (((EClass)object).getESuperTypes().size() > 0) {			
-				for (EClass superClass: ((EClass)object).getESuperTypes()){			
+			List<EClass> superTypes = RESOLVE_PROXIES?((EClass)object).getESuperTypes():ProxyNameResolver.getESuperTypes((EClass)object);
+			if (superTypes.size() > 0) {			
+				for (EClass superClass: superTypes){			
 					// need to check for cycles, also checking max parent size FIXME
 					// this is also wrong because just checking parent NODES, not edges!!! 		
 //					boolean hasSuperClass = false;
@@ -253,10 +290,9 @@ public class EcoreExtractorImpl extends IExtractor {
 						String superClassName = superClass.getName();					
 						// if no real name, try to get it from proxy uri
 						if (superClassName == null || superClassName.equals("")) {
-							String[] tokens = EcoreUtil.getURI(superClass).toString().split("//"); 
-							superClassName = tokens[tokens.length-1];
+							superClassName = ProxyNameResolver.getName(superClass);
 							if (superClassName == null || superClassName.equals("")) // if the above didn't help
-								logger.debug("Despite the workaround, NULL type for " + ((ETypedElement)object).getEType());
+								logger.debug("Despite the workaround, NULL supertype for " + ((EClass)object).getName());
 							else { // replace the child with a dummy EClass
 								EClass dummyClass = EcoreFactory.eINSTANCE.createEClass();
 								dummyClass.setName(superClassName);
@@ -303,8 +339,9 @@ public class EcoreExtractorImpl extends IExtractor {
 		// add EExceptions thrown for EOperation 
 		if (object instanceof EOperation){
 			EOperation op = (EOperation) object;
-			if (op.getEExceptions().size() > 0) {
-				for (EClassifier ec : op.getEExceptions()) {
+			List<EClassifier> exceptions = RESOLVE_PROXIES?op.getEExceptions():ProxyNameResolver.getEExceptions(op);
+			if (exceptions.size() > 0) {
+				for (EClassifier ec : exceptions) {
 					children.x.add(ec);
 					children.y.add(Constants.THROWS);	
 				}
@@ -316,49 +353,100 @@ public class EcoreExtractorImpl extends IExtractor {
 	
 	// generate structural features from a given model element. Can output plain text or JSON
 	public String generateFeatureFromChildren(EObject object, UNIT _UNIT, boolean isJSON) {
+		if (isJSON) {
+			Pair<String, Integer> tree = generateTreeFromChildren(object, _UNIT);
+			return (tree == null ? null : tree.x);
+		}
+		
 		StringBuffer buffer = new StringBuffer();
 		Pair<List<Object>, List<String>> children = getNextElementsWithEdges(object);
-		HashMap<String, ArrayList<JSONObject>> JSONMap = new HashMap<String, ArrayList<JSONObject>>();
 		for (int i=0; i<children.x.size(); i++){
-			if(!isJSON) {
-				buffer.append(Constants.NG)
-					.append(generateSimpleFeature(object, _UNIT, isJSON))
-					.append(Constants.NGRAM_SEP)
-					.append((String) Util.generateSimpleType(children.y.get(i), false))
-					.append(Constants.NGRAM_SEP)
-					.append((String) generateSimpleFeature((EObject)children.x.get(i), _UNIT, false))
-					.append("\n");
-			} else {		
-				String key = children.y.get(i);
-				if (!JSONMap.containsKey(key))
-					JSONMap.put(key, new ArrayList<JSONObject>());
-				JSONMap.get(key).add(Util.createJSONNode(generateSimpleFeature((EObject)children.x.get(i), _UNIT, true)));	
+			buffer.append(Constants.NG)
+				.append(generateSimpleFeature(object, _UNIT, isJSON))
+				.append(Constants.NGRAM_SEP)
+				.append((String) Util.generateSimpleType(children.y.get(i), false))
+				.append(Constants.NGRAM_SEP)
+				.append((String) generateSimpleFeature((EObject)children.x.get(i), _UNIT, false))
+				.append("\n");
+		}
+		
+		String result = buffer.toString();
+		// prune the last newline, if ngrams
+		if (result != null) {
+			if (result.equals(""))
+				result = null;
+			else if (result.endsWith("\n"))
+				result = result.substring(0, result.length()-1);
+		}
+		return result;
+	}
+	
+	// generate the n-gram features for the paths of n elements starting from a given model element, e.g. for trigrams
+	// [NG] element; [ST] edge; next element; [ST] edge; last element. The paths are enumerated lazily and bounded by the path caps
+	public void generatePathFeatures(EObject object, UNIT _UNIT, int n, Consumer<String> consumer) {
+		// the simple features of the elements are shared by many paths, so they are generated once per element
+		IdentityHashMap<Object, String> simpleFeatures = new IdentityHashMap<Object, String>();
+		StringBuilder feature = new StringBuilder();
+		NPathEnumerator enumerator = new NPathEnumerator(n, MAX_PATH_FANOUT, MAX_PATHS_PER_ELEMENT, 
+				node -> getNextElementsWithEdges((EObject) node));
+		enumerator.enumerate(object, (nodes, edges) -> {
+			feature.setLength(0);
+			feature.append(Constants.NG);
+			for (int i=0; i<nodes.length; i++) {
+				if (i > 0)
+					feature.append(Constants.NGRAM_SEP)
+						.append((String) Util.generateSimpleType(edges[i-1], false))
+						.append(Constants.NGRAM_SEP);
+				feature.append(simpleFeatures.computeIfAbsent(nodes[i], node -> (String) generateSimpleFeature((EObject) node, _UNIT, false)));
 			}
+			consumer.accept(feature.toString());
+		});
+	}
+	
+	// generate the JSON tree feature from a given model element and its children, along with the size of the tree.
+	// the tree is streamed in the merged form, i.e. each child carries its edge label, so the parser does not need to fold the edge nodes 
+	public Pair<String, Integer> generateTreeFromChildren(EObject object, UNIT _UNIT) {
+		Pair<List<Object>, List<String>> children = getNextElementsWithEdges(object);
+		// if production failed (somehow), return null
+		if (children.x.size() == 0)
+			return null;
+		
+		// group the children by edge, keeping the order of the groups as in the unmerged tree
+		HashMap<String, ArrayList<Object>> groups = new HashMap<String, ArrayList<Object>>();
+		for (int i=0; i<children.x.size(); i++){
+			String key = children.y.get(i);
+			if (!groups.containsKey(key))
+				groups.put(key, new ArrayList<Object>());
+			groups.get(key).add(children.x.get(i));	
 		}
 		
-		// for JSON, convert the hashmap objects into JSON
-		if (isJSON) {
-			ArrayList<JSONObject> topContents = new ArrayList<JSONObject>();
-			for (String key: JSONMap.keySet()) 
-				topContents.add(Util.createJSONNode(Util.generateSimpleType(Constants.CONTAINS, true), JSONMap.get(key).toArray()));
-			
-			// if production failed (somehow), return null
-			if (topContents.size() == 0) 
-				return null;
-			
-			JSONObject finalObject = Util.createJSONNode(generateSimpleFeature(object, _UNIT, true), topContents.toArray());
-			return finalObject.toString();
-		} else {				
-			String result = buffer.toString();
-			// prune the last newline, if ngrams
-			if (result != null) {
-				if (result.equals(""))
-					result = null;
-				else if (result.endsWith("\n"))
-					result = result.substring(0, result.length()-1);
+		StringWriter writer = new StringWriter();
+		try (JsonGenerator json = JSON_FACTORY.createGenerator(writer)) {
+			json.writeStartObject();
+			json.writeStringField("ftype", "MergedNTree");
+			json.writeObjectFieldStart("node");
+			generateSimpleFeature(object, _UNIT, json);
+			json.writeEndObject();
+			json.writeArrayFieldStart("contents");
+			for (ArrayList<Object> group : groups.values()) {
+				for (Object child : group) {
+					json.writeStartObject();
+					// all the edge groups are labelled as containment
+					json.writeStringField("edge", Constants.CONTAINS);
+					json.writeObjectFieldStart("node");
+					generateSimpleFeature((EObject) child, _UNIT, json);
+					json.writeEndObject();
+					json.writeEndObject();
+				}
 			}
-			return result;
-		}		
+			json.writeEndArray();
+			json.writeEndObject();
+		} catch (IOException | UncheckedIOException e) {
+			logger.error("could not generate the tree feature for " + getName(object));
+			return null;
+		}
+		// every child counts in the tree size (see NTreeApted.size)
+		return new Pair<String, Integer>(writer.toString(), 1 + children.x.size());
 	}
 
 	public ArrayList<String> generateFeaturesExpand(EObject object, UNIT _UNIT, STRUCTURE _STRUCTURE){		
@@ -371,45 +459,39 @@ public class EcoreExtractorImpl extends IExtractor {
 
 	// generate a simple feature (i.e. unigram) given a model element. can output plain text or json.
 	public Object generateSimpleFeature(EObject object, UNIT _UNIT, boolean isJSON){		
-		JSONObject obj = null;
+		if (!isJSON)
+			return generateSimpleFeature(object, _UNIT, (JsonGenerator) null);
+		
+		StringWriter writer = new StringWriter();
+		try (JsonGenerator json = JSON_FACTORY.createGenerator(writer)) {
+			json.writeStartObject();
+			generateSimpleFeature(object, _UNIT, json);
+			json.writeEndObject();
+		} catch (IOException | UncheckedIOException e) {
+			logger.error("could not generate the feature for " + getName(object));
+			return null;
+		}
+		return writer.toString();
+	}
+	
+	// generate a simple feature given a model element, either written as the fields of the current object of the given json generator, 
+	// or returned as plain text if there is no generator
+	private String generateSimpleFeature(EObject object, UNIT _UNIT, JsonGenerator json){		
 		StringBuffer feature = null;
 		
 		// initialize data structure
-		if (isJSON) {
-			obj = new JSONObject();
-			if (_UNIT != UNIT.ATTRIBUTED) obj.put("ftype", Util.getFtypeString(_UNIT, isJSON));
+		if (json != null) {
+			if (_UNIT != UNIT.ATTRIBUTED) put(json, "ftype", Util.getFtypeString(_UNIT, true));
 		} else {
 			feature = new StringBuffer(); 
-			if (_UNIT != UNIT.ATTRIBUTED) feature.append(Util.getFtypeString(_UNIT, isJSON));
+			if (_UNIT != UNIT.ATTRIBUTED) feature.append(Util.getFtypeString(_UNIT, false));
 		}
 		
 		switch(_UNIT) {
 		case NAME:
-			try{
-				String name = nlp.lemmatizeIfFlagSet(((ENamedElement)object).getName(), PREPROCESS_TOKENIZE, PREPROCESS_LEMMATIZE);
-				if (isJSON)
-					obj.put("name", name);
-				else 
-					feature.append(name);
-			} catch(Exception ex){
-				ex.printStackTrace();
-			}
-			break;
 		case TYPEDNAME:
-			try{ 
-				String name = nlp.lemmatizeIfFlagSet(((ENamedElement)object).getName(), PREPROCESS_TOKENIZE, PREPROCESS_LEMMATIZE);
-				String type = object.eClass().getName();
-
-				if (isJSON) {
-					obj.put("type", type);
-					obj.put("name", name);
-				}
-				else {
-					feature.append(type + Constants.ATTRIB_SEP + name);
-				}
-			} catch(Exception ex){
-				ex.printStackTrace();
-			}
+			if (object instanceof ENamedElement)
+				appendNamedFeature(((ENamedElement)object).getName(), object.eClass().getName(), _UNIT, json, feature);
 			break;
 		case TYPEDVALUEDNAME: 
 			try {
@@ -419,7 +501,7 @@ public class EcoreExtractorImpl extends IExtractor {
 				{
 					if (/*INCLUDE_TYPES && */(object instanceof EReference || object instanceof EOperation || object instanceof EAttribute || object instanceof EParameter)){
 						ETypedElement typed = (ETypedElement) object;
-						EClassifier typeObject = typed.getEType();
+						EClassifier typeObject = getEType(typed);
 						boolean hasType = false;
 
 						if (typeObject != null) {
@@ -428,10 +510,9 @@ public class EcoreExtractorImpl extends IExtractor {
 
 							// if no real name, try to get it from proxy uri
 							if (typeName == null || typeName.equals("")) {
-								String[] tokens = EcoreUtil.getURI(typeObject).toString().split("//"); 
-								typeName = tokens[tokens.length-1];
+								typeName = ProxyNameResolver.getName(typeObject);
 								if (typeName == null || typeName.equals("")) // if the above didn't help
-									logger.debug("Despite the workaround, NULL type for " + ((ETypedElement)object).getEType());
+									logger.debug("Despite the workaround, NULL type for " + typed.getName());
 								else { // replace the child with a dummy EClass
 									EClass dummyClass = EcoreFactory.eINSTANCE.createEClass();
 									dummyClass.setName(typeName);
@@ -452,10 +533,10 @@ public class EcoreExtractorImpl extends IExtractor {
 //						else result += Constants.ATTRIB_SEP + Constants.ATTRIB_SEP;
 				}
 				
-				if (isJSON) {
-					obj.put("name", name); 
-					obj.put("type", type); 
-					obj.put("eType", eType);
+				if (json != null) {
+					put(json, "name", name); 
+					put(json, "type", type); 
+					put(json, "eType", eType);
 				}
 				else {
 					feature.append(type).
@@ -469,17 +550,17 @@ public class EcoreExtractorImpl extends IExtractor {
 			}
 			break;	
 		case ATTRIBUTED:
-			if (isJSON) 
-				obj = (JSONObject) extractAttributedFeatureFromSingleObject(object, isJSON);
+			if (json != null) 
+				extractAttributedFeatureFromSingleObject(object, json);
 			else 
-				feature.append((String) extractAttributedFeatureFromSingleObject(object, isJSON));
+				feature.append(extractAttributedFeatureFromSingleObject(object, json));
 			break;
 		default:
 			break;				
 		}
 		
-		if (isJSON)
-			return obj;
+		if (json != null)
+			return null;
 		else {
 			// HACK
 			if (_UNIT != UNIT.ATTRIBUTED) {
@@ -492,14 +573,46 @@ public class EcoreExtractorImpl extends IExtractor {
 		}
 	}
 	
+	// plain text simple feature for the NAME and TYPEDNAME units, given the name and the type (i.e. metaclass name) of a model element 
+	public String generateSimpleFeature(String name, String type, UNIT _UNIT) {
+		StringBuffer feature = new StringBuffer(Util.getFtypeString(_UNIT, false));
+		appendNamedFeature(name, type, _UNIT, null, feature);
+		return feature.toString();
+	}
+	
+	private void appendNamedFeature(String name, String type, UNIT _UNIT, JsonGenerator json, StringBuffer feature) {
+		try{
+			name = nlp.lemmatizeIfFlagSet(name, PREPROCESS_TOKENIZE, PREPROCESS_LEMMATIZE);
+			if (_UNIT == UNIT.NAME) {
+				if (json != null)
+					put(json, "name", name);
+				else 
+					feature.append(name);
+			} 
+			else if (json != null) {
+				put(json, "type", type);
+				put(json, "name", name);
+			}
+			else {
+				feature.append(type + Constants.ATTRIB_SEP + name);
+			}
+		} catch(Exception ex){
+			ex.printStackTrace();
+		}
+	}
+	
 	public ArrayList<String> generateSimpleFeaturesExpand(EObject object, UNIT _UNIT){
+		if (_UNIT != UNIT.NAME || !(object instanceof ENamedElement))
+			return new ArrayList<String>();
+		return generateSimpleFeaturesExpand(((ENamedElement)object).getName(), _UNIT);
+	}
+	
+	public ArrayList<String> generateSimpleFeaturesExpand(String name, UNIT _UNIT){
 		ArrayList<String> results = new ArrayList<String>();
-		String name;
 		String[] expandedTokens;
 		
 		switch(_UNIT) {
 		case NAME:
-			name = ((ENamedElement)object).getName();
 			if (name == null)
 				logger.debug("null name!");
 			expandedTokens = nlp.filterAndTokenize(name);
@@ -524,79 +637,64 @@ public class EcoreExtractorImpl extends IExtractor {
 		return (!defaultValue.equals(value));
 	} 
 	
-	private void append(String attr, Object value, StringBuffer feature, JSONObject obj, boolean isJSON) {
+	private void append(String attr, Object value, StringBuffer feature, JsonGenerator json) {
 		if (isAttributeNonDefault(attr, value)) {
-			if (isJSON)
-				obj.put(attr, value);
+			if (json != null)
+				put(json, attr, value);
 			else 
 				feature.append(attr + Constants.ATTRIB_MAP_SEP + value + Constants.ATTRIB_SEP);
 		}
 	}
 	
-	// generates a full-fledged attributed feature (containing all details of the node) given a model element 
+	// writes a field of a JSON feature, skipping null values like JSONObject.put
+	private static void put(JsonGenerator json, String key, Object value) {
+		if (value == null)
+			return;
+		try {
+			json.writeObjectField(key, value);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	// generates a full-fledged attributed feature (containing all details of the node) given a model element,
+	// written into the given json generator or returned as plain text if there is none
 	// TODO check if cleanse is being applied consistently
-	private Object extractAttributedFeatureFromSingleObject(EObject object, boolean isJSON) {		
-		JSONObject obj = null;
+	private String extractAttributedFeatureFromSingleObject(EObject object, JsonGenerator json) {		
 		StringBuffer feature = null;
 		
 		// initialize data structure
-		if (isJSON) {
-			obj = new JSONObject();			
-			obj.put("ftype", "Attributed");
+		if (json != null) {
+			put(json, "ftype", "Attributed");
 		} else {
 			feature = new StringBuffer(); 
 			feature.append(Constants.AN);
 		}		
 		
 		// type
-		append("type", nlp.cleanse(object.eClass().getName()), feature, obj, isJSON);
+		append("type", nlp.cleanse(object.eClass().getName()), feature, json);
 		
 		if (object instanceof ENamedElement) {
 			ENamedElement eNamedElement = ((ENamedElement)object);
-			append("name", nlp.lemmatizeIfFlagSet(nlp.cleanse(eNamedElement.getName()), PREPROCESS_TOKENIZE, PREPROCESS_LEMMATIZE), feature, obj, isJSON);			
+			append("name", nlp.lemmatizeIfFlagSet(nlp.cleanse(eNamedElement.getName()), PREPROCESS_TOKENIZE, PREPROCESS_LEMMATIZE), feature, json);			
 		}
 		
 		if (object instanceof ETypedElement) {
 			ETypedElement eTypedElement = ((ETypedElement)object);
-			append("ordered", eTypedElement.isOrdered(), feature, obj, isJSON);
-			append("unique", eTypedElement.isUnique(), feature, obj, isJSON);
-			append("lowerBound", eTypedElement.getLowerBound(), feature, obj, isJSON);
-			append("upperBound", eTypedElement.getUpperBound(), feature, obj, isJSON);
-			append("many", eTypedElement.isMany(), feature, obj, isJSON);
-			append("required", eTypedElement.isRequired(), feature, obj, isJSON);
+			append("ordered", eTypedElement.isOrdered(), feature, json);
+			append("unique", eTypedElement.isUnique(), feature, json);
+			append("lowerBound", eTypedElement.getLowerBound(), feature, json);
+			append("upperBound", eTypedElement.getUpperBound(), feature, json);
+			append("many", eTypedElement.isMany(), feature, json);
+			append("required", eTypedElement.isRequired(), feature, json);
 						
-			if (! (object instanceof EReference)) // TODO extract proper type, that is both type class and type name
+			if (! (object instanceof EReference)) { // TODO extract proper type, that is both type class and type name
+				EClassifier typeObject = getEType(eTypedElement);
 				append("eType", 
-	(eTypedElement.getEType()==null?"null":nlp.cleanse(eTypedElement.getEType().getName())), feature, obj, isJSON);
-			else {
+	(typeObject==null?"null":nlp.cleanse(RESOLVE_PROXIES?typeObject.getName():ProxyNameResolver.getName(typeObject))), feature, json);
+			} else {
 				
-				EClassifier typeObject = null;
-				
-				if (((EReference)object).isResolveProxies() == true)
-				{
-					final Duration timeout = Duration.ofSeconds(10);
-					ExecutorService executor = Executors.newSingleThreadExecutor();
-					final Future<EClassifier> handler = executor.submit(new Callable<EClassifier>() {
-					    @Override
-					    public EClassifier call() throws Exception {
-					        return (EClassifier) ((EReference)object).getEType();
-					    }
-					});
-
-					try {
-						typeObject = handler.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
-					} catch (TimeoutException e) {
-						e.printStackTrace();
-					    handler.cancel(true);
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					} catch (ExecutionException e) {
-						e.printStackTrace();
-					}
-					executor.shutdownNow();
-				}
-				else
-					typeObject = ((EReference)object).getEType();
+				EClassifier typeObject = getEType(eTypedElement);
 				
 				String typeName = "";
 				if (typeObject != null) {
@@ -605,22 +703,21 @@ public class EcoreExtractorImpl extends IExtractor {
 					
 					// if no real name, try to get it from proxy uri
 					if (typeName == null || typeName.equals("")) {
-						String[] tokens = EcoreUtil.getURI(typeObject).toString().split("//"); 
-						typeName = tokens[tokens.length-1];
+						typeName = ProxyNameResolver.getName(typeObject);
 						if (typeName == null || typeName.equals("")) { // if the above didn't help
-							logger.debug("Despite the workaround, NULL type for " + ((ETypedElement)object).getEType());
+							logger.debug("Despite the workaround, NULL type for " + eTypedElement.getName());
 							typeName = "null";
 						}
 					}					
 				}
-				append("eType", nlp.cleanse(typeName), feature, obj, isJSON);
+				append("eType", nlp.cleanse(typeName), feature, json);
 			}
 		}
 		
 		if (object instanceof EClassifier) {
 			EClassifier eClassifier = ((EClassifier)object);
-			append("instanceClassName", nlp.cleanse(eClassifier.getInstanceClassName()), feature, obj, isJSON);
-			append("instanceTypeName", nlp.cleanse(eClassifier.getInstanceTypeName()), feature, obj, isJSON);
+			append("instanceClassName", nlp.cleanse(eClassifier.getInstanceClassName()), feature, json);
+			append("instanceTypeName", nlp.cleanse(eClassifier.getInstanceTypeName()), feature, json);
 			// instanceClass
 			// defaultValue
 			
@@ -628,34 +725,35 @@ public class EcoreExtractorImpl extends IExtractor {
 		
 		if (object instanceof EStructuralFeature) {
 			EStructuralFeature eStructuralFeature = ((EStructuralFeature)object);			
-			append("changeable", eStructuralFeature.isChangeable(), feature, obj, isJSON);
-			append("volatile", eStructuralFeature.isVolatile(), feature, obj, isJSON);
-			append("transient", eStructuralFeature.isTransient(), feature, obj, isJSON);
-			append("defaultValueLiteral", nlp.cleanse(nlp.handleEmptyString(eStructuralFeature.getDefaultValueLiteral())), feature, obj, isJSON);
+			append("changeable", eStructuralFeature.isChangeable(), feature, json);
+			append("volatile", eStructuralFeature.isVolatile(), feature, json);
+			append("transient", eStructuralFeature.isTransient(), feature, json);
+			append("defaultValueLiteral", nlp.cleanse(nlp.handleEmptyString(eStructuralFeature.getDefaultValueLiteral())), feature, json);
 //			feature += "defaultValue" + Constants.ATTRIB_MAP_SEP + eStructuralFeature.getDefaultValue() + Constants.ATTRIB_SEP;
-			append("unsettable", eStructuralFeature.isUnsettable(), feature, obj, isJSON);
-			append("derived", eStructuralFeature.isDerived(), feature, obj, isJSON);
+			append("unsettable", eStructuralFeature.isUnsettable(), feature, json);
+			append("derived", eStructuralFeature.isDerived(), feature, json);
 		}
 		
 		if (object instanceof EClass) {
 			EClass eClass = ((EClass)object);
-			append("abstract", eClass.isAbstract(), feature, obj, isJSON);
-			append("interface", eClass.isInterface(), feature, obj, isJSON);
+			append("abstract", eClass.isAbstract(), feature, json);
+			append("interface", eClass.isInterface(), feature, json);
 		}			
 						
 		if (object instanceof EAttribute) {
 			EAttribute eAttribute = ((EAttribute)object);
-			append("iD", eAttribute.isID(), feature, obj, isJSON);
+			append("iD", eAttribute.isID(), feature, json);
 		}
 		
 		// eKeys - ignoring for now
 		
 		if (object instanceof EReference) {
 			EReference eReference = ((EReference)object);
-			append("containment", eReference.isContainment(), feature, obj, isJSON);
-			append("container", eReference.isContainer(), feature, obj, isJSON);
-			append("resolveProxies", eReference.isResolveProxies(), feature, obj, isJSON);
-			append("eOpposite", (eReference.getEOpposite()==null?"null":nlp.cleanse(eReference.getEOpposite().getName())), feature, obj, isJSON);
+			append("containment", eReference.isContainment(), feature, json);
+			append("container", eReference.isContainer(), feature, json);
+			append("resolveProxies", eReference.isResolveProxies(), feature, json);
+			EReference eOpposite = RESOLVE_PROXIES?eReference.getEOpposite():ProxyNameResolver.getEOpposite(eReference);
+			append("eOpposite", (eOpposite==null?"null":nlp.cleanse(RESOLVE_PROXIES?eOpposite.getName():ProxyNameResolver.getName(eOpposite))), feature, json);
 		}
 		
 		// EOperation - nothing special
@@ -665,17 +763,17 @@ public class EcoreExtractorImpl extends IExtractor {
 		
 		if (object instanceof EDataType) {
 			EDataType eDataType = ((EDataType)object);
-			append("serializable", eDataType.isSerializable(), feature, obj, isJSON);
+			append("serializable", eDataType.isSerializable(), feature, json);
 		}
 		
 		if (object instanceof EEnumLiteral) {
 			EEnumLiteral eEnumLiteral = ((EEnumLiteral)object);
-			append("value", eEnumLiteral.getValue(), feature, obj, isJSON);
-			append("literal", nlp.cleanse(eEnumLiteral.getLiteral()), feature, obj, isJSON);
+			append("value", eEnumLiteral.getValue(), feature, json);
+			append("literal", nlp.cleanse(eEnumLiteral.getLiteral()), feature, json);
 			//feature += "instance" + Constants.ATTRIB_MAP_SEP + eEnumLiteral.getInstance() + Constants.ATTRIB_SEP;
 		}
-		if (isJSON)
-			return obj;
+		if (json != null)
+			return null;
 		else {
 			String featureString = feature.toString();
 			return featureString;
@@ -691,4 +789,12 @@ public class EcoreExtractorImpl extends IExtractor {
 		else 
 			return null;
 	}
+	
+	@Override
+	public String getType(Object o) {
+		if (o instanceof EObject)
+			return ((EObject) o).eClass().getName();
+		else
+			return null;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.extract;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.xmi.XMLParserPool;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.EcoreResourceFactoryImpl;
+import org.eclipse.emf.ecore.xmi.impl.XMLParserPoolImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the metamodel files for an extractor with tuned EMF load options: the SAX parsers are pooled and shared by all the loaders in the JVM, 
+ * the IDREFs are resolved at the end of the document, and the lookups of features by xml name are cached. A loader reuses a single resource set, 
+ * which is emptied by unload() after each file, so that the resources (and the ones loaded while resolving proxies) do not pile up during a run. 
+ * Loading times are counted, so they can be reported after the extraction. 
+ * 
+ * Optionally, the loaded models are cached in EMF's binary resource format in a cache folder, keyed by the hash of the model file, 
+ * so that repeated runs over the same models (e.g. with different settings) load the binary copies instead of parsing the xml again. 
+ * The references to other resources are stored relative to the model, so a copy is valid for the same content at any location. 
+ * The cache folder is pruned after an extraction with prune(), which removes the copies of models that are no longer used and keeps the folder under a size cap. 
+ * 
+ * A loader is used by one extractor, and so by one thread at a time.
+*/
+public class EcoreModelLoader {
+	
+	static final Logger logger = LoggerFactory.getLogger(EcoreModelLoader.class);
+	
+	public static final String CACHE_SUFFIX = ".emfbin";
+	
+	// shared by all the loaders, the pool is thread safe
+	static final XMLParserPool parserPool = new XMLParserPoolImpl(true);
+	
+	static final AtomicLong loads = new AtomicLong();
+	static final AtomicLong failures = new AtomicLong();
+	static final AtomicLong loadNanos = new AtomicLong();
+	static final AtomicLong maxLoadNanos = new AtomicLong();
+	static final AtomicLong cacheHits = new AtomicLong();
+	
+	private final ResourceSet resourceSet;
+	// folder of the binary copies of the models, or null for no caching
+	private File cacheFolder;
+	
+	public EcoreModelLoader() {
+		resourceSet = new ResourceSetImpl();
+		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("*", new EcoreResourceFactoryImpl());
+		// the binary copies refer to the metamodel by its namespace uri, which is only registered globally once the ecore package is initialized
+		resourceSet.getPackageRegistry().put(EcorePackage.eNS_URI, EcorePackage.eINSTANCE);
+		
+		// set on the resource set, so they also apply to the resources loaded while resolving proxies
+		Map<Object, Object> options = resourceSet.getLoadOptions();
+		options.put(XMLResource.OPTION_USE_PARSER_POOL, parserPool);
+		options.put(XMLResource.OPTION_DEFER_IDREF_RESOLUTION, Boolean.TRUE);
+		// synchronized, as proxies may be resolved by the extraction timeout workers
+		options.put(XMLResource.OPTION_USE_XML_NAME_TO_FEATURE_MAP, Collections.synchronizedMap(new HashMap<Object, Object>()));
+	}
+	
+	public Resource load(File f) {
+		return load(ModelInput.of(f));
+	}
+	
+	public void setCacheFolder(File cacheFolder) {
+		this.cacheFolder = cacheFolder;
+	}
+	
+	// loads a file or archive entry into the resource set, throws the EMF (runtime) exception if it cannot be loaded 
+	public Resource load(ModelInput input) {
+		long start = System.nanoTime();
+		try {
+			// the entries of an archive (and the ones they refer to) are read by the uri handler of the archive
+			if (input.getArchive() != null && !resourceSet.getURIConverter().getURIHandlers().contains(input.getArchive().getURIHandler()))
+				resourceSet.getURIConverter().getURIHandlers().add(0, input.getArchive().getURIHandler());
+			Resource resource = (cacheFolder == null ? resourceSet.getResource(input.getURI(), true) : loadCached(input));
+			loads.incrementAndGet();
+			return resource;
+		} catch (RuntimeException | Error e) {
+			failures.incrementAndGet();
+			throw e;
+		} finally {
+			long time = System.nanoTime() - start;
+			loadNanos.addAndGet(time);
+			maxLoadNanos.accumulateAndGet(time, Math::max);
+		}
+	}
+	
+	// loads the binary copy of a model from the cache folder if there is one, otherwise parses the model and stores its binary copy
+	private Resource loadCached(ModelInput input) {
+		String hash;
+		try {
+			hash = ExtractionManifest.hash(input);
+		} catch (IOException e) {
+			return resourceSet.getResource(input.getURI(), true);
+		}
+		
+		File cached = new File(cacheFolder, hash + CACHE_SUFFIX);
+		if (cached.isFile()) {
+			// under the uri of the model, so that the proxies into it (and the relative ones from it) resolve as for the parsed model
+			Resource resource = new BinaryResourceImpl(input.getURI());
+			resourceSet.getResources().add(resource);
+			try (InputStream in = new BufferedInputStream(new FileInputStream(cached))) {
+				resource.load(in, null);
+				cacheHits.incrementAndGet();
+				// the least recently used copies are removed first when the cache is over its size cap
+				cached.setLastModified(System.currentTimeMillis());
+				return resource;
+			} catch (IOException | RuntimeException e) {
+				// e.g. written by an incompatible EMF version, parse the model and replace the copy
+				logger.warn("could not read the cached model " + cached.getPath() + " for " + input.getPath());
+				resource.unload();
+				resourceSet.getResources().remove(resource);
+			}
+		}
+		
+		Resource resource = resourceSet.getResource(input.getURI(), true);
+		if (resource.getErrors().isEmpty())
+			store(resource, cached);
+		return resource;
+	}
+	
+	// writes the binary copy of a model via a temporary file, so that a concurrent reader (or a later run) never sees a partially written one
+	private void store(Resource resource, File cached) {
+		File temp = null;
+		try {
+			cacheFolder.mkdirs();
+			temp = File.createTempFile(cached.getName(), ".tmp", cacheFolder);
+			try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+				BinaryResourceImpl.EObjectOutputStream stream = new BinaryResourceImpl.EObjectOutputStream(out, null);
+				stream.saveResource(resource);
+				stream.flush();
+			}
+			Files.move(temp.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException | RuntimeException e) {
+			logger.warn("could not cache the model " + resource.getURI());
+			if (temp != null)
+				temp.delete();
+		}
+	}
+	
+	// removes the copies whose hash is not among the given ones (i.e. of models which were changed or removed), and the leftover temporary files. 
+	// Then removes the least recently used copies until the folder is at most maxBytes in size (non-positive for no limit). Returns the number of removed files
+	public static int prune(File cacheFolder, Collection<String> hashes, long maxBytes) {
+		File[] files = cacheFolder.listFiles();
+		if (files == null)
+			return 0;
+		
+		int removed = 0;
+		long size = 0;
+		List<File> copies = new ArrayList<File>();
+		for (File f : files) {
+			String name = f.getName();
+			if (name.endsWith(CACHE_SUFFIX) && hashes.contains(name.substring(0, name.length() - CACHE_SUFFIX.length()))) {
+				copies.add(f);
+				size += f.length();
+			} else if ((name.endsWith(CACHE_SUFFIX) || name.endsWith(".tmp")) && f.delete())
+				removed++;
+		}
+		
+		if (maxBytes > 0 && size > maxBytes) {
+			copies.sort(Comparator.comparingLong(File::lastModified));
+			for (int i = 0; i < copies.size() && size > maxBytes; i++) {
+				long length = copies.get(i).length();
+				if (copies.get(i).delete()) {
+					size -= length;
+					removed++;
+				}
+			}
+		}
+		return removed;
+	}
+	
+	// unloads all the resources loaded since the last call, including the ones loaded for proxies 
+	public void unload() {
+		for (Resource resource : resourceSet.getResources())
+			resource.unload();
+		resourceSet.getResources().clear();
+	}
+	
+	public static long getLoadCount() {return loads.get();}
+	public static long getFailureCount() {return failures.get();}
+	public static long getLoadMillis() {return loadNanos.get() / 1000000;}
+	public static long getCacheHitCount() {return cacheHits.get();}
+	
+	public static void resetCounters() {
+		loads.set(0);
+		failures.set(0);
+		loadNanos.set(0);
+		maxLoadNanos.set(0);
+		cacheHits.set(0);
+	}
+	
+	public static String getStatistics() {
+		long count = loads.get() + failures.get();
+		return "loaded files: " + loads.get() + ", failures: " + failures.get() + ", load time: " + getLoadMillis() + " ms" 
+				+ ", average: " + (count == 0 ? 0 : loadNanos.get() / count / 1000) + " us, max: " + maxLoadNanos.get() / 1000000 + " ms"
+				+ ", from cache: " + cacheHits.get();
+	}
+}
@@ -0,0 +1,412 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.extract;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.tue.set.samos.common.Constants;
+import nl.tue.set.samos.common.enums.SCOPE;
+import nl.tue.set.samos.common.enums.STRUCTURE;
+import nl.tue.set.samos.common.enums.UNIT;
+
+/**
+ * Ecore feature extractor which streams the metamodel file with StAX instead of loading it with EMF, for the features that need only the names and 
+ * types of the model elements, i.e. NAME and TYPEDNAME unigrams. Only the containment tree of the named elements is kept in memory, in the same order 
+ * as eContents. The other features, and the files which this reader does not fully understand, are extracted with EMF as in EcoreExtractorImpl.
+ * 
+ * The element budget (MAX_ELEMENTS_PER_MODEL) is counted while reading: a file with more elements is left to EMF as well, which extracts the 
+ * elements within the budget, so the tree kept in memory here stays bounded.
+ */
+public class EcoreStreamExtractorImpl extends EcoreExtractorImpl {
+
+	final Logger logger = LoggerFactory.getLogger(EcoreStreamExtractorImpl.class);
+	
+	static final String ECORE_NS = "http://www.eclipse.org/emf/2002/Ecore";
+	static final String XMI_NS = "http://www.omg.org/XMI";
+	static final String XSI_NS = "http://www.w3.org/2001/XMLSchema-instance";
+	
+	// the containment features of each (non filtered) type, in the order of eContents 
+	static final Map<String, List<String>> CONTAINMENTS = new HashMap<String, List<String>>();
+	// the types allowed for each containment feature, the first one being the default if there is no xsi:type 
+	static final Map<String, List<String>> FEATURE_TYPES = new HashMap<String, List<String>>();
+	// the non-containment references which may be serialized as elements (e.g. with href), per type
+	static final Map<String, Set<String>> REFERENCES = new HashMap<String, Set<String>>();
+	// the attributes serialized for the types above, anything else is left to EMF 
+	static final Set<String> ATTRIBUTES = new HashSet<String>(Arrays.asList(
+			"name", "nsURI", "nsPrefix", "instanceClassName", "instanceTypeName", "serializable", "abstract", "interface", "eSuperTypes",
+			"ordered", "unique", "lowerBound", "upperBound", "eType", "changeable", "volatile", "transient", "defaultValueLiteral", "unsettable", 
+			"derived", "iD", "containment", "resolveProxies", "eOpposite", "eKeys", "eExceptions", "value", "literal"));
+	// the references for which EMF contains a (filtered) generic type per referenced classifier, which counts towards the element budget
+	static final List<String> GENERIC_REFERENCES = Arrays.asList("eType", "eSuperTypes", "eExceptions");
+	// filtered types, their subtrees are skipped as in EcoreExtractorImpl
+	static final Set<String> FILTERED = new HashSet<String>(Arrays.asList("EAnnotation", "EGenericType", "ETypeParameter"));
+	
+	static {
+		containments("EPackage", "eAnnotations", "eClassifiers", "eSubpackages");
+		containments("EClass", "eAnnotations", "eTypeParameters", "eOperations", "eStructuralFeatures", "eGenericSuperTypes");
+		containments("EDataType", "eAnnotations", "eTypeParameters");
+		containments("EEnum", "eAnnotations", "eTypeParameters", "eLiterals");
+		containments("EAttribute", "eAnnotations", "eGenericType");
+		containments("EReference", "eAnnotations", "eGenericType");
+		containments("EParameter", "eAnnotations", "eGenericType");
+		containments("EOperation", "eAnnotations", "eGenericType", "eTypeParameters", "eParameters", "eGenericExceptions");
+		containments("EEnumLiteral", "eAnnotations");
+		
+		types("eAnnotations", "EAnnotation");
+		types("eClassifiers", null, "EClass", "EDataType", "EEnum");
+		types("eSubpackages", "EPackage");
+		types("eTypeParameters", "ETypeParameter");
+		types("eOperations", "EOperation");
+		types("eStructuralFeatures", null, "EAttribute", "EReference");
+		types("eGenericSuperTypes", "EGenericType");
+		types("eGenericType", "EGenericType");
+		types("eGenericExceptions", "EGenericType");
+		types("eParameters", "EParameter");
+		types("eLiterals", "EEnumLiteral");
+		
+		references("EClass", "eSuperTypes");
+		references("EAttribute", "eType");
+		references("EReference", "eType", "eOpposite", "eKeys");
+		references("EParameter", "eType");
+		references("EOperation", "eType", "eExceptions");
+	}
+	
+	private static void containments(String type, String... features) {
+		CONTAINMENTS.put(type, Arrays.asList(features));
+	}
+	
+	private static void types(String feature, String... types) {
+		FEATURE_TYPES.put(feature, Arrays.asList(types));
+	}
+	
+	private static void references(String type, String... features) {
+		REFERENCES.put(type, new HashSet<String>(Arrays.asList(features)));
+	}
+	
+	// a named model element read from the file, along with its contained elements
+	static class Node {
+		final String type;
+		final String name;
+		final int rank;
+		final List<Node> children = new ArrayList<Node>();
+		
+		Node(String type, String name, int rank) {
+			this.type = type;
+			this.name = name;
+			this.rank = rank;
+		}
+	}
+	
+	// signals a construct which is not handled by the reader, so that the file is loaded with EMF instead
+	static class UnsupportedContentException extends Exception {
+		private static final long serialVersionUID = 1L;
+		
+		UnsupportedContentException(String message) {
+			super(message);
+		}
+	}
+	
+	private final XMLInputFactory factory;
+	// elements read so far from the current file, for the element budget. The filtered elements count as in getAllEObjects, their contents not
+	private int elementCount;
+	
+	public EcoreStreamExtractorImpl() {
+		factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+	
+	// whether the features can be extracted from the names and types alone
+	public static boolean isStreamable(UNIT _UNIT, STRUCTURE _STRUCTURE) {
+		return _STRUCTURE == STRUCTURE.UNIGRAM && (_UNIT == UNIT.NAME || _UNIT == UNIT.TYPEDNAME);
+	}
+	
+	@Override
+	public void process(ModelInput input, SCOPE _SCOPE, UNIT[] units, STRUCTURE[] structures, FeatureSink[] sinks) {
+		boolean streamable = true;
+		for (int i = 0; i < units.length; i++)
+			streamable &= isStreamable(units[i], structures[i]);
+		List<Node> roots = streamable ? read(input) : null;
+		if (roots == null) {
+			super.process(input, _SCOPE, units, structures, sinks);
+			return;
+		}
+		
+		// within the budget, as the files beyond it are loaded with EMF
+		List<Node> nodes = new ArrayList<Node>();
+		for (Node root : roots)
+			ModelTraversal.preorder(root, n -> n.children, 0, nodes::add);
+		
+		if (PREPROCESS_LEMMATIZE) {
+			List<String> names = new ArrayList<String>();
+			for (Node node : nodes)
+				names.add(node.name);
+			nlp.prefetchLemmas(names, PREPROCESS_TOKENIZE);
+		}
+		
+		String scope = (_SCOPE == SCOPE.HIERARCHY ? SCOPE.MODEL : _SCOPE).toString();
+		List<Object> results = new ArrayList<Object>();
+		for (Node node : nodes) {
+			if (scope.equals("MODEL") || node.type.equalsIgnoreCase(scope))
+				results.add(node);
+		}
+		process(results, input.getName(), _SCOPE, units, structures, sinks);
+	}
+	
+	// reads the containment tree of the named elements in a file, or returns null if the file should be loaded with EMF
+	List<Node> read(ModelInput input) {
+		XMLStreamReader reader = null;
+		try (InputStream in = new BufferedInputStream(input.open())) {
+			reader = factory.createXMLStreamReader(in);
+			elementCount = 0;
+			List<Node> roots = new ArrayList<Node>();
+			nextElement(reader);
+			if (reader.getEventType() != XMLStreamConstants.START_ELEMENT)
+				throw new UnsupportedContentException("no root element");
+			
+			if (XMI_NS.equals(reader.getNamespaceURI()) && "XMI".equals(reader.getLocalName())) {
+				checkAttributes(reader, false);
+				while (nextElement(reader) == XMLStreamConstants.START_ELEMENT)
+					roots.add(readRoot(reader));
+			}
+			else
+				roots.add(readRoot(reader));
+			
+			if (nextElement(reader) != XMLStreamConstants.END_DOCUMENT)
+				throw new UnsupportedContentException("content after the root element");
+			return roots;
+		} catch (UnsupportedContentException ex) {
+			logger.debug("Loading " + input.getName() + " with EMF: " + ex.getMessage());
+		} catch (Exception ex) {
+			logger.debug("Loading " + input.getName() + " with EMF: " + ex);
+		} finally {
+			if (reader != null)
+				try { reader.close(); } catch (XMLStreamException ex) { /* nothing to do */ }
+		}
+		return null;
+	}
+	
+	private Node readRoot(XMLStreamReader reader) throws XMLStreamException, UnsupportedContentException {
+		String type = reader.getLocalName();
+		if (!ECORE_NS.equals(reader.getNamespaceURI()) || !CONTAINMENTS.containsKey(type))
+			throw new UnsupportedContentException("root element " + reader.getName());
+		if (checkAttributes(reader, false) != null)
+			throw new UnsupportedContentException("xsi:type on the root element");
+		return readElement(reader, type, 0);
+	}
+	
+	// reads the element the reader is at, up to its end tag. Iterative with a stack of the open elements, as the nesting can be deep
+	private Node readElement(XMLStreamReader reader, String type, int rank) throws XMLStreamException, UnsupportedContentException {
+		Node root = newNode(reader, type, rank);
+		ArrayDeque<Node> open = new ArrayDeque<Node>();
+		open.push(root);
+		
+		while (!open.isEmpty()) {
+			Node node = open.peek();
+			if (nextElement(reader) != XMLStreamConstants.START_ELEMENT) {
+				// end of the element: eContents lists the contents feature by feature, keeping the order within each feature 
+				Collections.sort(node.children, (a, b) -> Integer.compare(a.rank, b.rank));
+				open.pop();
+				continue;
+			}
+			
+			List<String> containments = CONTAINMENTS.get(node.type);
+			Set<String> references = REFERENCES.get(node.type);
+			String feature = reader.getLocalName();
+			if (reader.getNamespaceURI() != null && !reader.getNamespaceURI().isEmpty())
+				throw new UnsupportedContentException("element " + reader.getName());
+			
+			if (references != null && references.contains(feature)) {
+				if (GENERIC_REFERENCES.contains(feature))
+					countElement();
+				skipElement(reader);
+				continue;
+			}
+			
+			int childRank = containments.indexOf(feature);
+			if (childRank < 0)
+				throw new UnsupportedContentException("element " + feature + " in " + node.type);
+			
+			String childType = checkAttributes(reader, true);
+			List<String> allowedTypes = FEATURE_TYPES.get(feature);
+			if (childType == null)
+				childType = allowedTypes.get(0);
+			if (childType == null || !allowedTypes.contains(childType))
+				throw new UnsupportedContentException("type " + childType + " of " + feature);
+			
+			if (FILTERED.contains(childType)) {
+				countElement();
+				skipElement(reader);
+			}
+			else {
+				Node child = newNode(reader, childType, childRank);
+				node.children.add(child);
+				open.push(child);
+			}
+		}
+		return root;
+	}
+	
+	// a new element within the element budget of the file, along with the generic types EMF creates for its type, supertypes and exceptions
+	private Node newNode(XMLStreamReader reader, String type, int rank) throws UnsupportedContentException {
+		countElement();
+		for (String feature : GENERIC_REFERENCES) {
+			String value = reader.getAttributeValue(null, feature);
+			if (value != null)
+				// a reference to another file is preceded by the type of the referenced classifier, e.g. ecore:EDataType http://...#//EString
+				for (String reference : value.trim().split("\\s+"))
+					if (reference.indexOf('#') >= 0 || reference.indexOf('/') >= 0)
+						countElement();
+		}
+		return new Node(type, reader.getAttributeValue(null, "name"), rank);
+	}
+	
+	private void countElement() throws UnsupportedContentException {
+		if (MAX_ELEMENTS_PER_MODEL > 0 && ++elementCount > MAX_ELEMENTS_PER_MODEL)
+			throw new UnsupportedContentException("more than " + MAX_ELEMENTS_PER_MODEL + " elements");
+	}
+	
+	// checks the attributes of the current element, and returns the (Ecore) type given by xsi:type if any
+	private String checkAttributes(XMLStreamReader reader, boolean allowType) throws UnsupportedContentException {
+		String type = null;
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			String ns = reader.getAttributeNamespace(i);
+			String localName = reader.getAttributeLocalName(i);
+			if (ns == null || ns.isEmpty()) {
+				if (!ATTRIBUTES.contains(localName))
+					throw new UnsupportedContentException("attribute " + localName);
+			}
+			else if (XSI_NS.equals(ns) && localName.equals("type")) {
+				String value = reader.getAttributeValue(i);
+				int colon = value.indexOf(':');
+				String prefix = colon < 0 ? "" : value.substring(0, colon);
+				if (!allowType || !ECORE_NS.equals(reader.getNamespaceContext().getNamespaceURI(prefix)))
+					throw new UnsupportedContentException("xsi:type " + value);
+				type = value.substring(colon + 1);
+			}
+			else if (!XMI_NS.equals(ns) && !XSI_NS.equals(ns))
+				throw new UnsupportedContentException("attribute " + reader.getAttributeName(i));
+		}
+		return type;
+	}
+	
+	// skips the subtree of the current element, e.g. an annotation. Elements with xsi:type within it may need other packages, so they are left to EMF
+	private void skipElement(XMLStreamReader reader) throws XMLStreamException, UnsupportedContentException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				if (reader.getAttributeValue(XSI_NS, "type") != null)
+					throw new UnsupportedContentException("xsi:type in a skipped element");
+				depth++;
+			}
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				depth--;
+			else if (event == XMLStreamConstants.DTD || event == XMLStreamConstants.ENTITY_REFERENCE)
+				throw new UnsupportedContentException("dtd or entity reference");
+		}
+	}
+	
+	// moves to the next start or end tag (or the end of the document), allowing only whitespace and comments in between
+	private int nextElement(XMLStreamReader reader) throws XMLStreamException, UnsupportedContentException {
+		while (reader.hasNext()) {
+			int event = reader.next();
+			switch (event) {
+			case XMLStreamConstants.START_ELEMENT:
+			case XMLStreamConstants.END_ELEMENT:
+			case XMLStreamConstants.END_DOCUMENT:
+				return event;
+			case XMLStreamConstants.COMMENT:
+			case XMLStreamConstants.SPACE:
+				break;
+			case XMLStreamConstants.CHARACTERS:
+				if (!reader.isWhiteSpace())
+					throw new UnsupportedContentException("text content");
+				break;
+			default:
+				throw new UnsupportedContentException("xml event " + event);
+			}
+		}
+		return XMLStreamConstants.END_DOCUMENT;
+	}
+	
+	@Override
+	public List<String> extractFeatures(Object object, UNIT _UNIT, STRUCTURE _STRUCTURE) {
+		if (!(object instanceof Node))
+			return super.extractFeatures(object, _UNIT, _STRUCTURE);
+		
+		Node node = (Node) object;
+		ArrayList<String> features = new ArrayList<String>();
+		if (!PREPROCESS_TOKENIZE)
+			features.add(Constants.NG + generateSimpleFeature(node.name, node.type, _UNIT));
+		else { // expanded into the tokens, as generateFeaturesExpand
+			for (String feature : generateSimpleFeaturesExpand(node.name, _UNIT))
+				features.add(Constants.NG + feature);
+		}
+		return features;
+	}
+	
+	@Override
+	public List<Object> getNextElements(Object object) {
+		if (!(object instanceof Node))
+			return super.getNextElements(object);
+		return new ArrayList<Object>(((Node) object).children);
+	}
+	
+	@Override
+	public String getName(Object o) {
+		if (o instanceof Node)
+			return ((Node) o).name;
+		return super.getName(o);
+	}
+	
+	@Override
+	public String getType(Object o) {
+		if (o instanceof Node)
+			return ((Node) o).type;
+		return super.getType(o);
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+
+package nl.tue.set.samos.extract;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Manifest of an extracted features folder, for incremental extraction. It records the extraction settings, and per model file its content hash 
+ * and the fragments (i.e. feature files) written for it along with their sizes. 
+ * A model file whose hash is unchanged under the same settings does not need to be extracted again.  
+*/
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ExtractionManifest {
+	
+	static final Logger logger = LoggerFactory.getLogger(ExtractionManifest.class);
+	
+	public static final String MANIFEST_FILE = "manifest.json";
+	// increase when the feature format changes, to invalidate existing features folders.
+	// 2: trees in the merged form, features of each element visited once, element budgets per model
+	public static final int VERSION = 2;
+	
+	public int version = VERSION;
+	// extraction settings, e.g. scope, unit, structure and preprocessing flags
+	public TreeMap<String, String> settings = new TreeMap<String, String>();
+	// model file name -> entry
+	public TreeMap<String, Entry> files = new TreeMap<String, Entry>();
+	
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public static class Entry {
+		public String hash;
+		// fragment key -> size
+		public TreeMap<String, Integer> fragments = new TreeMap<String, Integer>();
+		// places of the fragments in the hierarchy, only for the hierarchical extraction
+		@JsonInclude(JsonInclude.Include.NON_EMPTY)
+		public ArrayList<FragmentHierarchy.Fragment> hierarchy = new ArrayList<FragmentHierarchy.Fragment>();
+		
+		public Entry() {}
+		
+		public Entry(String hash, Map<String, Integer> fragments) {
+			this.hash = hash;
+			this.fragments.putAll(fragments);
+		}
+		
+		public Entry(String hash, Map<String, Integer> fragments, List<FragmentHierarchy.Fragment> hierarchy) {
+			this(hash, fragments);
+			this.hierarchy.addAll(hierarchy);
+		}
+	}
+	
+	public void setting(String name, Object value) {
+		settings.put(name, String.valueOf(value));
+	}
+	
+	// whether the features in the folder of the given manifest can be reused under the settings of this one
+	public boolean isCompatible(ExtractionManifest other) {
+		return other != null && other.version == version && other.settings.equals(settings);
+	}
+	
+	// the manifest in the given folder, or null if there is none or it cannot be read
+	public static ExtractionManifest load(File folder) {
+		File file = new File(folder, MANIFEST_FILE);
+		if (!file.exists())
+			return null;
+		try {
+			return new ObjectMapper().readValue(file, ExtractionManifest.class);
+		} catch (IOException e) {
+			logger.warn("Could not read the manifest " + file.getAbsolutePath() + ", extracting from scratch");
+			return null;
+		}
+	}
+	
+	// write the manifest via a temporary file, so a half-written manifest is never left behind
+	public void save(File folder) throws IOException {
+		File file = new File(folder, MANIFEST_FILE);
+		File temp = new File(folder, MANIFEST_FILE + ".tmp");
+		new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(temp, this);
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	public static void delete(File folder) {
+		new File(folder, MANIFEST_FILE).delete();
+	}
+	
+	// SHA-256 of the file content, as a hex string
+	public static String hash(File f) throws IOException {
+		return hash(ModelInput.of(f));
+	}
+	
+	// SHA-256 of the content of a model file or archive entry, as a hex string
+	public static String hash(ModelInput input) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		byte[] buffer = new byte[64 * 1024];
+		try (InputStream in = input.open()) {
+			int read;
+			while ((read = in.read(buffer)) != -1)
+				digest.update(buffer, 0, read);
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest())
+			hex.append(String.format("%02x", b));
+		return hex.toString();
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.extract;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared facility for running extraction steps with a deadline, e.g. generating a tree feature or resolving a proxy, which can hang on problematic models. 
+ * All the extractors in the JVM use the same pool of reusable daemon workers, rather than creating a new thread for each model element. 
+ * Calls which time out or fail are counted, so they can be reported after the extraction. 
+*/
+public class ExtractionTimeout {
+	
+	final Logger logger = LoggerFactory.getLogger(ExtractionTimeout.class);
+	
+	// default deadline per model element
+	public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+	
+	static ExtractionTimeout m_instance;
+	
+	private final ExecutorService workers;
+	private final AtomicInteger workerCount = new AtomicInteger();
+	
+	private final AtomicLong calls = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	
+	private ExtractionTimeout() {
+		// cached pool: idle workers are reused, and only a worker stuck in a timed out task is replaced by a new one
+		workers = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "samos-timeout-" + workerCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	public static synchronized ExtractionTimeout getInstance() {
+		if (m_instance == null) {
+			m_instance = new ExtractionTimeout();
+		}
+		return m_instance;
+	}
+	
+	// run the task with the default deadline
+	public <T> T call(Callable<T> task) {
+		return call(task, DEFAULT_TIMEOUT);
+	}
+	
+	// run the task and wait for its result until the deadline. Returns null if the task timed out (it is then cancelled) or failed. 
+	public <T> T call(Callable<T> task, Duration timeout) {
+		calls.incrementAndGet();
+		Future<T> handler = workers.submit(task);
+		try {
+			return handler.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			timeouts.incrementAndGet();
+			logger.warn("Extraction step timed out after " + timeout.toMillis() + " ms");
+			handler.cancel(true);
+		} catch (InterruptedException e) {
+			failures.incrementAndGet();
+			handler.cancel(true);
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			failures.incrementAndGet();
+			e.getCause().printStackTrace();
+		}
+		return null;
+	}
+	
+	public long getCallCount() {return calls.get();}
+	public long getTimeoutCount() {return timeouts.get();}
+	public long getFailureCount() {return failures.get();}
+	
+	public void resetCounters() {
+		calls.set(0);
+		timeouts.set(0);
+		failures.set(0);
+	}
+	
+	@Override
+	public String toString() {
+		return "timed calls: " + calls.get() + ", timeouts: " + timeouts.get() + ", failures: " + failures.get();
+	}
+}
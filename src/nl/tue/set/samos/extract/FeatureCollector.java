@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+
+package nl.tue.set.samos.extract;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Feature sink keeping all the fragments in memory, as the map from fragment keys to features returned by {@link IExtractor#process}. 
+*/
+public class FeatureCollector implements FeatureSink {
+	
+	public final HashMap<String, ArrayList<String>> featureMap = new HashMap<String, ArrayList<String>>();
+	private ArrayList<String> current;
+	
+	@Override
+	public void beginFragment(String key) {
+		current = new ArrayList<String>();
+		featureMap.put(key, current);
+	}
+	
+	@Override
+	public void feature(String feature, int size) {
+		current.add(feature);
+	}
+	
+	@Override
+	public void endFragment() {
+		current = null;
+	}
+}
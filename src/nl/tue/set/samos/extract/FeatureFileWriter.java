@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+
+package nl.tue.set.samos.extract;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.tue.set.samos.common.Constants;
+import nl.tue.set.samos.common.enums.SCOPE;
+import nl.tue.set.samos.common.enums.STRUCTURE;
+import nl.tue.set.samos.feature.Feature;
+import nl.tue.set.samos.feature.corpus.FeatureCorpusWriter;
+
+/**
+ * Feature sink writing each fragment directly into its own feature file in the target folder, and/or into a shared binary feature corpus. 
+ * The fragment size is counted while writing, and a fragment below the minimum size is deleted when it ends. 
+ * 
+ * With a deferred corpus, the parsed fragments are only added to the corpus by flushCorpus, so that the extraction workers can hand them 
+ * over in the order of the model files, and the corpus does not depend on which worker finished first.
+*/
+public class FeatureFileWriter implements FeatureSink {
+	
+	static final Logger logger = LoggerFactory.getLogger(FeatureFileWriter.class);
+	
+	private final File targetFolder;
+	private final int minSize;
+	private final STRUCTURE _STRUCTURE;
+	private final boolean writeFiles;
+	private final FeatureCorpusWriter corpus;
+	private boolean deferCorpus = false;
+	
+	// fragments written so far, with their sizes
+	private final HashMap<String, Integer> fragments = new HashMap<String, Integer>();
+	// places of the fragments written so far in the hierarchy, in the hierarchical extraction
+	private final LinkedHashMap<String, FragmentHierarchy.Fragment> hierarchy = new LinkedHashMap<String, FragmentHierarchy.Fragment>();
+	
+	private String key;
+	private FragmentHierarchy.Fragment node;
+	private File file;
+	private BufferedWriter writer;
+	private boolean failed;
+	// parsed features of the current fragment, encoded into the corpus when the fragment ends (and is kept)
+	private ArrayList<Feature> parsedFeatures = new ArrayList<Feature>();
+	// the ended fragments not added to the corpus yet, with a deferred corpus
+	private final LinkedHashMap<String, ArrayList<Feature>> deferred = new LinkedHashMap<String, ArrayList<Feature>>();
+	private int featureCount, featureSize;
+	
+	public FeatureFileWriter(File targetFolder, int minSize, STRUCTURE _STRUCTURE) {
+		this(targetFolder, minSize, _STRUCTURE, true, null);
+	}
+	
+	// writeFiles: whether to write the feature files, corpus: the corpus to add the fragments to (or null)
+	public FeatureFileWriter(File targetFolder, int minSize, STRUCTURE _STRUCTURE, boolean writeFiles, FeatureCorpusWriter corpus) {
+		this.targetFolder = targetFolder;
+		this.minSize = minSize;
+		this._STRUCTURE = _STRUCTURE;
+		this.writeFiles = writeFiles;
+		this.corpus = corpus;
+	}
+	
+	// add the fragments to the corpus only when flushCorpus is called, instead of when they end
+	public FeatureFileWriter deferCorpus() {
+		deferCorpus = true;
+		return this;
+	}
+	
+	// size of a fragment in model elements, given the number of features and the sum of their sizes
+	public static int getFragmentSize(STRUCTURE _STRUCTURE, int featureCount, int featureSize) {
+		switch (_STRUCTURE) {
+			case UNIGRAM:
+				return featureCount;
+			case BIGRAM:
+				return featureCount + 1;
+			case TRIGRAM:
+				return featureCount + 2;
+			case NTREE:
+				return featureSize - featureCount + 1; // careful, when featureCount == 0
+			default:
+				throw new IllegalArgumentException("size-based printing not defined for " + _STRUCTURE);
+		}
+	}
+	
+	@Override
+	public void beginFragment(String key) {
+		this.key = key;
+		fragments.remove(key);
+		hierarchy.remove(key);
+		node = null;
+		deferred.remove(key);
+		if (corpus != null)
+			corpus.removeFragment(key);
+		file = new File(targetFolder, key + Constants.featureFileSuffix);
+		failed = false;
+		featureCount = 0;
+		featureSize = 0;
+		parsedFeatures = new ArrayList<Feature>();
+		if (writeFiles) {
+			try {
+				writer = new BufferedWriter(new FileWriter(file));
+			} catch (IOException e) {
+				e.printStackTrace();
+				failed = true;
+			}
+		}
+	}
+	
+	@Override
+	public void fragmentHierarchy(String parent, SCOPE scope, String name) {
+		node = new FragmentHierarchy.Fragment(key, parent, scope, name);
+	}
+	
+	@Override
+	public void feature(String feature, int size) {
+		featureCount++;
+		featureSize += size;
+		if (failed)
+			return;
+		if (writer != null) {
+			try {
+				writer.write(feature);
+				writer.write("\n");
+			} catch (IOException e) {
+				e.printStackTrace();
+				failed = true;
+			}
+		}
+		if (corpus != null) {
+			// null features (i.e. unparseable lines) are skipped by the readers anyway  
+			Feature parsed = FeatureCorpusWriter.parse(feature, _STRUCTURE);
+			if (parsed != null)
+				parsedFeatures.add(parsed);
+		}
+	}
+	
+	@Override
+	public void endFragment() {
+		close();
+		int size = getFragmentSize(_STRUCTURE, featureCount, featureSize);
+		if (size >= minSize && !failed && addToCorpus(size)) {
+			fragments.put(key, size);
+			if (node != null) {
+				node.featureCount = featureCount;
+				node.featureSize = featureSize;
+				hierarchy.put(key, node);
+			}
+		}
+		else {
+			if (writeFiles)
+				file.delete();
+			if (size < minSize)
+				logger.info("Not enough model elements (min:" + minSize + "), skipping " + key);
+		}
+		parsedFeatures = null;
+		key = null;
+		node = null;
+		file = null;
+	}
+	
+	private boolean addToCorpus(int size) {
+		if (corpus == null)
+			return true;
+		if (deferCorpus) {
+			deferred.put(key, parsedFeatures);
+			return true;
+		}
+		return addToCorpus(key, parsedFeatures, size);
+	}
+	
+	private boolean addToCorpus(String fragment, ArrayList<Feature> features, int size) {
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		for (Feature feature : features)
+			corpus.writeFeature(feature, encoded);
+		try {
+			corpus.addFragment(fragment, features.size(), size, encoded);
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+	
+	// add the fragments ended so far to the corpus, with a deferred corpus. A fragment which cannot be added is dropped as in endFragment
+	public void flushCorpus() {
+		for (Map.Entry<String, ArrayList<Feature>> entry : deferred.entrySet()) {
+			String fragment = entry.getKey();
+			if (!addToCorpus(fragment, entry.getValue(), fragments.get(fragment))) {
+				fragments.remove(fragment);
+				hierarchy.remove(fragment);
+				if (writeFiles)
+					new File(targetFolder, fragment + Constants.featureFileSuffix).delete();
+			}
+		}
+		deferred.clear();
+	}
+	
+	// delete all the fragments written so far, e.g. when the extraction of the model failed halfway
+	public void discard() {
+		close();
+		if (file != null && writeFiles)
+			file.delete();
+		for (String fragment : fragments.keySet()) {
+			if (writeFiles)
+				new File(targetFolder, fragment + Constants.featureFileSuffix).delete();
+			if (corpus != null)
+				corpus.removeFragment(fragment);
+		}
+		fragments.clear();
+		hierarchy.clear();
+		deferred.clear();
+	}
+	
+	// the written fragments with their sizes
+	public HashMap<String, Integer> getFragments() {
+		return fragments;
+	}
+	
+	// the places of the written fragments in the hierarchy, in the order they were written. Empty unless the extraction is hierarchical
+	public ArrayList<FragmentHierarchy.Fragment> getHierarchy() {
+		return new ArrayList<FragmentHierarchy.Fragment>(hierarchy.values());
+	}
+	
+	private void close() {
+		if (writer == null)
+			return;
+		try {
+			writer.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+			failed = true;
+		}
+		writer = null;
+	}
+}
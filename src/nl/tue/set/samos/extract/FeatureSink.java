@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+
+package nl.tue.set.samos.extract;
+
+import nl.tue.set.samos.common.enums.SCOPE;
+
+/**
+ * Receiver of the features extracted from a model, fragment by fragment (e.g. per model, package or class depending on the scope). 
+ * Features are handed over as they are extracted, so a sink can write them out without keeping the whole model's features in memory. 
+*/
+public interface FeatureSink {
+	
+	// start a new fragment. A later fragment with the same key replaces the earlier one
+	public void beginFragment(String key);
+	
+	// a feature of the current fragment, with its size in model elements (e.g. 1 + number of children for trees)
+	public void feature(String feature, int size);
+	
+	// end of the current fragment
+	public void endFragment();
+	
+	// in the hierarchical extraction, the place of the current fragment in the hierarchy (see FragmentHierarchy.Fragment). Called after beginFragment
+	public default void fragmentHierarchy(String parent, SCOPE scope, String name) {}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.extract;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import nl.tue.set.samos.common.Constants;
+import nl.tue.set.samos.common.enums.SCOPE;
+import nl.tue.set.samos.common.enums.STRUCTURE;
+
+/**
+ * Containment hierarchy of the fragments extracted with the hierarchical scope (SCOPE.HIERARCHY). Each model element is extracted once into the 
+ * finest fragment containing it: a class, a package (its elements outside its classes and subpackages) or the model (its elements outside its packages). 
+ * 
+ * The fragment of a coarser scope is the union of a fragment and all the fragments under it, e.g. a package with its classes and subpackages, 
+ * so its features (and term frequencies) are the sum of theirs. This gives the fragments of all the scopes from a single extraction. 
+*/
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class FragmentHierarchy {
+	
+	static final Logger logger = LoggerFactory.getLogger(FragmentHierarchy.class);
+	
+	public static final String HIERARCHY_FILE = "hierarchy.json";
+	
+	// the structure of the features, for the sizes of the composed fragments
+	public STRUCTURE structure;
+	// the composed fragments below this size (in model elements) are left out, as in the extraction of a single scope 
+	public int minSize;
+	// the extracted fragments, in the order of the models and in preorder within a model
+	public ArrayList<Fragment> fragments = new ArrayList<Fragment>();
+	
+	// an extracted fragment, i.e. a node in the hierarchy
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public static class Fragment {
+		// key of the fragment (i.e. its feature file name without the suffix), and the key of the enclosing one or null for a model
+		public String key;
+		public String parent;
+		// scope and name of the coarser fragment with this fragment as its root, e.g. EPACKAGE and file$package
+		public SCOPE scope;
+		public String name;
+		// number of features and the sum of their sizes 
+		public int featureCount;
+		public int featureSize;
+		
+		public Fragment() {}
+		
+		public Fragment(String key, String parent, SCOPE scope, String name) {
+			this.key = key;
+			this.parent = parent;
+			this.scope = scope;
+			this.name = name;
+		}
+	}
+	
+	// a fragment of a coarser scope, composed of the extracted fragments with the given keys
+	public static class ComposedFragment {
+		public final String name;
+		public final List<String> keys = new ArrayList<String>();
+		public int size;
+		
+		ComposedFragment(String name) {
+			this.name = name;
+		}
+	}
+	
+	public FragmentHierarchy() {}
+	
+	public FragmentHierarchy(STRUCTURE structure, int minSize) {
+		this.structure = structure;
+		this.minSize = minSize;
+	}
+	
+	// the fragments of the given scope, each with the extracted fragments it is composed of, in the order of their names as the feature files. 
+	// As in the extraction of a single scope, a later fragment with the same name replaces the earlier one 
+	public List<ComposedFragment> compose(SCOPE _SCOPE) {
+		HashMap<String, List<Fragment>> children = new HashMap<String, List<Fragment>>();
+		for (Fragment fragment : fragments)
+			if (fragment.parent != null)
+				children.computeIfAbsent(fragment.parent, k -> new ArrayList<Fragment>()).add(fragment);
+		
+		LinkedHashMap<String, ComposedFragment> composed = new LinkedHashMap<String, ComposedFragment>();
+		for (Fragment root : fragments) {
+			if (root.scope != _SCOPE)
+				continue;
+			ComposedFragment target = new ComposedFragment(root.name);
+			int featureCount = 0, featureSize = 0;
+			ArrayDeque<Fragment> stack = new ArrayDeque<Fragment>();
+			stack.push(root);
+			while (!stack.isEmpty()) {
+				Fragment fragment = stack.pop();
+				target.keys.add(fragment.key);
+				featureCount += fragment.featureCount;
+				featureSize += fragment.featureSize;
+				List<Fragment> next = children.get(fragment.key);
+				if (next != null)
+					for (int i = next.size() - 1; i >= 0; i--)
+						stack.push(next.get(i));
+			}
+			target.size = FeatureFileWriter.getFragmentSize(structure, featureCount, featureSize);
+			composed.remove(target.name);
+			if (target.size >= minSize)
+				composed.put(target.name, target);
+			else
+				logger.info("Not enough model elements (min:" + minSize + "), skipping " + target.name);
+		}
+		
+		List<ComposedFragment> result = new ArrayList<ComposedFragment>(composed.values());
+		result.sort((f1, f2) -> (f1.name + Constants.featureFileSuffix).compareTo(f2.name + Constants.featureFileSuffix));
+		return result;
+	}
+	
+	// the hierarchy in the given features folder, or null if there is none or it cannot be read
+	public static FragmentHierarchy load(File folder) {
+		File file = new File(folder, HIERARCHY_FILE);
+		if (!file.exists())
+			return null;
+		try {
+			return new ObjectMapper().readValue(file, FragmentHierarchy.class);
+		} catch (IOException e) {
+			logger.warn("Could not read the fragment hierarchy " + file.getAbsolutePath());
+			return null;
+		}
+	}
+	
+	// write the hierarchy via a temporary file, as the manifest
+	public void save(File folder) throws IOException {
+		File file = new File(folder, HIERARCHY_FILE);
+		File temp = new File(folder, HIERARCHY_FILE + ".tmp");
+		new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(temp, this);
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -27,13 +27,25 @@
 package nl.tue.set.samos.extract;
 
 import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import nl.tue.set.samos.common.enums.SCOPE;
 import nl.tue.set.samos.common.enums.STRUCTURE;
 import nl.tue.set.samos.common.enums.UNIT;
+import nl.tue.set.samos.feature.NTreeApted;
+import nl.tue.set.samos.feature.parser.JSONParser;
 import nl.tue.set.samos.nlp.NLP;
 
 /**
@@ -41,64 +53,314 @@ import nl.tue.set.samos.nlp.NLP;
 */
 public abstract class IExtractor {
 	
+	static final Logger logger = LoggerFactory.getLogger(IExtractor.class);
+	
 	// natural language processing component
 	public NLP nlp;
 	
 	// settings to control preprocessing via NLP.
 	public boolean PREPROCESS_TOKENIZE;
 	public boolean PREPROCESS_LEMMATIZE;
+	// resolve proxies into other resources (may load them), otherwise the names of referenced types are taken from the proxy uris
+	public boolean RESOLVE_PROXIES;
+	// extract every element of a model once per ancestor (i.e. depth + 1 times) in the model scope, reproducing the feature counts of earlier versions
+	public boolean LEGACY_MULTIPLICITY;
+	// caps for the path features (e.g. trigrams) starting from an element: the number of edges followed per element and the number of paths
+	public int MAX_PATH_FANOUT = 64;
+	public int MAX_PATHS_PER_ELEMENT = 4096;
+	// maximum number of elements traversed per model, the elements beyond it are not extracted (non-positive for no limit)
+	public int MAX_ELEMENTS_PER_MODEL = 1000000;
+	// folder for caching the loaded models in a binary form, or null for no caching
+	public File MODEL_CACHE_FOLDER;
 //	public int MIN_FEATURE_COUNT_PER_FRAGMENT;
 	
+	// wordnet is not loaded here, the nlp component loads it only if it is needed
 	public IExtractor(){		
 		nlp = new NLP();
-		nlp.loadWordNet();
 	}	
 	
 	// main method for processing a file and extracting mapped features from it. 
 	public HashMap<String, ArrayList<String>> process(File f, SCOPE _SCOPE, UNIT _UNIT, STRUCTURE _STRUCTURE) {
-		
-		List<Object> allContents = getAllContainedObjectsByType(f, _SCOPE.toString());		
-		String filename = f.getName();
-		
-		HashMap<String, ArrayList<String>> featureMap = new HashMap<String, ArrayList<String>>();
-
+		FeatureCollector collector = new FeatureCollector();
+		process(f, _SCOPE, _UNIT, _STRUCTURE, collector);
+		return collector.featureMap;
+	}
+	
+	// streaming variant: processes a file and hands over the features fragment by fragment to the sink, as they are extracted
+	public void process(File f, SCOPE _SCOPE, UNIT _UNIT, STRUCTURE _STRUCTURE, FeatureSink sink) {
+		process(ModelInput.of(f), _SCOPE, _UNIT, _STRUCTURE, sink);
+	}
+	
+	// processes a model file or archive entry, handing over the features to the sink
+	public void process(ModelInput input, SCOPE _SCOPE, UNIT _UNIT, STRUCTURE _STRUCTURE, FeatureSink sink) {
+		process(input, _SCOPE, new UNIT[] {_UNIT}, new STRUCTURE[] {_STRUCTURE}, new FeatureSink[] {sink});
+	}
+	
+	// processes a model once for several combinations of unit and structure, handing over the features of the i-th combination to the i-th sink
+	public void process(ModelInput input, SCOPE _SCOPE, UNIT[] units, STRUCTURE[] structures, FeatureSink[] sinks) {
+		// the hierarchical extraction takes all the elements, as the model scope
+		List<Object> allContents = getAllContainedObjectsByType(input, (_SCOPE == SCOPE.HIERARCHY ? SCOPE.MODEL : _SCOPE).toString());		
+		process(allContents, input.getName(), _SCOPE, units, structures, sinks);
+	}
+	
+	// processes the model elements of a file (e.g. all of them for the model scope, or just the classes for the class scope) 
+	public void process(List<Object> allContents, String filename, SCOPE _SCOPE, UNIT _UNIT, STRUCTURE _STRUCTURE, FeatureSink sink) {
+		process(allContents, filename, _SCOPE, new UNIT[] {_UNIT}, new STRUCTURE[] {_STRUCTURE}, new FeatureSink[] {sink});
+	}
+	
+	// processes the model elements of a file for several combinations of unit and structure, visiting each element once for all of them
+	public void process(List<Object> allContents, String filename, SCOPE _SCOPE, UNIT[] units, STRUCTURE[] structures, FeatureSink[] sinks) {
 		if (_SCOPE == SCOPE.MODEL) {
-			featureMap.put(filename, new ArrayList<String>());
+			for (FeatureSink sink : sinks)
+				sink.beginFragment(filename);
 			if (allContents != null)
 				for (Object object : allContents) {
-					process(object, featureMap.get(filename), _UNIT, _STRUCTURE);
+					// the list already contains all the (contained) elements, so each one is visited once
+					for (int i = 0; i < sinks.length; i++) {
+						if (LEGACY_MULTIPLICITY)
+							process(object, sinks[i], units[i], structures[i]);
+						else
+							extractFeatures(object, units[i], structures[i], sinks[i]);
+					}
 				}
+			for (FeatureSink sink : sinks)
+				sink.endFragment();
 		}
+		else if (_SCOPE == SCOPE.HIERARCHY)
+			processHierarchy(allContents, filename, units, structures, sinks);
 		else { // lower granularity: e.g. Package or Class
+			// fragments can be nested (e.g. subpackages), the features of a nested one are recorded while processing the enclosing one and replayed
+			Set<Object> fragments = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+			fragments.addAll(allContents);
+			Map<Object, FeatureBuffer[]> nested = new IdentityHashMap<Object, FeatureBuffer[]>();
+			// elements processed so far in the model, shared by all its fragments for the MAX_ELEMENTS_PER_MODEL budget
+			int[] processed = new int[1];
 			for(Object object : allContents){
 				String key = filename + "$" + getName(object);
-				featureMap.put(key, new ArrayList<String>());
-				process(object, featureMap.get(key), _UNIT, _STRUCTURE);
+				for (FeatureSink sink : sinks)
+					sink.beginFragment(key);
+				FeatureBuffer[] buffers = nested.remove(object);
+				boolean complete = true;
+				if (buffers != null) {
+					for (int i = 0; i < sinks.length; i++)
+						buffers[i].replay(sinks[i]);
+				}
+				else
+					complete = processFragment(object, sinks, units, structures, fragments, nested, processed);
+				for (FeatureSink sink : sinks)
+					sink.endFragment();
+				// the model is truncated: the recorded nested fragments may be incomplete, so they are dropped along with the remaining ones
+				if (!complete) {
+					logger.warn("stopped processing " + filename + " after " + MAX_ELEMENTS_PER_MODEL + " elements in the fragment " + key 
+							+ ", its remaining fragments are not extracted");
+					nested.clear();
+					break;
+				}
+			}
+		}
+	}
+	
+	// processes the model elements of a file into the finest fragments (see FragmentHierarchy): one per class, one per package for its elements 
+	// outside its classes and subpackages, and one for the model with the rest. Each element is extracted once, into the fragment of its nearest 
+	// enclosing package or class. The fragments are handed over in the preorder of their roots, each with its place in the hierarchy
+	private void processHierarchy(List<Object> allContents, String filename, UNIT[] units, STRUCTURE[] structures, FeatureSink[] sinks) {
+		if (allContents == null)
+			allContents = Collections.emptyList();
+		Set<Object> contents = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		contents.addAll(allContents);
+		
+		// the elements are in preorder, so the fragment of an element is known before its contents are reached. The model has the null root
+		Map<Object, Object> fragmentOf = new IdentityHashMap<Object, Object>();
+		Map<Object, Object> parents = new IdentityHashMap<Object, Object>();
+		Map<Object, List<Object>> members = new IdentityHashMap<Object, List<Object>>();
+		List<Object> roots = new ArrayList<Object>();
+		roots.add(null);
+		members.put(null, new ArrayList<Object>());
+		for (Object object : allContents) {
+			Object fragment = fragmentOf.get(object);
+			if (getHierarchyScope(object) != null) {
+				parents.put(object, fragment);
+				fragment = object;
+				roots.add(object);
+				members.put(object, new ArrayList<Object>());
 			}
+			members.get(fragment).add(object);
+			for (Object element : getNextElements(object))
+				if (element != null && contents.contains(element) && !fragmentOf.containsKey(element))
+					fragmentOf.put(element, fragment);
 		}
 		
-		return featureMap;
+		Map<Object, String> keys = new IdentityHashMap<Object, String>();
+		Set<String> usedKeys = new HashSet<String>();
+		for (Object root : roots) {
+			String key, parent, name;
+			SCOPE scope;
+			if (root == null) {
+				key = name = filename;
+				parent = null;
+				scope = SCOPE.MODEL;
+			} else {
+				parent = keys.get(parents.get(root));
+				name = filename + "$" + getName(root);
+				scope = getHierarchyScope(root);
+				// nested fragments are keyed by their path, e.g. file$package$class, made unique for elements with the same name
+				key = parent + "$" + getName(root);
+				for (int i = 2; usedKeys.contains(key); i++)
+					key = parent + "$" + getName(root) + "~" + i;
+			}
+			keys.put(root, key);
+			usedKeys.add(key);
+			
+			for (FeatureSink sink : sinks) {
+				sink.beginFragment(key);
+				sink.fragmentHierarchy(parent, scope, name);
+			}
+			for (Object object : members.get(root))
+				for (int i = 0; i < sinks.length; i++)
+					extractFeatures(object, units[i], structures[i], sinks[i]);
+			for (FeatureSink sink : sinks)
+				sink.endFragment();
+		}
 	}
 	
-	// recursive method for processing an in-memory model element and accumulating its features in a list. 
-	public void process(Object currentObject, ArrayList<String> featureList, UNIT _UNIT, STRUCTURE _STRUCTURE) {
-		List<String> currentFeatures = extractFeatures(currentObject, _UNIT, _STRUCTURE);
-		if (currentFeatures != null){
-			featureList.addAll(currentFeatures);
+	// the scope of the coarser fragments with the element as their root, or null if it is not the root of one
+	private SCOPE getHierarchyScope(Object object) {
+		String type = getType(object);
+		if (SCOPE.EPACKAGE.toString().equalsIgnoreCase(type))
+			return SCOPE.EPACKAGE;
+		if (SCOPE.ECLASS.toString().equalsIgnoreCase(type))
+			return SCOPE.ECLASS;
+		return null;
+	}
+	
+	// processes the elements of a fragment in preorder, recording the features of the fragments nested in it. 
+	// iterative with an explicit stack (see ModelTraversal), as each element carries the sinks of the fragment it belongs to.
+	// Returns false if the element budget of the model (counted in processed) ran out before the end of the fragment
+	private boolean processFragment(Object fragment, FeatureSink[] sinks, UNIT[] units, STRUCTURE[] structures, Set<Object> fragments, 
+			Map<Object, FeatureBuffer[]> nested, int[] processed) {
+		Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		ArrayDeque<Object> elements = new ArrayDeque<Object>();
+		ArrayDeque<FeatureSink[]> elementSinks = new ArrayDeque<FeatureSink[]>();
+		elements.push(fragment);
+		elementSinks.push(sinks);
+		while (!elements.isEmpty()) {
+			Object currentObject = elements.pop();
+			FeatureSink[] currentSinks = elementSinks.pop();
+			if (!visited.add(currentObject))
+				continue;
+			if (MAX_ELEMENTS_PER_MODEL > 0 && ++processed[0] > MAX_ELEMENTS_PER_MODEL)
+				return false;
+			for (int i = 0; i < currentSinks.length; i++)
+				extractFeatures(currentObject, units[i], structures[i], currentSinks[i]);
+			
+			List<Object> next = getNextElements(currentObject);
+			for (int j = next.size() - 1; j >= 0; j--) {
+				Object element = next.get(j);
+				if (element == null || visited.contains(element))
+					continue;
+				elements.push(element);
+				if (fragments.contains(element)) {
+					FeatureBuffer[] buffers = new FeatureBuffer[currentSinks.length];
+					for (int i = 0; i < currentSinks.length; i++)
+						buffers[i] = new FeatureBuffer(currentSinks[i]);
+					nested.put(element, buffers);
+					elementSinks.push(buffers);
+				}
+				else
+					elementSinks.push(currentSinks);
+			}
+		}
+		return true;
+	}
+	
+	// sink passing the features on to another one and recording them, so that they can be replayed later 
+	static class FeatureBuffer implements FeatureSink {
+		private final FeatureSink target;
+		private final ArrayList<String> features = new ArrayList<String>();
+		private final ArrayList<Integer> sizes = new ArrayList<Integer>();
+		
+		FeatureBuffer(FeatureSink target) {
+			this.target = target;
 		}
 		
-		for (Object element : getNextElements(currentObject)){
-			process(element, featureList, _UNIT, _STRUCTURE);
+		@Override
+		public void beginFragment(String key) {
+			throw new IllegalStateException("nested fragment " + key);
+		}
+		
+		@Override
+		// records the feature in this buffer and the enclosing ones, walking the chain of buffers iteratively as the fragments can be deeply nested
+		public void feature(String feature, int size) {
+			FeatureSink sink = this;
+			while (sink instanceof FeatureBuffer) {
+				FeatureBuffer buffer = (FeatureBuffer) sink;
+				buffer.features.add(feature);
+				buffer.sizes.add(size);
+				sink = buffer.target;
+			}
+			sink.feature(feature, size);
+		}
+		
+		@Override
+		public void endFragment() {
+			throw new IllegalStateException("nested fragment");
+		}
+		
+		void replay(FeatureSink sink) {
+			for (int i = 0; i < features.size(); i++)
+				sink.feature(features.get(i), sizes.get(i));
 		}
 	}
 	
+	// processes an in-memory model element and the elements under it, accumulating their features in a list. 
+	public void process(Object currentObject, ArrayList<String> featureList, UNIT _UNIT, STRUCTURE _STRUCTURE) {
+		traverse(currentObject, element -> {
+			List<String> currentFeatures = extractFeatures(element, _UNIT, _STRUCTURE);
+			if (currentFeatures != null){
+				featureList.addAll(currentFeatures);
+			}
+		});
+	}
+	
+	// processes an in-memory model element and the elements under it, handing over their features to the sink. 
+	public void process(Object currentObject, FeatureSink sink, UNIT _UNIT, STRUCTURE _STRUCTURE) {
+		traverse(currentObject, element -> extractFeatures(element, _UNIT, _STRUCTURE, sink));
+	}
+	
+	// visits a model element and the elements under it in preorder, within the element budget
+	private void traverse(Object root, Consumer<Object> visitor) {
+		if (!ModelTraversal.preorder(root, this::getNextElements, MAX_ELEMENTS_PER_MODEL, visitor))
+			logger.warn("stopped processing " + getName(root) + " after " + MAX_ELEMENTS_PER_MODEL + " elements");
+	}
+	
+	// extract the immediate features of an object into the sink. Subclasses can override this to provide the feature sizes without parsing the features 
+	public void extractFeatures(Object CURRENT, UNIT _UNIT, STRUCTURE _STRUCTURE, FeatureSink sink) {
+		List<String> currentFeatures = extractFeatures(CURRENT, _UNIT, _STRUCTURE);
+		if (currentFeatures != null){
+			for (String feature : currentFeatures)
+				sink.feature(feature, getFeatureSize(feature, _STRUCTURE));
+		}
+	}
+	
+	// size of a feature in model elements, parsing it if it is a tree
+	public int getFeatureSize(String feature, STRUCTURE _STRUCTURE) {
+		if (_STRUCTURE == STRUCTURE.NTREE)
+			return ((NTreeApted) JSONParser.parseText(feature)).size();
+		return 1;
+	}
 	
 	// to be implemented in concrete subclass
 	public abstract List<String> extractFeatures(Object CURRENT, UNIT _UNIT, STRUCTURE _STRUCTURE);
 	// to be implemented in concrete subclass
 	public abstract List<Object> getNextElements(Object CURRENT);
-	// to be implemented in concrete subclass
-	public abstract List<Object> getAllContainedObjectsByType(File f, String type);
+	// to be implemented in concrete subclass, reading both model files and archive entries
+	public abstract List<Object> getAllContainedObjectsByType(ModelInput input, String type);
+	
+	public List<Object> getAllContainedObjectsByType(File f, String type) {
+		return getAllContainedObjectsByType(ModelInput.of(f), type);
+	}
 	
 	public abstract String getName(Object o);
+	// the type of a model element, as matched against the scope
+	public abstract String getType(Object o);
 }
\ No newline at end of file
@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.extract;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.impl.URIHandlerImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A zip or tar archive of model files, used as the data input instead of a folder. The entries are read directly from the archive, without 
+ * unpacking them, and can be read by several threads at the same time. A gzip compressed tar is decompressed once into a temporary tar file, 
+ * as its entries cannot be read independently otherwise. 
+ * 
+ * The entries are addressed with EMF archive uris (archive:file:/path/models.zip!/path/model.ecore), which the uri handler of the archive 
+ * resolves, so that the references between the models in an archive can be resolved as well. 
+*/
+public class ModelArchive implements Closeable {
+	
+	static final Logger logger = LoggerFactory.getLogger(ModelArchive.class);
+	
+	static final int TAR_BLOCK = 512;
+	
+	private final File file;
+	private final String uriPrefix;
+	private ZipFile zip;
+	private FileChannel tar;
+	private File temporaryTar;
+	// entry path to the (data offset, size) in the tar file
+	private final Map<String, long[]> tarEntries = new LinkedHashMap<String, long[]>();
+	private final ArchiveURIHandler uriHandler = new ArchiveURIHandler();
+	
+	private ModelArchive(File file) {
+		this.file = file;
+		this.uriPrefix = "archive:" + URI.createFileURI(file.getAbsolutePath()) + "!/";
+	}
+	
+	// whether the data input is an archive rather than a folder
+	public static boolean isArchive(File f) {
+		String name = f.getName().toLowerCase();
+		return f.isFile() && (name.endsWith(".zip") || name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz"));
+	}
+	
+	public static ModelArchive open(File f) throws IOException {
+		ModelArchive archive = new ModelArchive(f);
+		try {
+			String name = f.getName().toLowerCase();
+			if (name.endsWith(".zip"))
+				archive.zip = new ZipFile(f);
+			else if (name.endsWith(".tar"))
+				archive.openTar(f);
+			else {
+				archive.temporaryTar = File.createTempFile("samos-", ".tar");
+				try (InputStream in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(f)), 64 * 1024)) {
+					Files.copy(in, archive.temporaryTar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+				archive.openTar(archive.temporaryTar);
+			}
+		} catch (IOException e) {
+			archive.close();
+			throw e;
+		}
+		return archive;
+	}
+	
+	public File getFile() {
+		return file;
+	}
+	
+	// the model files in the archive with the given extension, sorted by name. Entries with the same file name (in different folders) are left out
+	public List<ModelInput> getInputs(String extension) {
+		Map<String, ModelInput> inputs = new LinkedHashMap<String, ModelInput>();
+		for (String path : getEntryPaths()) {
+			String name = path.substring(path.lastIndexOf('/') + 1);
+			if (path.endsWith("/") || path.startsWith("__MACOSX/") || name.contains("DS_Store") || !name.toLowerCase().endsWith(extension))
+				continue;
+			if (inputs.containsKey(name)) {
+				logger.warn("Skipping " + path + " in " + file.getName() + ", there is another model named " + name);
+				continue;
+			}
+			inputs.put(name, new ModelInput(name, this, path));
+		}
+		List<ModelInput> sorted = new ArrayList<ModelInput>(inputs.values());
+		sorted.sort((i1, i2) -> i1.getName().compareTo(i2.getName()));
+		return sorted;
+	}
+	
+	private List<String> getEntryPaths() {
+		if (zip == null)
+			return new ArrayList<String>(tarEntries.keySet());
+		List<String> paths = new ArrayList<String>();
+		Enumeration<? extends ZipEntry> entries = zip.entries();
+		while (entries.hasMoreElements())
+			paths.add(entries.nextElement().getName());
+		return paths;
+	}
+	
+	// reads an entry, thread safe 
+	public InputStream open(String path) throws IOException {
+		if (zip != null) {
+			ZipEntry entry = zip.getEntry(path);
+			if (entry == null)
+				throw new IOException("No entry " + path + " in " + file.getPath());
+			return zip.getInputStream(entry);
+		}
+		long[] range = tarEntries.get(path);
+		if (range == null)
+			throw new IOException("No entry " + path + " in " + file.getPath());
+		return new BufferedInputStream(new ChannelRangeInputStream(tar, range[0], range[1]));
+	}
+	
+	public boolean contains(String path) {
+		return zip != null ? zip.getEntry(path) != null : tarEntries.containsKey(path);
+	}
+	
+	// EMF uri of an entry
+	public URI getURI(String path) {
+		StringBuilder uri = new StringBuilder(uriPrefix);
+		String[] segments = path.split("/");
+		for (int i = 0; i < segments.length; i++)
+			uri.append(i == 0 ? "" : "/").append(URI.encodeSegment(segments[i], false));
+		return URI.createURI(uri.toString());
+	}
+	
+	public URIHandlerImpl getURIHandler() {
+		return uriHandler;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		try {
+			if (zip != null)
+				zip.close();
+			if (tar != null)
+				tar.close();
+		} finally {
+			if (temporaryTar != null)
+				temporaryTar.delete();
+		}
+	}
+	
+	// index the regular files of a (ustar or gnu) tar file 
+	private void openTar(File f) throws IOException {
+		tar = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+		ByteBuffer header = ByteBuffer.allocate(TAR_BLOCK);
+		long position = 0;
+		String longName = null;
+		while (true) {
+			header.clear();
+			readFully(tar, header, position);
+			byte[] block = header.array();
+			if (block[0] == 0) // end of archive
+				break;
+			long size = parseTarNumber(block, 124, 12);
+			char type = (char) block[156];
+			long data = position + TAR_BLOCK;
+			position = data + (size + TAR_BLOCK - 1) / TAR_BLOCK * TAR_BLOCK;
+			
+			if (type == 'L') { // gnu long name of the next entry
+				longName = trimNull(readString(tar, data, (int) size));
+				continue;
+			}
+			if (type == 'x') { // pax extended header, only the path is used
+				String path = parsePaxPath(readString(tar, data, (int) size));
+				if (path != null)
+					longName = path;
+				continue;
+			}
+			
+			String name = longName;
+			longName = null;
+			if (name == null) {
+				name = tarString(block, 0, 100);
+				String prefix = tarString(block, 345, 155);
+				if (new String(block, 257, 5, StandardCharsets.US_ASCII).equals("ustar") && !prefix.isEmpty())
+					name = prefix + "/" + name;
+			}
+			if (type == '0' || type == 0)
+				tarEntries.put(name, new long[] {data, size});
+		}
+	}
+	
+	private static String readString(FileChannel channel, long position, int size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		readFully(channel, buffer, position);
+		return new String(buffer.array(), StandardCharsets.UTF_8);
+	}
+	
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0)
+				throw new EOFException("Truncated tar file");
+			position += read;
+		}
+	}
+	
+	private static String tarString(byte[] block, int offset, int length) {
+		return trimNull(new String(block, offset, length, StandardCharsets.UTF_8));
+	}
+	
+	private static String trimNull(String s) {
+		int end = s.indexOf(0);
+		return end < 0 ? s : s.substring(0, end);
+	}
+	
+	// octal, or base-256 for large numbers (gnu)
+	private static long parseTarNumber(byte[] block, int offset, int length) {
+		if ((block[offset] & 0x80) != 0) {
+			long value = block[offset] & 0x7f;
+			for (int i = 1; i < length; i++)
+				value = (value << 8) | (block[offset + i] & 0xff);
+			return value;
+		}
+		String octal = tarString(block, offset, length).trim();
+		return octal.isEmpty() ? 0 : Long.parseLong(octal, 8);
+	}
+	
+	// records are formatted as "<length> <key>=<value>\n"
+	private static String parsePaxPath(String records) {
+		for (String record : records.split("\n")) {
+			int space = record.indexOf(' ');
+			if (space >= 0 && record.startsWith("path=", space + 1))
+				return record.substring(space + 1 + "path=".length());
+		}
+		return null;
+	}
+	
+	// input stream over a range of a file channel, with positional reads so that the channel can be shared between threads 
+	static class ChannelRangeInputStream extends InputStream {
+		private final FileChannel channel;
+		private long position;
+		private final long end;
+		
+		ChannelRangeInputStream(FileChannel channel, long position, long size) {
+			this.channel = channel;
+			this.position = position;
+			this.end = position + size;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (position >= end)
+				return -1;
+			int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+			if (read > 0)
+				position += read;
+			return read;
+		}
+		
+		@Override
+		public int available() {
+			return (int) Math.min(Integer.MAX_VALUE, end - position);
+		}
+	}
+	
+	// serves the archive uris of the entries to EMF
+	class ArchiveURIHandler extends URIHandlerImpl {
+		
+		@Override
+		public boolean canHandle(URI uri) {
+			return uri.isArchive() && uri.toString().startsWith(uriPrefix);
+		}
+		
+		@Override
+		public InputStream createInputStream(URI uri, Map<?, ?> options) throws IOException {
+			return open(getPath(uri));
+		}
+		
+		@Override
+		public boolean exists(URI uri, Map<?, ?> options) {
+			return contains(getPath(uri));
+		}
+		
+		@Override
+		public Map<String, ?> getAttributes(URI uri, Map<?, ?> options) {
+			return Collections.emptyMap();
+		}
+		
+		private String getPath(URI uri) {
+			return URI.decode(uri.toString().substring(uriPrefix.length()));
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.extract;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.eclipse.emf.common.util.URI;
+
+/**
+ * A model file to be extracted, either a file in the data folder or an entry of a model archive. The name identifies the model in the 
+ * extracted features (i.e. the fragment keys) and in the extraction manifest.
+*/
+public class ModelInput {
+	
+	private final String name;
+	private final File file;
+	private final ModelArchive archive;
+	private final String entry;
+	
+	private ModelInput(String name, File file, ModelArchive archive, String entry) {
+		this.name = name;
+		this.file = file;
+		this.archive = archive;
+		this.entry = entry;
+	}
+	
+	ModelInput(String name, ModelArchive archive, String entry) {
+		this(name, null, archive, entry);
+	}
+	
+	public static ModelInput of(File f) {
+		return new ModelInput(f.getName(), f, null, null);
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	// the file, or null for an archive entry
+	public File getFile() {
+		return file;
+	}
+	
+	// the archive of the entry, or null for a file
+	public ModelArchive getArchive() {
+		return archive;
+	}
+	
+	public URI getURI() {
+		return file != null ? URI.createFileURI(file.getAbsolutePath()) : archive.getURI(entry);
+	}
+	
+	public InputStream open() throws IOException {
+		return file != null ? new FileInputStream(file) : archive.open(entry);
+	}
+	
+	// the path for the log messages
+	public String getPath() {
+		return file != null ? file.getAbsolutePath() : archive.getFile().getPath() + "!/" + entry;
+	}
+	
+	@Override
+	public String toString() {
+		return getPath();
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.extract;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Iterative preorder traversal of model elements, with an explicit stack instead of recursion so that deeply nested models do not overflow 
+ * the thread stack. The elements are visited in the same order as the recursive traversal, but each element at most once (by identity), 
+ * which guards against cycles in the traversed edges, and the traversal can be limited to a budget of elements.
+*/
+public class ModelTraversal {
+	
+	private ModelTraversal() {
+	}
+	
+	// visits the elements reachable from the root via the children function in preorder, stopping after budget elements (non-positive for no budget). 
+	// returns false if the traversal was stopped by the budget
+	public static <T> boolean preorder(T root, Function<? super T, ? extends List<? extends T>> children, int budget, Consumer<? super T> visitor) {
+		Set<T> visited = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+		ArrayDeque<T> stack = new ArrayDeque<T>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			T element = stack.pop();
+			if (!visited.add(element))
+				continue;
+			if (budget > 0 && visited.size() > budget)
+				return false;
+			visitor.accept(element);
+			
+			// pushed in reverse, so that the first child is visited first
+			List<? extends T> next = children.apply(element);
+			for (int i = next.size() - 1; i >= 0; i--)
+				if (next.get(i) != null && !visited.contains(next.get(i)))
+					stack.push(next.get(i));
+		}
+		return true;
+	}
+}
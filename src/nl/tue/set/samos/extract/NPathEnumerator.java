@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.extract;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import nl.tue.set.samos.common.Pair;
+
+/**
+ * Lazy enumeration of the paths of n model elements starting from a given element, following the edges returned by a neighbour function 
+ * (i.e. the elements along with the edge labels). The paths are generated depth-first and handed over one by one, so only the current path 
+ * and the neighbours of its elements are kept in memory. To keep the enumeration bounded for densely connected models, only the first 
+ * maxFanout edges of each element are followed, an element is not visited twice on the same path (e.g. cyclic supertype chains) and 
+ * the enumeration stops after maxPaths paths.
+*/
+public class NPathEnumerator {
+	
+	// receives each path, the arrays are reused for the next path so they should be copied if kept
+	public interface PathVisitor {
+		public void visit(Object[] nodes, String[] edges);
+	}
+	
+	private final int n;
+	private final int maxFanout;
+	private final int maxPaths;
+	private final Function<Object, Pair<List<Object>, List<String>>> neighbours;
+	
+	// n: the number of elements on a path, maxFanout and maxPaths: the caps per element (non-positive for no cap)
+	public NPathEnumerator(int n, int maxFanout, int maxPaths, Function<Object, Pair<List<Object>, List<String>>> neighbours) {
+		if (n < 1)
+			throw new IllegalArgumentException("path length " + n);
+		this.n = n;
+		this.maxFanout = maxFanout;
+		this.maxPaths = maxPaths;
+		this.neighbours = neighbours;
+	}
+	
+	// enumerates the paths starting from the given element, and returns their number
+	public int enumerate(Object start, PathVisitor visitor) {
+		Object[] nodes = new Object[n];
+		String[] edges = new String[n - 1];
+		// the neighbours of the elements on the current path and the index of the next one to follow
+		List<Pair<List<Object>, List<String>>> next = new ArrayList<Pair<List<Object>, List<String>>>(Collections.nCopies(n - 1, null));
+		int[] index = new int[n - 1];
+		
+		nodes[0] = start;
+		if (n == 1) {
+			visitor.visit(nodes, edges);
+			return 1;
+		}
+		
+		int count = 0;
+		int depth = 0;
+		next.set(0, neighbours.apply(start));
+		while (depth >= 0) {
+			Pair<List<Object>, List<String>> current = next.get(depth);
+			if (current == null || index[depth] >= getFanout(current)) {
+				// backtrack
+				next.set(depth, null);
+				index[depth] = 0;
+				depth--;
+				continue;
+			}
+			
+			int i = index[depth]++;
+			Object node = current.x.get(i);
+			if (node == null || isOnPath(node, nodes, depth))
+				continue;
+			nodes[depth + 1] = node;
+			edges[depth] = current.y.get(i);
+			
+			if (depth + 2 == n) {
+				visitor.visit(nodes, edges);
+				if (++count == maxPaths)
+					return count;
+			} else {
+				depth++;
+				next.set(depth, neighbours.apply(node));
+			}
+		}
+		return count;
+	}
+	
+	private int getFanout(Pair<List<Object>, List<String>> current) {
+		int size = current.x.size();
+		return (maxFanout > 0 ? Math.min(maxFanout, size) : size);
+	}
+	
+	// cycle guard, the paths are short so a linear scan is enough
+	private static boolean isOnPath(Object node, Object[] nodes, int depth) {
+		for (int i = 0; i <= depth; i++)
+			if (nodes[i] == node)
+				return true;
+		return false;
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.extract;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.ENamedElement;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EOperation;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.ETypedElement;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.util.InternalEList;
+
+/**
+ * Offline access to the referenced types of model elements (eType, eSuperTypes, eExceptions, eOpposite), without resolving proxies into other resources. 
+ * 
+ * Proxies pointing into the same resource or into a registered package (e.g. Ecore itself) are resolved, as this never loads anything. 
+ * For the remaining proxies the name is taken from the last segment of the proxy URI fragment, and cached per URI for the whole corpus.  
+*/
+public class ProxyNameResolver {
+	
+	// upper limit for the name cache, it is simply cleared when full 
+	public static final int MAX_CACHE_SIZE = 1000000;
+	
+	private static final ConcurrentHashMap<String, String> nameCache = new ConcurrentHashMap<String, String>();
+	
+	// name of a (possibly proxy) element: its own name if it has one, otherwise the name derived from its URI
+	public static String getName(EObject object) {
+		if (object == null)
+			return null;
+		if (object instanceof ENamedElement) {
+			String name = ((ENamedElement) object).getName();
+			if (name != null && !name.equals(""))
+				return name;
+		}
+		return getNameFromURI(object.eIsProxy()?((InternalEObject) object).eProxyURI():EcoreUtil.getURI(object));
+	}
+	
+	// name derived from the last segment of the URI fragment, e.g. Book for file:/models/lib.ecore#//Book or for #/0/Book
+	public static String getNameFromURI(URI uri) {
+		if (uri == null)
+			return null;
+		String key = uri.toString();
+		String name = nameCache.get(key);
+		if (name == null) {
+			String fragment = uri.fragment();
+			if (fragment == null)
+				name = "";
+			else {
+				name = URI.decode(fragment.substring(fragment.lastIndexOf('/') + 1));
+			}
+			if (nameCache.size() >= MAX_CACHE_SIZE)
+				nameCache.clear();
+			nameCache.put(key, name);
+		}
+		return name;
+	}
+	
+	// the type of a typed element, without loading other resources
+	public static EClassifier getEType(ETypedElement element) {
+		EClassifier type = (EClassifier) element.eGet(EcorePackage.Literals.ETYPED_ELEMENT__ETYPE, false);
+		return resolveLocally(type, element);
+	}
+	
+	// the supertypes of a class, without loading other resources
+	@SuppressWarnings("unchecked")
+	public static List<EClass> getESuperTypes(EClass eClass) {
+		List<EClass> superTypes = ((InternalEList<EClass>) eClass.getESuperTypes()).basicList();
+		return resolveLocally(superTypes, eClass);
+	}
+	
+	// the exceptions of an operation, without loading other resources
+	@SuppressWarnings("unchecked")
+	public static List<EClassifier> getEExceptions(EOperation operation) {
+		List<EClassifier> exceptions = ((InternalEList<EClassifier>) operation.getEExceptions()).basicList();
+		return resolveLocally(exceptions, operation);
+	}
+	
+	// the opposite of a reference, without loading other resources
+	public static EReference getEOpposite(EReference reference) {
+		EReference opposite = (EReference) reference.eGet(EcorePackage.Literals.EREFERENCE__EOPPOSITE, false);
+		return resolveLocally(opposite, reference);
+	}
+	
+	private static <T extends EObject> List<T> resolveLocally(List<T> objects, EObject context) {
+		for (int i=0; i<objects.size(); i++) {
+			T object = objects.get(i);
+			if (object != null && object.eIsProxy()) {
+				// copy only if there is a proxy to replace
+				List<T> resolved = new ArrayList<T>(objects);
+				for (int j=i; j<resolved.size(); j++)
+					resolved.set(j, resolveLocally(resolved.get(j), context));
+				return resolved;
+			}
+		}
+		return objects;
+	}
+	
+	// resolve the proxy only if the target is in the same resource or in a registered package, otherwise keep the proxy
+	@SuppressWarnings("unchecked")
+	public static <T extends EObject> T resolveLocally(T object, EObject context) {
+		if (object == null || !object.eIsProxy())
+			return object;
+		URI proxyURI = ((InternalEObject) object).eProxyURI();
+		URI target = proxyURI.trimFragment();
+		Resource resource = context.eResource();
+		boolean isLocal = target.isEmpty() 
+				|| (resource != null && target.equals(resource.getURI()))
+				|| EPackage.Registry.INSTANCE.containsKey(target.toString());
+		if (!isLocal)
+			return object;
+		EObject resolved = EcoreUtil.resolve(object, context);
+		// keep the proxy if the target could not be found, or is not of the expected type 
+		if (resolved.eIsProxy() || !object.eClass().isInstance(resolved))
+			return object;
+		return (T) resolved;
+	}
+}
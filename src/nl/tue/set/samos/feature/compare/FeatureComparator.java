@@ -98,8 +98,6 @@ public class FeatureComparator {
 		fillTempDataStructures();
 		
 		apted = new APTED<>(new FeatureCostModel(this));
-		
-		nlp.loadWordNet();
 	}
 	
 	public static void arrayCopy(double[][] aSource, double[][] aDestination) {
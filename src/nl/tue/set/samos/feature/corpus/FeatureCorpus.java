@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+
+package nl.tue.set.samos.feature.corpus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import nl.tue.set.samos.common.Constants;
+import nl.tue.set.samos.feature.AttributedNode;
+import nl.tue.set.samos.feature.Feature;
+import nl.tue.set.samos.feature.NGram;
+import nl.tue.set.samos.feature.NTreeApted;
+import nl.tue.set.samos.feature.SimpleFeature;
+import nl.tue.set.samos.feature.SimpleName;
+import nl.tue.set.samos.feature.SimpleType;
+import nl.tue.set.samos.feature.TypedName;
+import nl.tue.set.samos.feature.TypedValuedName;
+import nl.tue.set.samos.feature.compare.AptedNodeCustom;
+
+/**
+ * Memory-mapped reader for a binary feature corpus, holding the (parsed) features of all the models or model fragments in a single indexed file. 
+ * 
+ * All the strings (names, types, attribute keys and values) are interned in a dictionary, and the features are stored as tuples of dictionary ids. 
+ * The layout of the file is: 
+ * 
+ * - header		magic, version, counts and the offsets of the sections below
+ * - data		per fragment its features, variable-length encoded
+ * - dictionary	string offsets followed by the UTF-8 encoded strings
+ * - index		per fragment the name id, feature count, size and data offset, sorted in the order of the feature file names 
+*/
+public class FeatureCorpus {
+	
+	public static final String CORPUS_FILE = "features.corpus";
+	
+	static final long MAGIC = 0x53414d4f53464331L; // SAMOSFC1
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 48;
+	static final int INDEX_ENTRY_SIZE = 20;
+	
+	// feature tags
+	static final int NULL = 0, NGRAM = 1, NTREE = 2;
+	static final int SIMPLE_NAME = 1, SIMPLE_TYPE = 2, TYPED_NAME = 3, TYPED_VALUED_NAME = 4, ATTRIBUTED_NODE = 5;
+	
+	private final File file;
+	private final ByteBuffer buffer;
+	private final String[] strings;
+	private final int fragmentCount;
+	private final int indexOffset;
+	
+	private FeatureCorpus(File file, ByteBuffer buffer) throws IOException {
+		this.file = file;
+		this.buffer = buffer;
+		if (buffer.getLong(0) != MAGIC || buffer.getInt(8) != VERSION)
+			throw new IOException("Not a feature corpus (or an unsupported version): " + file.getAbsolutePath());
+		fragmentCount = buffer.getInt(12);
+		int stringCount = buffer.getInt(16);
+		int dictionaryOffset = (int) buffer.getLong(24);
+		indexOffset = (int) buffer.getLong(32);
+		
+		// load the dictionary up front, so the decoded features share the string instances
+		strings = new String[stringCount];
+		int blobOffset = dictionaryOffset + 4 * (stringCount + 1);
+		for (int i=0; i<stringCount; i++) {
+			int start = buffer.getInt(dictionaryOffset + 4 * i), end = buffer.getInt(dictionaryOffset + 4 * (i + 1));
+			byte[] bytes = new byte[end - start];
+			ByteBuffer view = buffer.duplicate();
+			view.position(blobOffset + start);
+			view.get(bytes);
+			strings[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+	
+	// open the corpus in the given features folder (the mapping is released by the garbage collector), or return null if there is none 
+	public static FeatureCorpus open(String featureFolder) throws IOException {
+		File file = new File(featureFolder, CORPUS_FILE);
+		if (!file.exists())
+			return null;
+		return open(file);
+	}
+	
+	public static FeatureCorpus open(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("Feature corpus larger than 2GB, not supported: " + file.getAbsolutePath());
+			// the mapping stays valid after closing the channel
+			return new FeatureCorpus(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+	
+	public static boolean exists(String featureFolder) {
+		return new File(featureFolder, CORPUS_FILE).exists();
+	}
+	
+	public File getFile() {
+		return file;
+	}
+	
+	// number of fragments (i.e. models or model fragments)
+	public int size() {
+		return fragmentCount;
+	}
+	
+	// the key of the i-th fragment, same as its feature file name without the suffix
+	public String getName(int i) {
+		return strings[buffer.getInt(indexOffset + i * INDEX_ENTRY_SIZE)];
+	}
+	
+	public int getFeatureCount(int i) {
+		return buffer.getInt(indexOffset + i * INDEX_ENTRY_SIZE + 4);
+	}
+	
+	// size of the i-th fragment in model elements, as computed during extraction
+	public int getFragmentSize(int i) {
+		return buffer.getInt(indexOffset + i * INDEX_ENTRY_SIZE + 8);
+	}
+	
+	// index of the fragment with the given key, or a negative number if not found
+	public int indexOf(String key) {
+		String target = key + Constants.featureFileSuffix;
+		int low = 0, high = fragmentCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = (getName(mid) + Constants.featureFileSuffix).compareTo(target);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -(low + 1);
+	}
+	
+	// decode the features of the i-th fragment 
+	public ArrayList<Feature> getFeatures(int i) {
+		int count = getFeatureCount(i);
+		ByteBuffer in = buffer.duplicate();
+		in.position((int) buffer.getLong(indexOffset + i * INDEX_ENTRY_SIZE + 12));
+		ArrayList<Feature> features = new ArrayList<Feature>(count);
+		for (int k=0; k<count; k++)
+			features.add(readFeature(in));
+		return features;
+	}
+	
+	public String getString(int id) {
+		return strings[id];
+	}
+	
+	private Feature readFeature(ByteBuffer in) {
+		int tag = in.get();
+		switch (tag) {
+			case NGRAM:
+				return readNGram(in);
+			case NTREE:
+				return new NTreeApted(readNode(in));
+			default:
+				return null;
+		}
+	}
+	
+	private AptedNodeCustom<Feature> readNode(ByteBuffer in) {
+		AptedNodeCustom<Feature> node = new AptedNodeCustom<Feature>(readFeature(in));
+		int childCount = readVarInt(in);
+		for (int i=0; i<childCount; i++)
+			node.addChild(readNode(in));
+		return node;
+	}
+	
+	private NGram readNGram(ByteBuffer in) {
+		int n = readVarInt(in);
+		ArrayList<SimpleFeature> features = new ArrayList<SimpleFeature>(n);
+		for (int i=0; i<n; i++)
+			features.add(readSimpleFeature(in));
+		return new NGram(features);
+	}
+	
+	private SimpleFeature readSimpleFeature(ByteBuffer in) {
+		int tag = in.get();
+		switch (tag) {
+			case SIMPLE_NAME:
+				return new SimpleName(readString(in));
+			case SIMPLE_TYPE:
+				return new SimpleType(readString(in));
+			case TYPED_NAME:
+				return new TypedName(readString(in), readString(in));
+			case TYPED_VALUED_NAME:
+				return new TypedValuedName(readString(in), readString(in), readString(in), readString(in));
+			case ATTRIBUTED_NODE:
+				int size = readVarInt(in);
+				HashMap<String, Object> keyValueMap = new HashMap<String, Object>();
+				for (int i=0; i<size; i++)
+					keyValueMap.put(readString(in), readString(in));
+				return new AttributedNode(keyValueMap);
+			default:
+				return null;
+		}
+	}
+	
+	// strings are stored as dictionary id + 1, 0 meaning null
+	private String readString(ByteBuffer in) {
+		int id = readVarInt(in);
+		return id == 0 ? null : strings[id - 1];
+	}
+	
+	static int readVarInt(ByteBuffer in) {
+		int value = 0, shift = 0;
+		byte b;
+		do {
+			b = in.get();
+			value |= (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+
+package nl.tue.set.samos.feature.corpus;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nl.tue.set.samos.common.Constants;
+import nl.tue.set.samos.common.enums.STRUCTURE;
+import nl.tue.set.samos.feature.AttributedNode;
+import nl.tue.set.samos.feature.Feature;
+import nl.tue.set.samos.feature.NGram;
+import nl.tue.set.samos.feature.NTreeApted;
+import nl.tue.set.samos.feature.SimpleFeature;
+import nl.tue.set.samos.feature.SimpleName;
+import nl.tue.set.samos.feature.SimpleType;
+import nl.tue.set.samos.feature.TypedName;
+import nl.tue.set.samos.feature.TypedValuedName;
+import nl.tue.set.samos.feature.parser.JSONParser;
+import nl.tue.set.samos.feature.parser.PlainTextParser;
+import node.Node;
+
+/**
+ * Writer for a binary feature corpus (see {@link FeatureCorpus} for the format). Fragments can be added concurrently by several extraction workers. 
+ * The fragment data is appended to a temporary file as it comes, and the dictionary and index are written when the corpus is closed. 
+*/
+public class FeatureCorpusWriter {
+	
+	static final Logger logger = LoggerFactory.getLogger(FeatureCorpusWriter.class);
+	
+	private final File file;
+	private final File dataFile;
+	private final DataOutputStream data;
+	private long dataSize = 0;
+	
+	// string dictionary
+	private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+	private final ArrayList<String> strings = new ArrayList<String>();
+	
+	// fragment key -> {data offset, feature count, size}. A later fragment with the same key replaces the earlier one
+	private final HashMap<String, long[]> fragments = new HashMap<String, long[]>();
+	
+	public FeatureCorpusWriter(String featureFolder) throws IOException {
+		file = new File(featureFolder, FeatureCorpus.CORPUS_FILE);
+		dataFile = new File(featureFolder, FeatureCorpus.CORPUS_FILE + ".data.tmp");
+		data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile), 1 << 16));
+	}
+	
+	// parse a feature line as written in the feature files
+	public static Feature parse(String feature, STRUCTURE _STRUCTURE) {
+		if (_STRUCTURE == STRUCTURE.NTREE)
+			return JSONParser.parseText(feature);
+		else
+			return PlainTextParser.parseText(feature);
+	}
+	
+	// add a fragment with its features encoded by writeFeature
+	public synchronized void addFragment(String key, int featureCount, int size, ByteArrayOutputStream encoded) throws IOException {
+		fragments.put(key, new long[]{dataSize, featureCount, size});
+		encoded.writeTo(data);
+		dataSize += encoded.size();
+	}
+	
+	public synchronized void removeFragment(String key) {
+		fragments.remove(key);
+	}
+	
+	// copy the given fragment from another corpus, e.g. from the previous extraction for an unchanged model
+	public void copyFragment(FeatureCorpus from, int i) throws IOException {
+		ArrayList<Feature> features = from.getFeatures(i);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (Feature feature : features)
+			writeFeature(feature, out);
+		addFragment(from.getName(i), features.size(), from.getFragmentSize(i), out);
+	}
+	
+	// encode a feature with the dictionary of this corpus
+	public void writeFeature(Feature feature, ByteArrayOutputStream out) {
+		if (feature instanceof NTreeApted) {
+			out.write(FeatureCorpus.NTREE);
+			writeNode(((NTreeApted) feature).aptedTree, out);
+		} else if (feature instanceof NGram) {
+			out.write(FeatureCorpus.NGRAM);
+			NGram ngram = (NGram) feature;
+			writeVarInt(ngram.n, out);
+			for (SimpleFeature simpleFeature : ngram.getFeatures())
+				writeSimpleFeature(simpleFeature, out);
+		} else
+			out.write(FeatureCorpus.NULL);
+	}
+	
+	private void writeNode(Node<Feature> node, ByteArrayOutputStream out) {
+		writeFeature(node.getNodeData(), out);
+		writeVarInt(node.getChildren().size(), out);
+		for (Node<Feature> child : node.getChildren())
+			writeNode(child, out);
+	}
+	
+	private void writeSimpleFeature(SimpleFeature feature, ByteArrayOutputStream out) {
+		if (feature instanceof SimpleName) {
+			out.write(FeatureCorpus.SIMPLE_NAME);
+			writeString(((SimpleName) feature).getName(), out);
+		} else if (feature instanceof SimpleType) {
+			out.write(FeatureCorpus.SIMPLE_TYPE);
+			writeString(((SimpleType) feature).getType(), out);
+		} else if (feature instanceof TypedValuedName) {
+			TypedValuedName typedValuedName = (TypedValuedName) feature;
+			out.write(FeatureCorpus.TYPED_VALUED_NAME);
+			writeString(typedValuedName.getType(), out);
+			writeString(typedValuedName.getName(), out);
+			writeString(typedValuedName.getTypeValue().getType(), out);
+			writeString(typedValuedName.getTypeValue().getName(), out);
+		} else if (feature instanceof TypedName) {
+			out.write(FeatureCorpus.TYPED_NAME);
+			writeString(((TypedName) feature).getType(), out);
+			writeString(((TypedName) feature).getName(), out);
+		} else if (feature instanceof AttributedNode) {
+			// values are kept as strings, as they are only accessed through their string representation
+			AttributedNode node = (AttributedNode) feature;
+			out.write(FeatureCorpus.ATTRIBUTED_NODE);
+			writeVarInt(node.size(), out);
+			for (String key : node.getAttributes()) {
+				writeString(key, out);
+				writeString(node.getAttribute(key), out);
+			}
+		} else
+			out.write(FeatureCorpus.NULL);
+	}
+	
+	private void writeString(String s, ByteArrayOutputStream out) {
+		writeVarInt(s == null ? 0 : intern(s) + 1, out);
+	}
+	
+	private synchronized int intern(String s) {
+		Integer id = ids.get(s);
+		if (id == null) {
+			id = strings.size();
+			ids.put(s, id);
+			strings.add(s);
+		}
+		return id;
+	}
+	
+	static void writeVarInt(int value, OutputStream out) {
+		try {
+			while ((value & ~0x7f) != 0) {
+				out.write((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			out.write(value);
+		} catch (IOException e) { // not thrown by byte array streams
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	// write the dictionary and the index, and replace the corpus file
+	public synchronized void close() throws IOException {
+		data.close();
+		
+		// fragments in the order of their feature file names, as the feature files are processed in that order 
+		TreeMap<String, Map.Entry<String, long[]>> sorted = new TreeMap<String, Map.Entry<String, long[]>>();
+		for (Map.Entry<String, long[]> entry : fragments.entrySet()) {
+			intern(entry.getKey());
+			sorted.put(entry.getKey() + Constants.featureFileSuffix, entry);
+		}
+		
+		File temp = new File(file.getPath() + ".tmp");
+		try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+			raf.setLength(0);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(raf.getFD()), 1 << 16));
+			out.write(new byte[FeatureCorpus.HEADER_SIZE]);
+			
+			// data
+			try (InputStream in = new FileInputStream(dataFile)) {
+				IOUtils.copy(in, out);
+			}
+			
+			// dictionary
+			long dictionaryOffset = FeatureCorpus.HEADER_SIZE + dataSize;
+			ArrayList<byte[]> encoded = new ArrayList<byte[]>(strings.size());
+			int blobSize = 0;
+			out.writeInt(0);
+			for (String s : strings) {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				encoded.add(bytes);
+				blobSize += bytes.length;
+				out.writeInt(blobSize);
+			}
+			for (byte[] bytes : encoded)
+				out.write(bytes);
+			
+			// index
+			long indexOffset = dictionaryOffset + 4L * (strings.size() + 1) + blobSize;
+			for (Map.Entry<String, long[]> entry : sorted.values()) {
+				out.writeInt(ids.get(entry.getKey()));
+				out.writeInt((int) entry.getValue()[1]);
+				out.writeInt((int) entry.getValue()[2]);
+				out.writeLong(FeatureCorpus.HEADER_SIZE + entry.getValue()[0]);
+			}
+			out.flush();
+			
+			// header
+			raf.seek(0);
+			raf.writeLong(FeatureCorpus.MAGIC);
+			raf.writeInt(FeatureCorpus.VERSION);
+			raf.writeInt(sorted.size());
+			raf.writeInt(strings.size());
+			raf.writeInt(0);
+			raf.writeLong(dictionaryOffset);
+			raf.writeLong(indexOffset);
+			raf.writeLong(FeatureCorpus.HEADER_SIZE);
+		}
+		dataFile.delete();
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		logger.info("feature corpus written: " + sorted.size() + " fragments, " + strings.size() + " strings");
+	}
+	
+	// discard the corpus being written, keeping any earlier corpus file
+	public synchronized void abort() {
+		try {
+			data.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		dataFile.delete();
+	}
+}
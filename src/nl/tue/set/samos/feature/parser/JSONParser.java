@@ -26,6 +26,7 @@
 
 package nl.tue.set.samos.feature.parser;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Vector;
@@ -35,6 +36,10 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
 import nl.tue.set.samos.feature.AttributedNode;
 import nl.tue.set.samos.feature.Feature;
 import nl.tue.set.samos.feature.NGram;
@@ -54,6 +59,10 @@ public class JSONParser {
 	
 	static final Logger logger = LoggerFactory.getLogger(JSONParser.class);
 	
+	static final JsonFactory JSON_FACTORY = new JsonFactory();
+	// the trees written by the extractor in the merged form start with their type, so they can be streamed without building a JSONObject first
+	static final String MERGED_NTREE_PREFIX = "{\"ftype\":\"MergedNTree\"";
+	
 	public static Feature parseText(String text) {
 		if (text == null)
 			return null;
@@ -61,6 +70,9 @@ public class JSONParser {
 		if (text.equals(""))
 			return null;
 		
+		if (text.startsWith(MERGED_NTREE_PREFIX))
+			return parseMergedTree(text);
+		
 		JSONObject jsonObject = new JSONObject(text); 
 		
 		return parseJSON(jsonObject);
@@ -102,9 +114,35 @@ public class JSONParser {
 		//return newAptedTree;
 	}
 	
+	// the inverse of merge, for trees read in the merged form: each run of consecutive children with the same edge goes under one edge node.
+	// the merged form does not keep the boundary between two adjacent groups with the same edge, these come out as one group
+	public static AptedNodeCustom<Feature> unmerge(AptedNodeCustom<Feature> mergedTree, boolean isRoot){
+		NGram mergedFeature = (NGram) mergedTree.getNodeData();
+		ArrayList<SimpleFeature> featureList = new ArrayList<SimpleFeature>();
+		featureList.add(mergedFeature.get(isRoot ? 0 : 1));
+		AptedNodeCustom<Feature> newAptedTree = new AptedNodeCustom<Feature>(new NGram(featureList));
+		AptedNodeCustom<Feature> edgeNode = null;
+		SimpleFeature edge = null;
+		for (Node<Feature> child : mergedTree.getChildren()){
+			SimpleFeature childEdge = ((NGram) child.getNodeData()).get(0);
+			if (edgeNode == null || !childEdge.equals(edge)) {
+				ArrayList<SimpleFeature> edgeList = new ArrayList<SimpleFeature>();
+				edgeList.add(childEdge);
+				edgeNode = new AptedNodeCustom<Feature>(new NGram(edgeList));
+				edge = childEdge;
+				newAptedTree.addChild(edgeNode);
+			}
+			edgeNode.addChild(unmerge((AptedNodeCustom<Feature>) child, false));
+		}
+		return newAptedTree;
+	}
+	
 	public static Feature parseJSON(JSONObject jsonObject) {
 		
-		if (jsonObject.getString("ftype").equals("NTree")) {			
+		if (jsonObject.getString("ftype").equals("MergedNTree")) {
+			return parseMergedTree(jsonObject.toString());
+		}
+		else if (jsonObject.getString("ftype").equals("NTree")) {			
 			AptedNodeCustom<Feature> aptedTree = parseJSONAsNode(jsonObject);
 			if (MERGE_EGDE_NODES)
 				aptedTree = merge(aptedTree);
@@ -170,6 +208,108 @@ public class JSONParser {
 		}		
 	}
 	
+	// parses a tree in the merged form, where each child node carries the label of its incoming edge. 
+	// the nodes are read in one pass into the same tree that merge produces, i.e. the root as a unigram and the children as (edge, feature) bigrams.
+	// without MERGE_EGDE_NODES, the tree is unmerged again into edge and feature nodes as parseJSON would return it
+	public static Feature parseMergedTree(String text) {
+		try (JsonParser parser = JSON_FACTORY.createParser(text)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				logger.error("Problem with parsing object " + text);
+				return null;
+			}
+			AptedNodeCustom<Feature> aptedTree = parseMergedNode(parser, true);
+			if (aptedTree == null) {
+				logger.error("Problem with parsing object " + text);
+				return null;
+			}
+			if (!MERGE_EGDE_NODES)
+				aptedTree = unmerge(aptedTree, true);
+			NTreeApted tree = new NTreeApted(aptedTree);
+			if (SORT_NODES)
+				tree.sort();
+			return tree;
+		} catch (IOException e) {
+			logger.error("Problem with parsing object " + text);
+			return null;
+		}
+	}
+	
+	// reads a tree node, with the parser positioned at its start. the children are parsed recursively
+	static AptedNodeCustom<Feature> parseMergedNode(JsonParser parser, boolean isRoot) throws IOException {
+		String edge = null;
+		SimpleFeature feature = null;
+		ArrayList<AptedNodeCustom<Feature>> children = new ArrayList<AptedNodeCustom<Feature>>();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			if (field.equals("edge"))
+				edge = parser.getText();
+			else if (field.equals("node"))
+				feature = parseSimpleFeature(parser);
+			else if (field.equals("contents")) {
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					AptedNodeCustom<Feature> child = parseMergedNode(parser, false);
+					if (child == null)
+						return null;
+					children.add(child);
+				}
+			}
+			else
+				parser.skipChildren(); // e.g. ftype
+		}
+		if (feature == null || (!isRoot && edge == null))
+			return null;
+		
+		ArrayList<SimpleFeature> featureList = new ArrayList<SimpleFeature>();
+		if (!isRoot)
+			featureList.add(new SimpleType(edge));
+		featureList.add(feature);
+		AptedNodeCustom<Feature> node = new AptedNodeCustom<Feature>(new NGram(featureList));
+		for (AptedNodeCustom<Feature> child : children)
+			node.addChild(child);
+		return node;
+	}
+	
+	// reads a simple feature object, with the parser positioned at its start. mirrors the simple feature cases in parseJSON
+	static SimpleFeature parseSimpleFeature(JsonParser parser) throws IOException {
+		HashMap<String, Object> keyValueMap = new HashMap<String, Object>();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String key = parser.getCurrentName();
+			switch (parser.nextToken()) {
+			case VALUE_TRUE: keyValueMap.put(key, Boolean.TRUE); break;
+			case VALUE_FALSE: keyValueMap.put(key, Boolean.FALSE); break;
+			case VALUE_NUMBER_INT: 
+			case VALUE_NUMBER_FLOAT: keyValueMap.put(key, parser.getNumberValue()); break;
+			case VALUE_NULL: break;
+			case START_OBJECT:
+			case START_ARRAY: parser.skipChildren(); break;
+			default: keyValueMap.put(key, parser.getText());
+			}
+		}
+		
+		Object ftype = keyValueMap.get("ftype");
+		if ("SimpleName".equals(ftype))
+			return new SimpleName((String) keyValueMap.get("name"));
+		else if ("SimpleType".equals(ftype))
+			return new SimpleType((String) keyValueMap.get("type"));
+		else if ("TypedName".equals(ftype))
+			return new TypedName((String) keyValueMap.get("type"), (String) keyValueMap.get("name"));
+		else if ("TypedValueName".equals(ftype))
+			return new TypedValuedName((String) keyValueMap.get("type"), (String) keyValueMap.get("name"),
+					optString(keyValueMap, "typeValueType"), optString(keyValueMap, "typeValueValue"));
+		else if ("Attributed".equals(ftype))
+			return new AttributedNode(keyValueMap);
+		else {
+			logger.error("Problem with parsing feature " + keyValueMap);
+			return null;
+		}
+	}
+	
+	private static String optString(HashMap<String, Object> keyValueMap, String key) {
+		Object value = keyValueMap.get(key);
+		return (value == null ? "" : value.toString());
+	}
+	
 	public static void main(String[] args){
 		// examples below, not deleting for testing purposes later
 //		String s = "[NG] [AN] type:EClass,name:LocatedElement,instanceClassName:null,instanceTypeName:null,abstract:true,interface:false;[AN] type:contains;[AN] type:EAttribute,name:location,ordered:false,unique:false,lowerBound:1,upperBound:1,many:false,required:true,eType:String,changeable:true,volatile:false,transient:false,defaultValueLiteral:null,unsettable:false,derived:false,iD:false";		
@@ -32,10 +32,17 @@ import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -71,9 +78,21 @@ import nl.tue.set.samos.common.enums.VSM_MODE;
 import nl.tue.set.samos.common.enums.WEIGHT;
 import nl.tue.set.samos.crawl.Crawler;
 import nl.tue.set.samos.extract.EcoreExtractorImpl;
+import nl.tue.set.samos.extract.EcoreModelLoader;
+import nl.tue.set.samos.extract.EcoreStreamExtractorImpl;
+import nl.tue.set.samos.extract.ExtractionManifest;
+import nl.tue.set.samos.extract.ExtractionTimeout;
+import nl.tue.set.samos.extract.FeatureFileWriter;
+import nl.tue.set.samos.extract.FragmentHierarchy;
+import nl.tue.set.samos.extract.FragmentHierarchy.ComposedFragment;
 import nl.tue.set.samos.extract.IExtractor;
+import nl.tue.set.samos.extract.ModelArchive;
+import nl.tue.set.samos.extract.ModelInput;
 import nl.tue.set.samos.feature.NTreeApted;
+import nl.tue.set.samos.feature.corpus.FeatureCorpus;
+import nl.tue.set.samos.feature.corpus.FeatureCorpusWriter;
 import nl.tue.set.samos.feature.parser.JSONParser;
+import nl.tue.set.samos.nlp.Lemmatizer;
 import nl.tue.set.samos.nlp.NLP;
 import nl.tue.set.samos.stats.RAnalyzer;
 import nl.tue.set.samos.vsm.VSMBuilder;
@@ -94,6 +113,20 @@ import java.util.logging.ConsoleHandler;
  *
  *	--clone FOLDER_NAME
  *	Runs clone detection with standard settings for all the metamodels under the folder data/[FOLDER_NAME]. E.g. run with --cluster atlzoo for the crawled atlzoo dataset. 
+ *
+ *	Options after the root folder and the hyperparameter file:
+ *
+ *	--lemma-cache
+ *	Keeps the lemmas in ROOT/lemmas.ser across runs, so that repeated runs do not lemmatize the same tokens again.
+ *
+ *	--model-cache
+ *	Keeps binary copies of the parsed metamodels in ROOT/model_cache across runs, so that repeated runs do not parse the same metamodels again.
+ *
+ *	--feature-corpus
+ *	Also writes the extracted features into a binary corpus file in the features folder, which the nlp and vsm computation read instead of parsing the feature files.
+ *
+ *	--threads N
+ *	Extracts the features of N metamodel files (or archive entries) at a time, with one worker thread each. 1 by default, i.e. sequential extraction.
  */
 public class SAMOSRunner {
 	
@@ -120,6 +153,14 @@ public class SAMOSRunner {
 				
 			// set the threshold for including model elements in clustering (i.e. filter out the smaller ones)
 			samos.MIN_MODEL_ELEMENT_COUNT_PER_FRAGMENT = 1;
+			
+			// only extract new or changed metamodels in repeated runs
+			samos.INCREMENTAL_EXTRACTION = true;
+			samos.PERSIST_LEMMA_CACHE = hasOption(args, "--lemma-cache");
+			samos.MODEL_CACHE = hasOption(args, "--model-cache");
+			samos.WRITE_FEATURE_CORPUS = hasOption(args, "--feature-corpus");
+			if (getOption(args, "--threads") != null)
+				samos.EXTRACTION_THREADS = Integer.parseInt(getOption(args, "--threads"));
 				
 			// run the three components: feature extraction, vsm computation and clustering
 			logger.info("Starting SAMOS with goal " + samos.configuration._GOAL + " " + "and parameters " + _SCOPE + "-" + _UNIT  + "-" + _STRUCTURE);
@@ -136,7 +177,19 @@ public class SAMOSRunner {
 		
 	}
 		
-	public HashMap<String, ArrayList<String>> featureMap;
+	// whether the option is given after the two positional arguments (root folder and hyperparameter file)
+	private static boolean hasOption(String[] args, String option) {
+		return args.length > 2 && Arrays.asList(args).subList(2, args.length).contains(option);
+	}
+	
+	// the value following the option after the two positional arguments, or null if the option is not given
+	private static String getOption(String[] args, String option) {
+		for (int i = 2; i < args.length - 1; i++)
+			if (args[i].equals(option))
+				return args[i + 1];
+		return null;
+	}
+		
 	public VSMBuilder vsmBuilder;
 	public RAnalyzer r;
 	public String targetExtension = ".ecore";
@@ -146,6 +199,38 @@ public class SAMOSRunner {
 	public boolean PREPROCESS_TOKENIZE;
 	public boolean PREPROCESS_LEMMATIZE;
 	public int MIN_MODEL_ELEMENT_COUNT_PER_FRAGMENT;
+	// number of worker threads for feature extraction, 1 means sequential extraction
+	public int EXTRACTION_THREADS = 1;
+	// number of worker threads for the synonym lookup table computation, 1 means sequential computation
+	public int SYNONYM_THREADS = Runtime.getRuntime().availableProcessors();
+	// resolve cross-resource proxies (e.g. eType, eSuperTypes) during extraction, instead of taking the names from the proxy uris
+	public boolean RESOLVE_PROXIES = false;
+	// extract the model elements once per ancestor in the model scope, as in earlier versions, instead of once. Only for reproducing earlier vectors
+	public boolean LEGACY_MULTIPLICITY = false;
+	// caps for the trigram (i.e. path) features of an element: the number of edges followed per element, and the number of paths
+	public int MAX_PATH_FANOUT = 64;
+	public int MAX_PATHS_PER_ELEMENT = 4096;
+	// maximum number of elements extracted per model, the rest of a larger model is skipped (non-positive for no limit)
+	public int MAX_ELEMENTS_PER_MODEL = 1000000;
+	// reuse the features of unchanged model files from the previous extraction, based on the manifest in the features folder
+	public boolean INCREMENTAL_EXTRACTION = false;
+	// write the features into a single binary corpus file, which is then used for the nlp and vsm computation instead of the feature files. 
+	// Off by default, the feature files are parsed as before
+	public boolean WRITE_FEATURE_CORPUS = false;
+	// also write (i.e. export) the features as text feature files, one per model or model fragment
+	public boolean WRITE_FEATURE_FILES = true;
+	// keep the memoized lemmas in a file under the root folder, to reuse them in later runs
+	public boolean PERSIST_LEMMA_CACHE = false;
+	public static final String LEMMA_CACHE_FILE = "lemmas.ser";
+	// keep binary copies of the loaded models in a folder next to the features folder, so that repeated runs do not parse the models again
+	public boolean MODEL_CACHE = false;
+	public static final String MODEL_CACHE_FOLDER = "model_cache";
+	// size cap of the model cache folder, the least recently used copies are removed after an extraction beyond it (non-positive for no limit)
+	public long MODEL_CACHE_MAX_BYTES = 1L << 30;
+	// read the models with a streaming xml reader instead of EMF for the features that need only names and types (i.e. NAME and TYPEDNAME unigrams)
+	public boolean STREAMING_EXTRACTION = true;
+	// unpack the crawled zenodo zip file into the data folder, otherwise it is kept as a zip file which can be used as the data input directly
+	public boolean UNPACK_ARCHIVES = true;
 
 	
 	public SAMOSRunner(String[] args) {
@@ -154,7 +239,6 @@ public class SAMOSRunner {
 		r = new RAnalyzer();
 		logger.info("R analyzer loaded!");
 		vsmBuilder = new VSMBuilder(configuration);
-		featureMap = null;
 	}
 	
 	// CONFIG
@@ -243,74 +327,415 @@ public class SAMOSRunner {
 		return root + File.separator +rootNode.get("xmi_folder").asText();
 	}
 	
+	// CRAWLING
+	// crawl a dataset (zenodo or atlzoo) into the data folder under the project root
+	public void crawl(String targetFolder, String urlPattern) throws IOException {
+		Crawler.crawl(targetFolder, urlPattern, UNPACK_ARCHIVES);
+	}
+	
 	// EXTRACTION
 	// extract features from the metamodels to feed the vsm computation
-	// NOTE: stack overflow with default stack size. increasing -Xss16m also doesn't help for some large (cyclic?) files
+	// NOTE: the model traversal is iterative and bounded by MAX_ELEMENTS_PER_MODEL, earlier recursive versions overflowed the stack for some large (cyclic?) files
 	public static UNIT unitList[] = UNIT.values(); 
 	public static STRUCTURE structureList[] = STRUCTURE.values();
 	
+	// stack size for the extraction worker threads, as the model loading and proxy resolution in EMF can still be deeply recursive
+	public static final long EXTRACTION_THREAD_STACK_SIZE = 16L * 1024 * 1024;
+	
 	public void extractFeatures(SCOPE _SCOPE, UNIT _UNIT, STRUCTURE _STRUCTURE) {
+		List<ExtractionOutput> outputs = new ArrayList<ExtractionOutput>();
+		outputs.add(new ExtractionOutput(_UNIT, _STRUCTURE, configuration.featureFolder));
+		extractFeatures(_SCOPE, outputs);
+	}
+	
+	// extract the features for all the combinations of the given units and structures (e.g. for parameter sweeps), loading and traversing each 
+	// model only once. The features of each combination go into their own folder, see getFeatureFolder
+	public void extractFeatures(SCOPE _SCOPE, UNIT[] units, STRUCTURE[] structures) {
+		List<ExtractionOutput> outputs = new ArrayList<ExtractionOutput>();
+		for (UNIT _UNIT : units)
+			for (STRUCTURE _STRUCTURE : structures)
+				outputs.add(new ExtractionOutput(_UNIT, _STRUCTURE, getFeatureFolder(_SCOPE, _UNIT, _STRUCTURE)));
+		extractFeatures(_SCOPE, outputs);
+	}
+	
+	// features folder of a combination extracted with extractFeatures(SCOPE, UNIT[], STRUCTURE[]), next to the default features folder. 
+	// Set it as configuration.featureFolder to build the vsm from these features
+	public String getFeatureFolder(SCOPE _SCOPE, UNIT _UNIT, STRUCTURE _STRUCTURE) {
+		return configuration.featureFolder.replaceAll("[/\\\\]+$", "") + "_" + _SCOPE + "_" + _UNIT + "_" + _STRUCTURE + File.separator;
+	}
+	
+	// the features folder of one combination of unit and structure, with its manifest and corpus
+	private static class ExtractionOutput {
+		final UNIT unit;
+		final STRUCTURE structure;
+		final File targetFolder;
+		ExtractionManifest manifest;
+		ExtractionManifest previous;
+		FeatureCorpusWriter corpus;
+		
+		ExtractionOutput(UNIT unit, STRUCTURE structure, String targetFolder) {
+			this.unit = unit;
+			this.structure = structure;
+			this.targetFolder = new File(targetFolder);
+		}
+	}
+	
+	private void extractFeatures(SCOPE _SCOPE, List<ExtractionOutput> outputs) {
 		File sourceFolder = new File(configuration.dataFolder);
 		if (!sourceFolder.exists()) {
 			logger.info("Folder " + sourceFolder.getAbsolutePath() + " not found!!!!");
 			return;
 		}
-		File[] fs = sourceFolder.listFiles(new FilenameFilter() {
+		
+		// the data input can also be a (zip or tar) archive, whose entries are read without unpacking them
+		if (ModelArchive.isArchive(sourceFolder)) {
+			try (ModelArchive archive = ModelArchive.open(sourceFolder)) {
+				List<ModelInput> inputs = archive.getInputs(targetExtension);
+				extractFeatures(inputs.toArray(new ModelInput[inputs.size()]), _SCOPE, outputs);
+			} catch (IOException e) {
+				logger.severe("Could not read the archive " + sourceFolder.getAbsolutePath());
+				e.printStackTrace();
+			}
+			return;
+		}
+		
+		File[] files = sourceFolder.listFiles(new FilenameFilter() {
 			public boolean accept(File arg0, String name) {
 				return (!name.contains("DS_Store") && name.toLowerCase().endsWith(targetExtension));}});
-		Arrays.sort(fs, (f1, f2) -> f1.getName().compareTo(f2.getName()));
-
-		File targetFolder = new File(configuration.featureFolder);
-		try {
-			FileUtils.deleteDirectory(targetFolder);
-		} catch (IOException e) {}
-		targetFolder.mkdirs();
+		Arrays.sort(files, (f1, f2) -> f1.getName().compareTo(f2.getName()));
+		ModelInput[] fs = new ModelInput[files.length];
+		for (int i = 0; i < files.length; i++)
+			fs[i] = ModelInput.of(files[i]);
+		extractFeatures(fs, _SCOPE, outputs);
+	}
+	
+	private void extractFeatures(ModelInput[] fs, SCOPE _SCOPE, List<ExtractionOutput> outputs) {
+		// in the hierarchical extraction, the minimum size applies to the composed fragments instead (see FragmentHierarchy)
+		int minSizeToOutput = (_SCOPE == SCOPE.HIERARCHY ? 0 : this.MIN_MODEL_ELEMENT_COUNT_PER_FRAGMENT);
 		
-		IExtractor extractor = new EcoreExtractorImpl();		
-		extractor.PREPROCESS_TOKENIZE = this.PREPROCESS_TOKENIZE;
-		extractor.PREPROCESS_LEMMATIZE = this.PREPROCESS_LEMMATIZE;
-//		extractor.MIN_FEATURE_COUNT_PER_FRAGMENT = this.MIN_FEATURE_COUNT_PER_FRAGMENT;
+		boolean incremental = false;
+		for (ExtractionOutput output : outputs) {
+			output.manifest = createManifest(_SCOPE, output.unit, output.structure);
+			output.previous = INCREMENTAL_EXTRACTION ? ExtractionManifest.load(output.targetFolder) : null;
+			if (output.manifest.isCompatible(output.previous)) {
+				// the manifest is removed until this extraction completes, so an interrupted run is not mistaken for a complete one
+				ExtractionManifest.delete(output.targetFolder);
+				incremental = true;
+			} else {
+				if (INCREMENTAL_EXTRACTION) 
+					logger.info("no reusable features found for these settings, extracting all the files into " + output.targetFolder.getPath());
+				output.previous = null;
+				try {
+					FileUtils.deleteDirectory(output.targetFolder);
+				} catch (IOException e) {}
+			}
+			output.targetFolder.mkdirs();
+		}
 		
-		int minSizeToOutput = this.MIN_MODEL_ELEMENT_COUNT_PER_FRAGMENT;
+		// collect the hashes of the files, and keep the files which are unchanged for all the outputs
+		HashMap<String, String> hashes = new HashMap<String, String>();
+		ArrayList<ModelInput> filesToExtract = new ArrayList<ModelInput>();
+		ArrayList<ModelInput> retained = new ArrayList<ModelInput>();
+		for (ModelInput f: fs) {
+			String hash = null;
+			try {
+				hash = ExtractionManifest.hash(f);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			hashes.put(f.getName(), hash);
+			boolean unchanged = (hash != null);
+			for (ExtractionOutput output : outputs) {
+				ExtractionManifest.Entry entry = (output.previous == null ? null : output.previous.files.get(f.getName()));
+				unchanged &= (entry != null && hash != null && hash.equals(entry.hash));
+			}
+			if (unchanged)
+				retained.add(f);
+			else
+				filesToExtract.add(f);
+		}
 		
+		if (WRITE_FEATURE_CORPUS) {
+			try {
+				for (ExtractionOutput output : outputs)
+					output.corpus = new FeatureCorpusWriter(output.targetFolder.getPath());
+				if (!retained.isEmpty())
+					copyRetainedFragments(outputs, retained, filesToExtract);
+			} catch (IOException e) {
+				logger.severe("Could not write the feature corpus");
+				e.printStackTrace();
+				for (ExtractionOutput output : outputs)
+					if (output.corpus != null)
+						output.corpus.abort();
+				return;
+			}
+		}
+		
+		for (ExtractionOutput output : outputs) {
+			if (output.previous == null)
+				continue;
+			for (ModelInput f : retained)
+				output.manifest.files.put(f.getName(), output.previous.files.get(f.getName()));
+			removeStaleFragments(output.targetFolder, output.manifest);
+		}
+		if (incremental)
+			logger.info("reusing the features of " + retained.size() + " unchanged files, extracting " + filesToExtract.size() + " new or changed files");
+		fs = filesToExtract.toArray(new ModelInput[filesToExtract.size()]);
+		
+		if (PREPROCESS_LEMMATIZE)
+			loadLemmaCache();
 		logger.info("starting feature extraction");
+		ExtractionTimeout.getInstance().resetCounters();
+		EcoreModelLoader.resetCounters();
+		UNIT[] units = new UNIT[outputs.size()];
+		STRUCTURE[] structures = new STRUCTURE[outputs.size()];
+		for (int i = 0; i < outputs.size(); i++) {
+			units[i] = outputs.get(i).unit;
+			structures[i] = outputs.get(i).structure;
+		}
 		long start = System.currentTimeMillis();
-		for (File f: fs) { // iterate all the metamodel files
-			logger.info("processing file:" + f.getName());
-			featureMap = extractor.process(f, _SCOPE, _UNIT, _STRUCTURE);
-			featureMap.keySet().forEach(key -> 
-			printNgrams(key, targetFolder.getAbsolutePath() + "/" + key 
-					+ Constants.featureFileSuffix, minSizeToOutput, _STRUCTURE)); // extract features into separate files
-
-
-		}				
+		boolean completed = false;
+		try {
+			if (EXTRACTION_THREADS <= 1) {
+				IExtractor extractor = createExtractor();
+				for (ModelInput f: fs) { // iterate all the metamodel files
+					logger.info("processing file:" + f.getName());
+					FeatureFileWriter[] writers = createFeatureWriters(outputs, minSizeToOutput); // extract features into separate files
+					extractor.process(f, _SCOPE, units, structures, writers);
+					for (int i = 0; i < outputs.size(); i++) {
+						writers[i].flushCorpus();
+						addToManifest(outputs.get(i).manifest, f, hashes.get(f.getName()), writers[i].getFragments(), writers[i].getHierarchy());
+					}
+				}
+			} else 
+				extractFeaturesParallel(fs, _SCOPE, units, structures, outputs, minSizeToOutput, hashes);
+			for (ExtractionOutput output : outputs)
+				if (output.corpus != null)
+					output.corpus.close();
+			completed = true;
+		} catch (IOException e) {
+			logger.severe("Could not write the feature corpus");
+			e.printStackTrace();
+			return;
+		} finally {
+			if (!completed)
+				for (ExtractionOutput output : outputs)
+					if (output.corpus != null)
+						output.corpus.abort();
+		}
 		logger.info("elapsed time:" + (System.currentTimeMillis() - start));
+		logger.info("extraction " + ExtractionTimeout.getInstance());
+		logger.info("model loading " + EcoreModelLoader.getStatistics());
+		if (MODEL_CACHE)
+			logger.info("removed " + EcoreModelLoader.prune(getModelCacheFolder(), hashes.values(), MODEL_CACHE_MAX_BYTES) + " files from the model cache");
+		if (PREPROCESS_LEMMATIZE)
+			saveLemmaCache();
+		
+		if (_SCOPE == SCOPE.HIERARCHY)
+			saveHierarchies(outputs);
+		
+		for (ExtractionOutput output : outputs) {
+			try {
+				output.manifest.save(output.targetFolder);
+			} catch (IOException e) {
+				logger.warning("Could not write the extraction manifest, the next run will extract all the files");
+				e.printStackTrace();
+			}
+		}
 	}
+	
+	// the settings which the extracted features depend on
+	private ExtractionManifest createManifest(SCOPE _SCOPE, UNIT _UNIT, STRUCTURE _STRUCTURE) {
+		ExtractionManifest manifest = new ExtractionManifest();
+		manifest.setting("dataFolder", new File(configuration.dataFolder).getAbsolutePath());
+		manifest.setting("targetExtension", targetExtension);
+		manifest.setting("scope", _SCOPE);
+		manifest.setting("unit", _UNIT);
+		manifest.setting("structure", _STRUCTURE);
+		manifest.setting("PREPROCESS_TOKENIZE", PREPROCESS_TOKENIZE);
+		manifest.setting("PREPROCESS_LEMMATIZE", PREPROCESS_LEMMATIZE);
+		manifest.setting("RESOLVE_PROXIES", RESOLVE_PROXIES);
+		manifest.setting("STREAMING_EXTRACTION", STREAMING_EXTRACTION);
+		manifest.setting("LEGACY_MULTIPLICITY", LEGACY_MULTIPLICITY);
+		manifest.setting("MAX_ELEMENTS_PER_MODEL", MAX_ELEMENTS_PER_MODEL);
+		if (_STRUCTURE == STRUCTURE.TRIGRAM) {
+			manifest.setting("MAX_PATH_FANOUT", MAX_PATH_FANOUT);
+			manifest.setting("MAX_PATHS_PER_ELEMENT", MAX_PATHS_PER_ELEMENT);
+		}
+		manifest.setting("MIN_MODEL_ELEMENT_COUNT_PER_FRAGMENT", MIN_MODEL_ELEMENT_COUNT_PER_FRAGMENT);
+		manifest.setting("WRITE_FEATURE_CORPUS", WRITE_FEATURE_CORPUS);
+		manifest.setting("WRITE_FEATURE_FILES", WRITE_FEATURE_FILES);
+		return manifest;
+	}
+	
+	// feature sink writing the feature files and/or into the corpus, depending on the settings
+	private FeatureFileWriter createFeatureWriter(File targetFolder, int minSizeToOutput, STRUCTURE _STRUCTURE, FeatureCorpusWriter corpus) {
+		return new FeatureFileWriter(targetFolder, minSizeToOutput, _STRUCTURE, WRITE_FEATURE_FILES, corpus);
+	}
+	
+	// feature sinks writing the feature files and/or into the corpus of each output. The fragments of a file are added to the corpus 
+	// once the file is extracted (see flushCorpus), in the order of the files also with several extraction workers
+	private FeatureFileWriter[] createFeatureWriters(List<ExtractionOutput> outputs, int minSizeToOutput) {
+		FeatureFileWriter[] writers = new FeatureFileWriter[outputs.size()];
+		for (int i = 0; i < writers.length; i++)
+			writers[i] = createFeatureWriter(outputs.get(i).targetFolder, minSizeToOutput, outputs.get(i).structure, outputs.get(i).corpus).deferCorpus();
+		return writers;
+	}
+	
+	// copy the fragments of the unchanged files from the previous corpora. Files with fragments missing in any of them are extracted again
+	private void copyRetainedFragments(List<ExtractionOutput> outputs, ArrayList<ModelInput> retained, ArrayList<ModelInput> filesToExtract) throws IOException {
+		FeatureCorpus[] previousCorpora = new FeatureCorpus[outputs.size()];
+		for (int i = 0; i < outputs.size(); i++)
+			previousCorpora[i] = FeatureCorpus.open(outputs.get(i).targetFolder.getPath());
 		
-	public void printNgrams(String key, String ngramFilePath, int minSize, STRUCTURE _STRUCTURE){
+		for (Iterator<ModelInput> it = retained.iterator(); it.hasNext();) {
+			ModelInput f = it.next();
+			boolean complete = true;
+			for (int i = 0; i < outputs.size() && complete; i++) {
+				complete &= (previousCorpora[i] != null);
+				if (complete)
+					for (String key : outputs.get(i).previous.files.get(f.getName()).fragments.keySet())
+						complete &= previousCorpora[i].indexOf(key) >= 0;
+			}
+			if (!complete) {
+				it.remove();
+				filesToExtract.add(f);
+			}
+		}
+		filesToExtract.sort((f1, f2) -> f1.getName().compareTo(f2.getName()));
+		
+		for (int i = 0; i < outputs.size(); i++)
+			for (ModelInput f : retained)
+				for (String key : outputs.get(i).previous.files.get(f.getName()).fragments.keySet())
+					outputs.get(i).corpus.copyFragment(previousCorpora[i], previousCorpora[i].indexOf(key));
+	}
+	
+	// record the fragments written for a file. Files which could not be hashed are left out, so they are extracted again next time
+	private void addToManifest(ExtractionManifest manifest, ModelInput f, String hash, HashMap<String, Integer> fragments, 
+			List<FragmentHierarchy.Fragment> hierarchy) {
+		if (hash != null)
+			manifest.files.put(f.getName(), new ExtractionManifest.Entry(hash, fragments, hierarchy));
+	}
+	
+	// write the hierarchy of the fragments of all the files next to their features, from the manifests (so including the reused files)
+	private void saveHierarchies(List<ExtractionOutput> outputs) {
+		for (ExtractionOutput output : outputs) {
+			FragmentHierarchy hierarchy = new FragmentHierarchy(output.structure, MIN_MODEL_ELEMENT_COUNT_PER_FRAGMENT);
+			for (ExtractionManifest.Entry entry : output.manifest.files.values())
+				hierarchy.fragments.addAll(entry.hierarchy);
+			try {
+				hierarchy.save(output.targetFolder);
+			} catch (IOException e) {
+				logger.severe("Could not write the fragment hierarchy into " + output.targetFolder.getPath());
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	// delete the feature files not belonging to the (unchanged) files in the manifest, i.e. those of deleted or changed files
+	private void removeStaleFragments(File targetFolder, ExtractionManifest manifest) {
+		HashSet<String> kept = new HashSet<String>();
+		for (ExtractionManifest.Entry entry : manifest.files.values())
+			kept.addAll(entry.fragments.keySet());
+		File[] featureFiles = targetFolder.listFiles((dir, name) -> name.endsWith(Constants.featureFileSuffix));
+		for (File featureFile : featureFiles) {
+			String key = featureFile.getName().substring(0, featureFile.getName().length() - Constants.featureFileSuffix.length());
+			if (!kept.contains(key))
+				featureFile.delete();
+		}
+	}
+	
+	// extract the files with a pool of workers, each having its own extractor (and thus its own NLP and EMF resource set). 
+	// Each worker writes the features of its file directly, the fragments of different files never share a feature file.
+	// The results are taken in the order of the files, and only then added to the corpus, so the corpus is the same as in a sequential run.
+	private void extractFeaturesParallel(ModelInput[] fs, SCOPE _SCOPE, UNIT[] units, STRUCTURE[] structures, List<ExtractionOutput> outputs, 
+			int minSizeToOutput, HashMap<String, String> hashes) {
+		final ThreadLocal<IExtractor> extractors = ThreadLocal.withInitial(() -> createExtractor());
+		ExecutorService executor = Executors.newFixedThreadPool(EXTRACTION_THREADS, runnable -> {
+			Thread thread = new Thread(null, runnable, "samos-extraction", EXTRACTION_THREAD_STACK_SIZE);
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		// limit the number of submitted but not yet finished files
+		int window = EXTRACTION_THREADS * 4;
+		ArrayDeque<Future<FeatureFileWriter[]>> pending = new ArrayDeque<Future<FeatureFileWriter[]>>();
+		ArrayDeque<ModelInput> pendingFiles = new ArrayDeque<ModelInput>();
+		int next = 0;
+		try {
+			while (next < fs.length || !pending.isEmpty()) {
+				while (next < fs.length && pending.size() < window) {
+					final ModelInput f = fs[next++];
+					pendingFiles.add(f);
+					pending.add(executor.submit(() -> {
+						logger.info("processing file:" + f.getName());
+						FeatureFileWriter[] writers = createFeatureWriters(outputs, minSizeToOutput);
+						try {
+							extractors.get().process(f, _SCOPE, units, structures, writers);
+						} catch (RuntimeException | Error e) {
+							for (FeatureFileWriter writer : writers)
+								writer.discard(); // do not leave the fragments of a half extracted file behind
+							throw e;
+						}
+						return writers;
+					}));
+				}
+				ModelInput f = pendingFiles.poll();
+				try {
+					FeatureFileWriter[] writers = pending.poll().get();
+					for (int i = 0; i < outputs.size(); i++) {
+						writers[i].flushCorpus();
+						addToManifest(outputs.get(i).manifest, f, hashes.get(f.getName()), writers[i].getFragments(), writers[i].getHierarchy());
+					}
+				} catch (ExecutionException e) {
+					// the fragments of the file are discarded, and it is left out of the manifest so that it is extracted again next time
+					logger.severe("Could not extract features from " + f.getPath() + ": " + e.getCause());
+					e.getCause().printStackTrace();
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.severe("Feature extraction interrupted, " + (pendingFiles.size() + 1 + fs.length - next) + " files are not extracted");
+			e.printStackTrace();
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	// set up a new extractor with the preprocessing settings of this runner
+	public IExtractor createExtractor() {
+		IExtractor extractor = STREAMING_EXTRACTION ? new EcoreStreamExtractorImpl() : new EcoreExtractorImpl();		
+		extractor.PREPROCESS_TOKENIZE = this.PREPROCESS_TOKENIZE;
+		extractor.PREPROCESS_LEMMATIZE = this.PREPROCESS_LEMMATIZE;
+		extractor.RESOLVE_PROXIES = this.RESOLVE_PROXIES;
+		extractor.LEGACY_MULTIPLICITY = this.LEGACY_MULTIPLICITY;
+		extractor.MAX_PATH_FANOUT = this.MAX_PATH_FANOUT;
+		extractor.MAX_PATHS_PER_ELEMENT = this.MAX_PATHS_PER_ELEMENT;
+		extractor.MAX_ELEMENTS_PER_MODEL = this.MAX_ELEMENTS_PER_MODEL;
+		if (MODEL_CACHE)
+			extractor.MODEL_CACHE_FOLDER = getModelCacheFolder();
+//		extractor.MIN_FEATURE_COUNT_PER_FRAGMENT = this.MIN_FEATURE_COUNT_PER_FRAGMENT;
+		return extractor;
+	}
+	
+	// the model cache folder, next to the features folder
+	public File getModelCacheFolder() {
+		return new File(new File(configuration.featureFolder).getAbsoluteFile().getParentFile(), MODEL_CACHE_FOLDER);
+	}
+	
+	// write the features of a fragment if it has the minimum size, and return its size
+	public int printNgrams(String key, ArrayList<String> features, String ngramFilePath, int minSize, STRUCTURE _STRUCTURE){
 		File f = new File(ngramFilePath);
 		FileWriter fout;
-		ArrayList<String> features = featureMap.get(key);
 		
 		int size = 0, featureCount = 0, finalSize = 0;
 		featureCount = features.size();
 		
-		switch (_STRUCTURE) {
-			case UNIGRAM:
-				finalSize = featureCount;
-				break;
-			case BIGRAM:
-				finalSize = featureCount + 1;
-				break;
-			case NTREE:
-				for (String s : features) {
-					size += ((NTreeApted) JSONParser.parseText(s)).size();				
-				}	
-				finalSize = size - featureCount + 1; // careful, when featureCount == 0
-				break;	
-			default:
-				System.err.println("Error: Size-based printing not defined for " + _STRUCTURE);
-		}		
+		if (_STRUCTURE == STRUCTURE.NTREE)
+			for (String s : features) {
+				size += ((NTreeApted) JSONParser.parseText(s)).size();				
+			}	
+		finalSize = FeatureFileWriter.getFragmentSize(_STRUCTURE, featureCount, size);
 		
 		if (finalSize >= minSize) { 
 			try {
@@ -322,6 +747,7 @@ public class SAMOSRunner {
 				e.printStackTrace();
 			}
 		} else logger.info("Not enough model elements (min:" + minSize + "), skipping " + key);
+		return finalSize;
 	}
 	// EXTRACTION END
 
@@ -330,6 +756,12 @@ public class SAMOSRunner {
 	// vsm computation with standard clustering settings for convenience, for the CLI style running.  
 	// Note that the configuration options can be modified if desired. 
 	public void buildVSMForClustering(UNIT _UNIT, STRUCTURE _STRUCTURE) throws IOException{
+		buildVSMForClustering(null, _UNIT, _STRUCTURE);
+	}
+	
+	// vsm computation with standard clustering settings for the fragments of the given scope, composed from a hierarchical extraction 
+	// (see SCOPE.HIERARCHY). Null to take the fragments as extracted
+	public void buildVSMForClustering(SCOPE _SCOPE, UNIT _UNIT, STRUCTURE _STRUCTURE) throws IOException{
 
 		// standard configuration for clustering
 		VSM_MODE _VSM_MODE = VSM_MODE.QUADRATIC;
@@ -348,6 +780,7 @@ public class SAMOSRunner {
 			outputFolder.mkdirs();
 		
 		Parameters params = new Parameters(null, _UNIT, _STRUCTURE, _WEIGHT, _IDF, _TYPE_MATCH, _SYNONYM, _SYNONYM_TRESHOLD, _NGRAM_CMP, _CTX_MATCH, _FREQ, _VSM_MODE);
+		params._SCOPE = _SCOPE;
 		
 		// precompute nlp and store results for better performance
 		logger.info("precomputing NLP comparison values");
@@ -358,18 +791,40 @@ public class SAMOSRunner {
 		buildVSMCommon(params, "cluster");	
 		
 		// also print the metamodel names to be used as labels later on 
-		FileUtil.printFilenameList(configuration.featureFolder, configuration.vsmFolder,  ".features", 0);
+		List<ComposedFragment> composed = vsmBuilder.getComposedFragments(params);
+		if (composed != null)
+			FileUtil.printFilenameList(composed, configuration.vsmFolder);
+		else
+			FileUtil.printFilenameList(configuration.featureFolder, configuration.vsmFolder,  ".features", 0);
 		
 	}
 	
+	private void loadLemmaCache() {
+		if (PERSIST_LEMMA_CACHE)
+			Lemmatizer.getInstance().loadCache(new File(configuration.root, LEMMA_CACHE_FILE));
+	}
+	
+	private void saveLemmaCache() {
+		if (!PERSIST_LEMMA_CACHE)
+			return;
+		try {
+			Lemmatizer.getInstance().saveCache(new File(configuration.root, LEMMA_CACHE_FILE));
+		} catch (IOException e) {
+			logger.warning("Could not write the lemma cache");
+			e.printStackTrace();
+		}
+	}
+	
 	// precompute nlp, including tokenisation and semantic similarity checking (which are costly) 
 	public void precomputeNLP(STRUCTURE _STRUCTURE, SYNONYM_TRESHOLD _SYNONYM_TRESHOLD) {
 		long start = System.currentTimeMillis();
 		NLP nlp = new NLP();
+		nlp.SYNONYM_THREADS = SYNONYM_THREADS;
 		SERIALIZATION _SERIALIZATION = _STRUCTURE.equals(STRUCTURE.NTREE)?SERIALIZATION.JSON:SERIALIZATION.PLAIN;
 		try {
+			loadLemmaCache();
 			nlp.precomputeTokenLookupTable(configuration.featureFolder, _SERIALIZATION);
-			nlp.loadWordNet();
+			saveLemmaCache();
 			nlp.precomputeSynonymLookupTable(configuration.featureFolder, _SYNONYM_TRESHOLD.value());
 
 		} catch (IOException e) {
@@ -384,6 +839,12 @@ public class SAMOSRunner {
 	// vsm computation with standard clone detection settings for convenience, for the CLI style running.  
 	// Note that the configuration options can be modified if desired. 
 	public void buildVSMForCloneDetection(UNIT _UNIT, STRUCTURE _STRUCTURE) throws IOException{		
+		buildVSMForCloneDetection(null, _UNIT, _STRUCTURE);
+	}
+	
+	// vsm computation with standard clone detection settings for the fragments of the given scope, composed from a hierarchical extraction 
+	// (see SCOPE.HIERARCHY). Null to take the fragments as extracted
+	public void buildVSMForCloneDetection(SCOPE _SCOPE, UNIT _UNIT, STRUCTURE _STRUCTURE) throws IOException{		
 
 		// standard configuration for clustering
 		IDF _IDF = IDF.NO_IDF;
@@ -405,6 +866,7 @@ public class SAMOSRunner {
 			CTX_MATCH _CTX_MATCH = _STRUCTURE.equals(STRUCTURE.UNIGRAM)?CTX_MATCH.CTX_STRICT:CTX_MATCH.CTX_LINEAR;
 			
 			Parameters params = new Parameters(null, _UNIT, _STRUCTURE, _WEIGHT, _IDF, _TYPE_MATCH, _SYNONYM, _SYNONYM_TRESHOLD, _NGRAM_CMP, _CTX_MATCH, _FREQ, _VSM_MODE);
+			params._SCOPE = _SCOPE;
 			// precompute and store nlp for better performance
 			precomputeNLP(_STRUCTURE, _SYNONYM_TRESHOLD);
 			// compute the VSM
@@ -421,15 +883,22 @@ public class SAMOSRunner {
 			CTX_MATCH _CTX_MATCH = CTX_MATCH.CTX_STRICT;
 					
 			Parameters params = new Parameters(null, _UNIT, _STRUCTURE, _WEIGHT, _IDF, _TYPE_MATCH, _SYNONYM, _SYNONYM_TRESHOLD, _NGRAM_CMP, _CTX_MATCH, _FREQ, _VSM_MODE);
+			params._SCOPE = _SCOPE;
 			// compute the VSM
 			buildVSMCommon(params, "cloneMask");	
 		}
 		
-		// compute also the sizes
-		FileUtil.printFeatureSizes(configuration.featureFolder, configuration.vsmFolder, _STRUCTURE.toString());
-		
-		// compute also the file names
-		FileUtil.printFilenameList(configuration.featureFolder, configuration.vsmFolder, ".features", 0);			
+		// compute also the sizes and the file names, of the composed fragments if the features are extracted hierarchically
+		Parameters params = new Parameters(_UNIT, _STRUCTURE);
+		params._SCOPE = _SCOPE;
+		List<ComposedFragment> composed = vsmBuilder.getComposedFragments(params);
+		if (composed != null) {
+			FileUtil.printFeatureSizes(composed, configuration.vsmFolder);
+			FileUtil.printFilenameList(composed, configuration.vsmFolder);
+		} else {
+			FileUtil.printFeatureSizes(configuration.featureFolder, configuration.vsmFolder, _STRUCTURE.toString());
+			FileUtil.printFilenameList(configuration.featureFolder, configuration.vsmFolder, ".features", 0);			
+		}
 		
 	}
 	
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.nlp;
+
+/**
+ * Levenshtein distance with an upper bound k, for the similarity threshold of the synonym checks: the exact distance is computed only 
+ * if it is at most k, otherwise k + 1 is returned. The strings are rejected early if their lengths differ by more than k.
+ * 
+ * If the shorter string has at most 64 characters, Myers' bit-parallel algorithm (in Hyyro's formulation for the global distance) is 
+ * used, with the shorter string as the pattern in a single long. Otherwise only the diagonal band of width k of the dynamic programming 
+ * matrix is computed (Ukkonen). Both stop as soon as the distance is known to exceed k.
+ * 
+ * An instance keeps its buffers between calls, so that there is no allocation per call. Not thread-safe, use one instance per thread.
+ */
+public class BoundedLevenshtein {
+	// pattern bit masks of the characters below 256, the others are computed from the pattern when needed
+	private final long[] peq = new long[256];
+	private int[] previous = new int[0];
+	private int[] current = new int[0];
+	
+	// the levenshtein distance of a and b if it is at most k, otherwise k + 1
+	public int distance(CharSequence a, CharSequence b, int k) {
+		CharSequence pattern = a.length() <= b.length() ? a : b;
+		CharSequence text = pattern == a ? b : a;
+		int m = pattern.length(), n = text.length();
+		if (n - m > k)
+			return k + 1;
+		if (m == 0)
+			return n;
+		return m <= 64 ? myers(pattern, text, k) : banded(pattern, text, k);
+	}
+	
+	private int myers(CharSequence pattern, CharSequence text, int k) {
+		int m = pattern.length(), n = text.length();
+		for (int i = 0; i < m; i++) {
+			char c = pattern.charAt(i);
+			if (c < 256)
+				peq[c] |= 1L << i;
+		}
+		long last = 1L << (m - 1);
+		long pv = m == 64 ? -1L : (1L << m) - 1;
+		long mv = 0L;
+		int score = m;
+		int result = -1;
+		for (int j = 0; j < n; j++) {
+			char c = text.charAt(j);
+			long eq = c < 256 ? peq[c] : mask(pattern, c);
+			long xv = eq | mv;
+			long xh = (((eq & pv) + pv) ^ pv) | eq;
+			long ph = mv | ~(xh | pv);
+			long mh = pv & xh;
+			if ((ph & last) != 0)
+				score++;
+			else if ((mh & last) != 0)
+				score--;
+			// the remaining n - j - 1 characters can lower the distance by at most one each
+			if (score - (n - j - 1) > k) {
+				result = k + 1;
+				break;
+			}
+			ph = (ph << 1) | 1L;
+			mh = mh << 1;
+			pv = mh | ~(xv | ph);
+			mv = ph & xv;
+		}
+		for (int i = 0; i < m; i++) {
+			char c = pattern.charAt(i);
+			if (c < 256)
+				peq[c] = 0L;
+		}
+		if (result < 0)
+			result = score > k ? k + 1 : score;
+		return result;
+	}
+	
+	// bit mask of the positions of c in the pattern
+	private static long mask(CharSequence pattern, char c) {
+		long mask = 0L;
+		for (int i = 0; i < pattern.length(); i++)
+			if (pattern.charAt(i) == c)
+				mask |= 1L << i;
+		return mask;
+	}
+	
+	// rows of the (shorter) pattern, columns of the text, cells farther than k from the diagonal count as k + 1
+	private int banded(CharSequence pattern, CharSequence text, int k) {
+		int m = pattern.length(), n = text.length();
+		int outside = k + 1;
+		if (previous.length < n + 2) {
+			previous = new int[n + 2];
+			current = new int[n + 2];
+		}
+		int[] prev = previous, cur = current;
+		for (int j = 0; j <= Math.min(n, k); j++)
+			prev[j] = j;
+		prev[Math.min(n, k) + 1] = outside;
+		for (int i = 1; i <= m; i++) {
+			int lo = Math.max(1, i - k), hi = Math.min(n, i + k);
+			cur[lo - 1] = lo == 1 ? Math.min(i, outside) : outside;
+			int rowMin = cur[lo - 1];
+			char c = pattern.charAt(i - 1);
+			for (int j = lo; j <= hi; j++) {
+				int value = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + (c == text.charAt(j - 1) ? 0 : 1));
+				cur[j] = Math.min(value, outside);
+				rowMin = Math.min(rowMin, cur[j]);
+			}
+			cur[hi + 1] = outside;
+			if (rowMin > k)
+				return outside;
+			int[] swap = prev;
+			prev = cur;
+			cur = swap;
+		}
+		return prev[n];
+	}
+}
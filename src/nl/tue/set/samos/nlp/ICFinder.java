@@ -43,12 +43,9 @@ public class ICFinder
 {
 	private Pattern 					p 				=	null;
 	private Matcher 					m 			=	null;
-	private String[]					editor		=	null;
 	private String					icfilename	=	"";
-	private BufferedReader		in				=	null;
-	private String					line			=	"";
 // look up
-	private Hashtable<String, Double>	lookup	=	null; // quick look up for synset counts (we require Double as Resnik counts are doubles)
+	private ICIndex					index			=	null; // quick look up for synset counts, memory mapped from the cached binary index (we require double as Resnik counts are doubles)
 // counts for nouns and verbs
 	private	double					nouns_sum								=	0.0;
 	private	double					verbs_sum								=	0.0;
@@ -66,17 +63,11 @@ public class ICFinder
 
 // your IC file
 		this.icfilename = icfilename;
-// quick look up table
-		lookup	=	new Hashtable<String, Double>();
 // get some useful 'constants'
 		nounroots = new ArrayList<String>();
 		verbroots = new ArrayList<String>();
-		Vector<Double> constants = setup();
-		nouns_sum				=	constants.get(0);
-		verbs_sum				=	constants.get(1);
+		setup();
 		nounsandverbs_sum	=	( nouns_sum + verbs_sum );
-		nounroot_sum			=	constants.get(2);
-		verbroot_sum			=	constants.get(3);
 	}
 
 	public double getRootSum(String pos)
@@ -88,15 +79,15 @@ public class ICFinder
 
 
 // 'getFrequency': get the count for the {synset} from the IC file
-	private double getFrequency(String synset, String pos)
+	private double getFrequency(int synset, String pos)
 	{
-		if(lookup.containsKey(synset + pos))
-			return ( lookup.get(synset + pos) );
-    	return ( 0.0 );
+		if(index == null)
+			return ( 0.0 );
+		return ( index.getCount(synset, pos) );
 	}
 
 // 'getProbability': get the probability of the {synset}
-	private double getProbability(String synset, String pos)
+	private double getProbability(int synset, String pos)
 	{
 		double 	freq			=	getFrequency(synset, pos);
 		if(freq == 0.0)
@@ -130,6 +121,19 @@ public class ICFinder
 		{
 			return ( ic );
 		}
+// only unpadded decimal offsets are in the IC file
+		Integer offset = ICIndex.parseOffsetDigits(synset);
+		if(offset == null)
+		{
+			return ( ic );
+		}
+		return ( getIC(offset.intValue(), pos) );
+	}
+
+// same as above for a synset offset, without any allocation
+	public double getIC(int synset, String pos)
+	{
+		double ic = 0.0;
 // .......................................................................................................................................................................................
 // Case 2. There is an <lcs> but it has a frequency of zero and thus it has a probability of zero and thus is just not valid as input
 // to the Information Content equation ( we will get 'Infinity') - so, we simply return 0
@@ -151,57 +155,22 @@ public class ICFinder
 
 // utility: get counts for {synsets} | just nouns | just verbs | noun'fake'<root> | verb'fake'<root>
 // these are used to calculate probabilities of {synsets} and to 'back-off' to a <root> value if no LCS exists for 2 words
-	private Vector<Double> setup()
+// the IC file is parsed once into a binary index, which is then memory mapped in later runs (see ICIndex)
+	private void setup()
 	{
-		String	unit	=	"";
-		double	uc		=	0.0;
-		double	nc		=	0.0;
-		double	vc		=	0.0;
-		double	nrc	=	0.0;
-		double	vrc	=	0.0;
-		Vector<Double>	counts = new Vector<Double>();
     	try
     	{
-        	in = new BufferedReader(new FileReader(icfilename));
-        	while ((line = in.readLine()) != null)
-        	{
-				editor = line.split("\\s"); // IC files are space delimited
-				for(int i = 0; i < editor.length; i++)
-				{
-					unit	=	editor[i];
-// nouns
-					if(unit.endsWith("n"))
-					{
-						lookup.put(editor[0], Double.parseDouble(editor[1]));
-						uc =		Double.parseDouble(editor[1]); // get the value: the 'count' for the {synset}
-						nc	+=	uc;// add to noun total
-						if(editor.length == 3) // if ROOT
-						{
-							nrc += uc;// add to noun<root> total
-							// store noun <root>
-							nounroots.add(editor[0].substring(0,editor[0].length()-1));
-						}
-					}
-// verbs
-					if(unit.endsWith("v"))
-					{
-						lookup.put(editor[0], Double.parseDouble(editor[1]));
-						uc =		Double.parseDouble(editor[1]); // get the value: the 'count' for the {synset}
-						vc	+=	uc; // add to verb total
-						if(editor.length == 3) // if ROOT
-						{
-							vrc += uc; // add to verb<root> total
-							// store verb<root>
-							verbroots.add(editor[0].substring(0,editor[0].length()-1));
-						}
-					}
-				}
-        	}
-        in.close();
+        	index = ICIndex.open(icfilename);
     	}
-    	catch (IOException e){e.printStackTrace();}
-    	counts.add(nc); counts.add(vc); counts.add(nrc);	counts.add(vrc);
-    	return ( counts );
+    	catch (IOException e){e.printStackTrace(); return;}
+    	nouns_sum		=	index.nounSum;
+    	verbs_sum		=	index.verbSum;
+    	nounroot_sum	=	index.nounRootSum;
+    	verbroot_sum	=	index.verbRootSum;
+    	for(int root : index.getNounRoots())
+    		nounroots.add(Integer.toString(root));
+    	for(int root : index.getVerbRoots())
+    		verbroots.add(Integer.toString(root));
 	}
 
 	public ArrayList<String>	getNounRoots()
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.nlp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compact index of the synset counts in an information content (IC) file, for nouns and verbs. The counts are kept per part of speech 
+ * in primitive arrays sorted by synset offset, so a lookup is a binary search without any allocation.
+ * 
+ * The index is built once from the text IC file and cached next to it (or in the temp folder if that is not writable) as a binary file, 
+ * which is memory mapped in later runs. The layout of the cache file is: 
+ * 
+ * - header		magic, version, length and modification time of the IC file, the count sums, and the sizes of the sections below
+ * - nouns		synset offsets (int) followed by their counts (double)
+ * - verbs		synset offsets (int) followed by their counts (double)
+ * - roots		synset offsets (int) of the noun roots and verb roots
+ */
+public class ICIndex {
+	static final Logger logger = LoggerFactory.getLogger(ICIndex.class);
+	
+	public static final String CACHE_SUFFIX = ".idx";
+	
+	static final long MAGIC = 0x53414d4f53494331L; // SAMOSIC1
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 80;
+	
+	private final ByteBuffer buffer;
+	private final int nounCount, verbCount, nounRootCount, verbRootCount;
+	private final int nounOffsets, nounCounts, verbOffsets, verbCounts, roots;
+	
+	public final double nounSum, verbSum, nounRootSum, verbRootSum;
+	
+	private ICIndex(ByteBuffer buffer) {
+		this.buffer = buffer;
+		nounSum = buffer.getDouble(32);
+		verbSum = buffer.getDouble(40);
+		nounRootSum = buffer.getDouble(48);
+		verbRootSum = buffer.getDouble(56);
+		nounCount = buffer.getInt(64);
+		verbCount = buffer.getInt(68);
+		nounRootCount = buffer.getInt(72);
+		verbRootCount = buffer.getInt(76);
+		nounOffsets = HEADER_SIZE;
+		nounCounts = nounOffsets + 8 * ((nounCount + 1) / 2); // doubles are aligned to 8 bytes
+		verbOffsets = nounCounts + 8 * nounCount;
+		verbCounts = verbOffsets + 8 * ((verbCount + 1) / 2);
+		roots = verbCounts + 8 * verbCount;
+	}
+	
+	// count of the synset with the given offset and part of speech ("n" or "v"), 0 if it is not in the IC file
+	public double getCount(int offset, String pos) {
+		if ("n".equals(pos))
+			return find(offset, nounOffsets, nounCounts, nounCount);
+		if ("v".equals(pos))
+			return find(offset, verbOffsets, verbCounts, verbCount);
+		return 0.0;
+	}
+	
+	private double find(int offset, int offsets, int counts, int count) {
+		int low = 0, high = count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int value = buffer.getInt(offsets + 4 * mid);
+			if (value < offset)
+				low = mid + 1;
+			else if (value > offset)
+				high = mid - 1;
+			else
+				return buffer.getDouble(counts + 8 * mid);
+		}
+		return 0.0;
+	}
+	
+	public int[] getNounRoots() {
+		return getInts(roots, nounRootCount);
+	}
+	
+	public int[] getVerbRoots() {
+		return getInts(roots + 4 * nounRootCount, verbRootCount);
+	}
+	
+	private int[] getInts(int position, int count) {
+		int[] result = new int[count];
+		for (int i=0; i<count; i++)
+			result[i] = buffer.getInt(position + 4 * i);
+		return result;
+	}
+	
+	// open the cached index of an IC file, building (and caching) it first if there is no up to date one
+	public static ICIndex open(String icFile) throws IOException {
+		File source = new File(icFile);
+		for (File cache : getCacheFiles(source)) {
+			ICIndex index = load(cache, source);
+			if (index != null)
+				return index;
+		}
+		
+		ByteBuffer buffer = build(source);
+		for (File cache : getCacheFiles(source)) {
+			try {
+				save(buffer, cache);
+				logger.info("cached the IC index of " + source.getPath() + " in " + cache.getPath());
+				break;
+			} catch (IOException e) {
+				logger.debug("could not cache the IC index in " + cache.getPath());
+			}
+		}
+		return new ICIndex(buffer);
+	}
+	
+	// next to the IC file, or in the temp folder if the IC file is in a read-only location
+	private static List<File> getCacheFiles(File source) {
+		List<File> files = new ArrayList<File>();
+		files.add(new File(source.getPath() + CACHE_SUFFIX));
+		files.add(new File(System.getProperty("java.io.tmpdir"), source.getName() + "-" + Integer.toHexString(source.getAbsolutePath().hashCode()) + CACHE_SUFFIX));
+		return files;
+	}
+	
+	// map a cached index, or return null if it is missing, unreadable or stale
+	private static ICIndex load(File cache, File source) {
+		if (!cache.exists())
+			return null;
+		try (RandomAccessFile raf = new RandomAccessFile(cache, "r"); FileChannel channel = raf.getChannel()) {
+			if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+				return null;
+			// the mapping stays valid after closing the channel
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getLong(0) != MAGIC || buffer.getInt(8) != VERSION 
+					|| buffer.getLong(16) != source.length() || buffer.getLong(24) != source.lastModified())
+				return null;
+			return new ICIndex(buffer);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+	
+	// writes via a temporary file, so that a reader never sees a partially written index
+	private static void save(ByteBuffer buffer, File cache) throws IOException {
+		File temp = new File(cache.getPath() + ".tmp");
+		try (RandomAccessFile raf = new RandomAccessFile(temp, "rw"); FileChannel channel = raf.getChannel()) {
+			raf.setLength(0);
+			ByteBuffer data = buffer.duplicate();
+			data.position(0);
+			while (data.hasRemaining())
+				channel.write(data);
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+		Files.move(temp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	// parses the IC file (space delimited lines of "offset+pos count [ROOT]"), with the same semantics as the original ICFinder setup: 
+	// the sums add up every line, while for a synset listed more than once the last count is kept
+	private static ByteBuffer build(File source) throws IOException {
+		HashMap<Integer, Double> nouns = new HashMap<Integer, Double>(), verbs = new HashMap<Integer, Double>();
+		List<Integer> nounRoots = new ArrayList<Integer>(), verbRoots = new ArrayList<Integer>();
+		double nc = 0.0, vc = 0.0, nrc = 0.0, vrc = 0.0;
+		
+		try (BufferedReader in = new BufferedReader(new FileReader(source))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] editor = line.split("\\s"); // IC files are space delimited
+				for (int i = 0; i < editor.length; i++) {
+					String unit = editor[i];
+					boolean noun = unit.endsWith("n"), verb = unit.endsWith("v");
+					if (!noun && !verb)
+						continue;
+					double uc = Double.parseDouble(editor[1]);
+					Integer offset = parseOffset(editor[0]);
+					if (noun) {
+						put(editor[0], offset, uc, nouns, verbs);
+						nc += uc;
+						if (editor.length == 3) { // if ROOT
+							nrc += uc;
+							if (offset != null)
+								nounRoots.add(offset);
+						}
+					}
+					if (verb) {
+						put(editor[0], offset, uc, nouns, verbs);
+						vc += uc;
+						if (editor.length == 3) { // if ROOT
+							vrc += uc;
+							if (offset != null)
+								verbRoots.add(offset);
+						}
+					}
+				}
+			}
+		}
+		
+		int size = HEADER_SIZE + 8 * ((nouns.size() + 1) / 2) + 8 * nouns.size() + 8 * ((verbs.size() + 1) / 2) + 8 * verbs.size() 
+				+ 4 * (nounRoots.size() + verbRoots.size());
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putLong(MAGIC).putInt(VERSION).putInt(0).putLong(source.length()).putLong(source.lastModified());
+		buffer.putDouble(nc).putDouble(vc).putDouble(nrc).putDouble(vrc);
+		buffer.putInt(nouns.size()).putInt(verbs.size()).putInt(nounRoots.size()).putInt(verbRoots.size());
+		putCounts(buffer, nouns);
+		putCounts(buffer, verbs);
+		for (int root : nounRoots)
+			buffer.putInt(root);
+		for (int root : verbRoots)
+			buffer.putInt(root);
+		buffer.flip();
+		return buffer;
+	}
+	
+	// the count is looked up by the key, i.e. under the part of speech the key ends with
+	private static void put(String key, Integer offset, double count, HashMap<Integer, Double> nouns, HashMap<Integer, Double> verbs) {
+		if (offset == null)
+			return;
+		if (key.endsWith("n"))
+			nouns.put(offset, count);
+		else if (key.endsWith("v"))
+			verbs.put(offset, count);
+	}
+	
+	private static void putCounts(ByteBuffer buffer, HashMap<Integer, Double> counts) {
+		int[] offsets = new int[counts.size()];
+		int i = 0;
+		for (int offset : counts.keySet())
+			offsets[i++] = offset;
+		Arrays.sort(offsets);
+		for (int offset : offsets)
+			buffer.putInt(offset);
+		if (offsets.length % 2 == 1)
+			buffer.putInt(0);
+		for (int offset : offsets)
+			buffer.putDouble(counts.get(offset));
+	}
+	
+	// the synset offset of an IC file key (offset followed by the part of speech), or null if it can never match a synset offset
+	private static Integer parseOffset(String key) {
+		if (key.isEmpty())
+			return null;
+		return parseOffsetDigits(key.substring(0, key.length() - 1));
+	}
+	
+	// the synset offset written in decimal without padding (as in the IC files), or null
+	static Integer parseOffsetDigits(String digits) {
+		try {
+			int offset = Integer.parseInt(digits);
+			return Integer.toString(offset).equals(digits) ? offset : null;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+}
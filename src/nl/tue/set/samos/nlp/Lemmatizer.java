@@ -26,28 +26,60 @@
 
 package nl.tue.set.samos.nlp;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Future;
 
-import edu.stanford.nlp.ling.CoreAnnotations.LemmaAnnotation;
-import edu.stanford.nlp.ling.CoreAnnotations.SentencesAnnotation;
-import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
-import edu.stanford.nlp.ling.CoreLabel;
-import edu.stanford.nlp.pipeline.Annotation;
-import edu.stanford.nlp.pipeline.StanfordCoreNLP;
-import edu.stanford.nlp.util.CoreMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Lemmatization service on top of the Stanford CoreNLP pipeline. The lemmas are memoized in a bounded in-memory map, which can be persisted on disk 
+ * and reused across runs. The texts which are not memoized yet are lemmatized by a shared pool of pipelines, see LemmatizerPool.
+ */
 public class Lemmatizer {
+	static final Logger logger = LoggerFactory.getLogger(Lemmatizer.class);
+	
 	static Lemmatizer m_lemmatizer;
 	Properties props;
-	StanfordCoreNLP pipeline;
+	LemmatizerPool pool;
+	
+	// maximum number of memoized lemmas, the least recently used ones are evicted first
+	public static int CACHE_SIZE = 500000;
+	// maximum number of texts annotated together in one document
+	public static int BATCH_SIZE = 1000;
+	// number of pipelines (and threads) lemmatizing concurrently, fixed when the lemmatizer is first used
+	public static int POOL_SIZE = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	
+	static final String ANNOTATORS = "tokenize,ssplit, pos,  lemma";
+	
+	final Map<String, String> cache = new LinkedHashMap<String, String>(1024, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+	File cacheFile;
 
 	private Lemmatizer() {
 		props = new Properties();
-		props.put("annotators", "tokenize,ssplit, pos,  lemma");
-		pipeline = new StanfordCoreNLP(props, false);
+		props.put("annotators", ANNOTATORS);
+		pool = new LemmatizerPool(props, POOL_SIZE, BATCH_SIZE);
 	}
 
-	public static Lemmatizer getInstance() {
+	// synchronized, as the extractors in parallel extraction share the same pool
+	public static synchronized Lemmatizer getInstance() {
 		if (m_lemmatizer == null) {
 			m_lemmatizer = new Lemmatizer();
 		}
@@ -55,16 +87,93 @@ public class Lemmatizer {
 
 	}
 
+	// lemma of a text, i.e. the lemmas of its tokens each followed by a space
 	public String getLemma(String text) {
-		String lemma = "";
 		if (text == null) text = "";
-		Annotation document = pipeline.process(text);
-		for (CoreMap sentence : document.get(SentencesAnnotation.class)) {
-			for (CoreLabel token : sentence.get(TokensAnnotation.class)) {
-				lemma += token.get(LemmaAnnotation.class) + " ";
-			}
+		String lemma = lookup(text);
+		if (lemma == null) {
+			lemma = pool.lemmatize(text);
+			store(text, lemma);
 		}
 		return lemma;
 	}
+	
+	// lemmas of many texts, submitting the ones that are not memoized yet all at once so they are annotated in batches
+	public Map<String, String> getLemmas(Collection<String> texts) {
+		HashMap<String, String> lemmas = new HashMap<String, String>();
+		LinkedHashMap<String, Future<String>> missing = new LinkedHashMap<String, Future<String>>();
+		for (String text : texts) {
+			if (text == null) text = "";
+			String lemma = lookup(text);
+			if (lemma != null)
+				lemmas.put(text, lemma);
+			else if (!missing.containsKey(text))
+				missing.put(text, pool.submit(text));
+		}
+		
+		for (Map.Entry<String, Future<String>> entry : missing.entrySet()) {
+			String lemma = LemmatizerPool.get(entry.getValue());
+			store(entry.getKey(), lemma);
+			lemmas.put(entry.getKey(), lemma);
+		}
+		return lemmas;
+	}
+	
+	// lemmatize and memoize the given texts in advance, so that the later lookups are cheap
+	public void prefetch(Collection<String> texts) {
+		getLemmas(texts);
+	}
+	
+	private String lookup(String text) {
+		synchronized (cache) {
+			return cache.get(text);
+		}
+	}
+	
+	private void store(String text, String lemma) {
+		synchronized (cache) {
+			cache.put(text, lemma);
+		}
+	}
+	
+	// loads the memoized lemmas from a file written by saveCache, if it exists and was written with the same pipeline
+	@SuppressWarnings("unchecked")
+	public synchronized void loadCache(File file) {
+		if (file.equals(cacheFile))
+			return;
+		cacheFile = file;
+		if (!file.exists())
+			return;
+		try (ObjectInputStream s = new ObjectInputStream(new FileInputStream(file))) {
+			if (!ANNOTATORS.equals(s.readObject())) {
+				logger.info("ignoring the lemma cache written with a different pipeline: " + file.getPath());
+				return;
+			}
+			HashMap<String, String> lemmas = (HashMap<String, String>) s.readObject();
+			synchronized (cache) {
+				for (Map.Entry<String, String> entry : lemmas.entrySet())
+					if (!cache.containsKey(entry.getKey()))
+						cache.put(entry.getKey(), entry.getValue());
+			}
+			logger.info("loaded " + lemmas.size() + " lemmas from " + file.getPath());
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			logger.warn("could not read the lemma cache " + file.getPath());
+		}
+	}
+	
+	// writes the memoized lemmas into a file, via a temporary file so that a reader never sees a partially written one
+	public synchronized void saveCache(File file) throws IOException {
+		HashMap<String, String> lemmas;
+		synchronized (cache) {
+			lemmas = new HashMap<String, String>(cache);
+		}
+		File temp = new File(file.getPath() + ".tmp");
+		try (ObjectOutputStream s = new ObjectOutputStream(new FileOutputStream(temp))) {
+			s.writeObject(ANNOTATORS);
+			s.writeObject(lemmas);
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		cacheFile = file;
+	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.nlp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.stanford.nlp.ling.CoreAnnotations.LemmaAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations.SentencesAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations.TextAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.util.CoreMap;
+
+/**
+ * Fixed pool of CoreNLP lemmatization pipelines, each served by a worker thread. Callers from any thread submit texts to a shared queue, 
+ * and each worker takes whatever is queued at that moment (up to the batch size) and annotates it in one go. A request is never held back 
+ * to wait for more requests, so its latency is bounded by the batches in progress. The pipelines share the loaded models, 
+ * which are loaded only once per JVM.
+ */
+public class LemmatizerPool {
+	static final Logger logger = LoggerFactory.getLogger(LemmatizerPool.class);
+	
+	// two newlines separate the texts in a batch into different sentences
+	static final String BATCH_SEPARATOR = "\n\n";
+	
+	// a text to be lemmatized, completed by one of the workers
+	static class Request {
+		final String text;
+		final CompletableFuture<String> lemma = new CompletableFuture<String>();
+		
+		Request(String text) {
+			this.text = text;
+		}
+	}
+	
+	final BlockingQueue<Request> queue = new LinkedBlockingQueue<Request>();
+	// requests waiting in the queue or being annotated, so the same text is annotated only once when requested concurrently
+	final ConcurrentHashMap<String, Request> pending = new ConcurrentHashMap<String, Request>();
+	final int batchSize;
+	
+	public LemmatizerPool(Properties props, int size, int batchSize) {
+		this.batchSize = batchSize;
+		for (int i=0; i<size; i++) {
+			Worker worker = new Worker(props);
+			Thread thread = new Thread(worker, "lemmatizer-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+	
+	// queue a text for lemmatization
+	public Future<String> submit(String text) {
+		Request request = new Request(text);
+		Request existing = pending.putIfAbsent(text, request);
+		if (existing != null)
+			return existing.lemma;
+		queue.add(request);
+		return request.lemma;
+	}
+	
+	// lemmatize a text, waiting for the result
+	public String lemmatize(String text) {
+		return get(submit(text));
+	}
+	
+	// wait for a submitted text, passing on the failures of the pipeline to the caller
+	public static String get(Future<String> lemma) {
+		try {
+			return lemma.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+	
+	// only the texts which are certainly a single sentence on their own are annotated in batches, so the part of speech tags (hence the lemmas) 
+	// do not depend on the neighbouring texts
+	static boolean isBatchable(String text) {
+		if (text.isEmpty())
+			return false;
+		for (int i=0; i<text.length(); i++) {
+			char c = text.charAt(i);
+			if (!Character.isLetterOrDigit(c) && c != '_' && c != '-')
+				return false;
+		}
+		return true;
+	}
+	
+	// lemmas of the tokens in a sentence, each followed by a space
+	static String getLemma(CoreMap sentence) {
+		String lemma = "";
+		for (CoreLabel token : sentence.get(TokensAnnotation.class)) {
+			lemma += token.get(LemmaAnnotation.class) + " ";
+		}
+		return lemma;
+	}
+	
+	class Worker implements Runnable {
+		StanfordCoreNLP pipeline;
+		// same pipeline, but breaking sentences at two newlines, for annotating texts in batches
+		StanfordCoreNLP batchPipeline;
+		
+		Worker(Properties props) {
+			pipeline = new StanfordCoreNLP(props, false);
+			
+			Properties batchProps = new Properties();
+			batchProps.putAll(props);
+			batchProps.put("ssplit.newlineIsSentenceBreak", "two");
+			batchPipeline = new StanfordCoreNLP(batchProps, false);
+		}
+		
+		public void run() {
+			List<Request> requests = new ArrayList<Request>();
+			while (true) {
+				try {
+					requests.add(queue.take());
+				} catch (InterruptedException e) {
+					return;
+				}
+				queue.drainTo(requests, batchSize - 1);
+				
+				try {
+					process(requests);
+				} catch (RuntimeException | Error e) {
+					for (Request request : requests)
+						request.lemma.completeExceptionally(e);
+				} finally {
+					for (Request request : requests)
+						pending.remove(request.text, request);
+					requests.clear();
+				}
+			}
+		}
+		
+		private void process(List<Request> requests) {
+			List<Request> batch = new ArrayList<Request>();
+			for (Request request : requests) {
+				if (isBatchable(request.text))
+					batch.add(request);
+				else
+					request.lemma.complete(annotate(request.text));
+			}
+			if (batch.size() == 1)
+				batch.get(0).lemma.complete(annotate(batch.get(0).text));
+			else if (batch.size() > 1)
+				annotateBatch(batch);
+		}
+		
+		// runs the pipeline on a single text
+		private String annotate(String text) {
+			String lemma = "";
+			Annotation document = pipeline.process(text);
+			for (CoreMap sentence : document.get(SentencesAnnotation.class)) {
+				lemma += getLemma(sentence);
+			}
+			return lemma;
+		}
+		
+		// annotates the texts in one document, one sentence per text. Falls back to annotating the texts one by one if the sentences do not line up with them
+		private void annotateBatch(List<Request> batch) {
+			StringBuilder text = new StringBuilder();
+			for (Request request : batch) {
+				if (text.length() > 0) 
+					text.append(BATCH_SEPARATOR);
+				text.append(request.text);
+			}
+			
+			List<CoreMap> sentences = batchPipeline.process(text.toString()).get(SentencesAnnotation.class);
+			if (sentences == null || sentences.size() != batch.size()) {
+				logger.debug("batch lemmatization did not line up, lemmatizing " + batch.size() + " texts one by one");
+				for (Request request : batch)
+					request.lemma.complete(annotate(request.text));
+				return;
+			}
+			
+			for (int i=0; i<batch.size(); i++) {
+				Request request = batch.get(i);
+				CoreMap sentence = sentences.get(i);
+				if (request.text.equals(sentence.get(TextAnnotation.class)))
+					request.lemma.complete(getLemma(sentence));
+				else
+					request.lemma.complete(annotate(request.text));
+			}
+		}
+	}
+}
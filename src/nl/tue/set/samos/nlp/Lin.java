@@ -32,6 +32,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.TreeMap;
@@ -58,6 +59,8 @@ public class Lin
  	private ICFinder 				icfinder 		=	null;
 	private String[]					editor			=	null;
 	private NumberFormat		formatter		=	new DecimalFormat("0.0000");
+	private NounHierarchy		nouns			=	null; // compact noun hierarchy for lin(1) on nouns, if available
+	private HashMap<String, int[]>	nounSenses	=	new HashMap<String, int[]>(); // hierarchy ids of the noun senses per word, empty if not in WordNet. Not thread-safe, hence one Lin per thread
 
 	public Lin(IDictionary dict, ICFinder icfinder)
 	{
@@ -66,6 +69,12 @@ public class Lin
 		this.icfinder 	= 	icfinder;
 	}
 
+	public Lin(IDictionary dict, ICFinder icfinder, NounHierarchy nouns)
+	{
+		this(dict, icfinder);
+		this.nouns		=	nouns;
+	}
+
 // lin(1) -- THE FOUNDATION OF ALL THE VARIATIONS OF THE INPUT DATA --
 // 'lin' Computes the relatedness of two word senses using an information content scheme.
 // The relatedness is equal to twice the information content of the LCS divided by the sum of the information content of each input synset.
@@ -81,6 +90,14 @@ alternatives.
 */
 	public double lin(String w1, int s1, String w2, int s2, String pos)
 	{
+		if(nouns != null && pos.equalsIgnoreCase("n"))
+		{
+			double lin = linNouns(w1, s1, w2, s2);
+			if(!Double.isNaN(lin))
+			{
+				return ( lin );
+			}
+		}
 		double 			lin 		= 0.0;
 		IIndexWord	word1	=	null;
 		IIndexWord 	word2	=	null;
@@ -131,10 +148,10 @@ alternatives.
 // ...........................................................................................................................................
 
 // {synset} 1 IC
-		double ic1	=	icfinder.getIC(""+ synset1.getOffset(), pos);
+		double ic1	=	icfinder.getIC(synset1.getOffset(), pos);
 		//System.out.println(ic1);
 // {synset} 2 IC
-		double ic2	=	icfinder.getIC(""+ synset2.getOffset(), pos);
+		double ic2	=	icfinder.getIC(synset2.getOffset(), pos);
 		//System.out.println(ic2);
 // [error check] If IC(synset1) or IC(synset2) is zero, then zero is returned as the relatedness score, due to lack of data.
 		if(ic1 == 0.0 || ic2 == 0.0)
@@ -152,7 +169,7 @@ alternatives.
 		}
 		else
 		{
-			ic3	=	icfinder.getIC(""+ lcs.getOffset(), pos);
+			ic3	=	icfinder.getIC(lcs.getOffset(), pos);
 		}
 		//System.out.println(ic3);
 // ...........................................................................................................................................
@@ -163,6 +180,58 @@ alternatives.
 		return ( lin );
 	}
 
+// lin(1) on the compact noun hierarchy: same checks and score as above, with the <lcs> IC from a merge of the two sorted ancestor arrays.
+// Allocation free once the words are cached. NaN if a synset is not in the hierarchy, then lin(1) falls back to the dictionary
+	private double linNouns(String w1, int s1, String w2, int s2)
+	{
+		int[] senses1 = getNounSenses(w1);
+		int[] senses2 = getNounSenses(w2);
+// [error check]: the words must exist in WordNet and have the senses
+		if(s1 > senses1.length || s2 > senses2.length)
+		{
+			return ( 0 ); // 0 is an error code
+		}
+		int id1 = senses1[s1 - 1];
+		int id2 = senses2[s2 - 1];
+		if(id1 < 0 || id2 < 0)
+		{
+			return ( Double.NaN );
+		}
+		double ic1 = nouns.getIC(id1);
+		double ic2 = nouns.getIC(id2);
+		if(ic1 == 0.0 || ic2 == 0.0)
+		{
+			return ( 0.0 );
+		}
+		double ic3 = nouns.getLCSIC(id1, id2);
+		return ( (2.0 * ic3) / (ic1 + ic2) );
+	}
+
+// the hierarchy ids of the noun senses of a word (looked up as in lin(1), so invalid words fail the same way), cached per word
+	private int[] getNounSenses(String w)
+	{
+		int[] senses = nounSenses.get(w);
+		if(senses == null)
+		{
+			IIndexWord word = dict.getIndexWord(w, POS.NOUN);
+			if(word == null)
+			{
+				senses = new int[0];
+			}
+			else
+			{
+				List<IWordID> wordIDs = word.getWordIDs();
+				senses = new int[wordIDs.size()];
+				for(int i = 0; i < senses.length; i++)
+				{
+					senses[i] = nouns.getId(wordIDs.get(i).getSynsetID().getOffset());
+				}
+			}
+			nounSenses.put(w, senses);
+		}
+		return ( senses );
+	}
+
 // lin(2) all senses
 	public TreeMap<String, Double> lin(String w1, String w2, String pos)
 	{
@@ -324,7 +393,7 @@ alternatives.
 		ISynsetID	maxlcs	=	null;
 		for(ISynsetID h : h1)
 		{
-			double ic = icfinder.getIC("" + h.getOffset(), pos); // use ICfinder to get the Information Content value
+			double ic = icfinder.getIC(h.getOffset(), pos); // use ICfinder to get the Information Content value
 			if(ic > max)
 			{
 				max 		=	ic;
@@ -35,15 +35,16 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,15 +55,16 @@ import org.slf4j.LoggerFactory;
 //import edu.cmu.lti.ws4j.impl.Lin;
 import edu.cmu.lti.ws4j.util.WS4JConfiguration;
 import edu.mit.jwi.IDictionary;
-import edu.mit.jwi.RAMDictionary;
 import edu.mit.jwi.item.POS;
 import nl.tue.set.samos.common.Constants;
+import nl.tue.set.samos.common.LongDoubleHashMap;
 import nl.tue.set.samos.common.Pair;
 import nl.tue.set.samos.common.enums.SERIALIZATION;
 import nl.tue.set.samos.feature.Feature;
 import nl.tue.set.samos.feature.NGram;
 import nl.tue.set.samos.feature.NTreeApted;
 import nl.tue.set.samos.feature.NamedFeature;
+import nl.tue.set.samos.feature.corpus.FeatureCorpus;
 import nl.tue.set.samos.feature.parser.JSONParser;
 import nl.tue.set.samos.feature.parser.PlainTextParser;
 import uk.ac.open.crc.intt.IdentifierNameTokeniser;
@@ -103,6 +105,13 @@ public class NLP {
 	
 	public HashMap<String, String[]> tokenLookup = new HashMap<String, String[]>();
 	public HashMap<String, Double> synLookup = new HashMap<String, Double>();
+	
+	// interned tokens of the names compared via compareMultiword and isSynonymExact, with their scores per wordnet threshold
+	private final TokenTable liveTokens = new TokenTable(this, null);
+	private final HashMap<String, int[]> nameTokens = new HashMap<String, int[]>();
+	private final HashMap<Double, LongDoubleHashMap> synonymMemos = new HashMap<Double, LongDoubleHashMap>();
+	// interned tokens of the comparisons with a lemma lookup, kept while the same lookup is passed
+	private TokenTable lookupTokens;
 		
 	public Lin lin;
 	public Path path;
@@ -112,6 +121,19 @@ public class NLP {
 	
 	public boolean TRACE_SYNONYMS = false;
 	
+	// number of fork/join workers for the synonym lookup table computation, 1 means sequential computation
+	public int SYNONYM_THREADS = Runtime.getRuntime().availableProcessors();
+	// the synonym lookup table is computed in square tiles of this many names
+	public int SYNONYM_TILE_SIZE = 128;
+	
+	// each thread has its own lin and stemmer, as the synonym computation can run in parallel
+	private static final ThreadLocal<Lin> threadLin = ThreadLocal.withInitial(() -> {
+		WordNet wordNet = WordNet.getInstance();
+		return new Lin(wordNet.dict, wordNet.icfinder, wordNet.getNounHierarchy());
+	});
+	private static final ThreadLocal<Stemmer> threadStemmer = ThreadLocal.withInitial(Stemmer::new);
+	private static final ThreadLocal<BoundedLevenshtein> threadLevenshtein = ThreadLocal.withInitial(BoundedLevenshtein::new);
+	
 	public NLP(){
         WS4JConfiguration.getInstance().setMFS(true);
         
@@ -123,30 +145,24 @@ public class NLP {
         lemmatizer = Lemmatizer.getInstance();
 	}
 	
-	// bulk load wordnet-related files
+	// take the wordnet-related resources shared in the jvm, loading them if they are not loaded yet
 	public void loadWordNet(){      
-      String wnhome 	= "/scripts/SCICO-D-21-00209/wordnet/dict";
-      String icfile		= "/scripts/SCICO-D-21-00209/wordnet/semcor/ic-semcor.dat";
-      URL url = null;
-      try
-      {
-      	url = new URL("file", null, wnhome);
-      }
-      catch(MalformedURLException e)
-      {
-      	e.printStackTrace();
-      }
-      if(url == null) return;
-      dict = new RAMDictionary(url);
-      try {
-      	dict.open();
-      } catch (IOException e) {
-      	e.printStackTrace();
-      }
-      ICFinder 			icfinder 			=	new ICFinder(icfile);
-      // ....................................................................................................................................................................
-      lin = new Lin(dict, icfinder);
-      // ....................................................................................................................................................................
+		WordNet wordNet = WordNet.getInstance();
+		dict = wordNet.dict;
+		lin = wordNet.lin;
+	}
+	
+	// wordnet is loaded lazily, when it is needed for the first time
+	public IDictionary getDictionary() {
+		if (dict == null)
+			loadWordNet();
+		return dict;
+	}
+	
+	public Lin getLin() {
+		if (lin == null)
+			loadWordNet();
+		return threadLin.get();
 	}
 	
 	
@@ -263,38 +279,68 @@ public class NLP {
 
 	// main method for comparing two model element names, each of which are typically compound names with multiple tokens 
 	public double compareMultiword(String word1, String word2, double wordNetTreshold){ //String x, String y
-		//this.NLPOpt.filter(this.NLPOpt.tokeniseIntt(basePair.y))
-		String[] expandedTokens1, expandedTokens2;
-		expandedTokens1 = filter(tokeniseIntt(word1));
-		if (expandedTokens1.length == 0) expandedTokens1 = new String[] {word1};
-		expandedTokens2 = filter(tokeniseIntt(word2));
-		if (expandedTokens2.length == 0) expandedTokens2 = new String[] {word2};
-		double[][] scoreMatrix = new double[expandedTokens1.length][expandedTokens2.length];
+		int[] tokens1 = getNameTokens(word1);
+		int[] tokens2 = getNameTokens(word2);
 		double sum = 0.0;
-		for (int i=0; i<expandedTokens1.length; i++) {
-			for (int j=0;j<expandedTokens2.length; j++) {
-				scoreMatrix[i][j] = isSynonymExact(expandedTokens1[i], expandedTokens2[j], wordNetTreshold);
-				//scoreMatrix[i][j] = isSynonymExact(expandedTokens1[i], expandedTokens2[j], 0);
-				if(scoreMatrix[i][j] > 0) {
-					sum += scoreMatrix[i][j];
+		for (int i=0; i<tokens1.length; i++) {
+			for (int j=0;j<tokens2.length; j++) {
+				double score = getSynonymScore(tokens1[i], tokens2[j], wordNetTreshold);
+				if(score > 0) {
+					sum += score;
 				}
 			}
 		}
 		
 
-      return sum  / (1.0 * Math.max(expandedTokens1.length, expandedTokens2.length));
+      return sum  / (1.0 * Math.max(tokens1.length, tokens2.length));
+	}
+	
+	// the interned tokens of a model element name, tokenised once per name. A null token (of a null name) is -1
+	private int[] getNameTokens(String name) {
+		int[] tokens = nameTokens.get(name);
+		if (tokens == null) {
+			String[] expandedTokens = filter(tokeniseIntt(name));
+			if (expandedTokens.length == 0) expandedTokens = new String[] {name};
+			tokens = new int[expandedTokens.length];
+			for (int i=0; i<expandedTokens.length; i++)
+				tokens[i] = expandedTokens[i] == null ? -1 : liveTokens.intern(expandedTokens[i]);
+			nameTokens.put(name, tokens);
+		}
+		return tokens;
+	}
+	
+	// memoized isSynonymExact of two interned tokens, one probe for a token pair compared before with the same threshold
+	private double getSynonymScore(int token1, int token2, double wordNetTreshold) {
+		if (token1 < 0 || token2 < 0)
+			return 0.0;
+		LongDoubleHashMap memo = synonymMemos.get(wordNetTreshold);
+		if (memo == null) {
+			memo = new LongDoubleHashMap();
+			synonymMemos.put(wordNetTreshold, memo);
+		}
+		long key = ((long) token1 << 32) | token2;
+		double score = memo.get(key, Double.NaN);
+		if (Double.isNaN(score)) {
+			score = isSynonymExact(liveTokens, token1, token2, wordNetTreshold);
+			memo.put(key, score);
+		}
+		return score;
 	}
 	
 	// compare two model element names with token lookup for increased performance
 	public double compareMultiwordWithTokenLookup(Integer word1, Integer word2, double wordNetTreshold, HashMap<Integer, String[]> tokenLookup, HashMap<String, String> lemmaLookup){ //String x, String y
-		String[] expandedTokens1, expandedTokens2;
-		expandedTokens1 = tokenLookup.get(word1);
-		expandedTokens2 = tokenLookup.get(word2);
+		TokenTable tokens = getLookupTokens(lemmaLookup);
+		return compareMultiwordWithTokenLookup(intern(tokens, tokenLookup.get(word1)), intern(tokens, tokenLookup.get(word2)), wordNetTreshold, tokens);
+	}
+	
+	// same as above, for names already interned in the given table. A null token (-1) scores 0
+	double compareMultiwordWithTokenLookup(int[] expandedTokens1, int[] expandedTokens2, double wordNetTreshold, TokenTable tokens){
 		double[][] scoreMatrix = new double[expandedTokens1.length][expandedTokens2.length];
 		double sum = 0.0;
 		for (int i=0; i<expandedTokens1.length; i++)
 			for (int j=0;j<expandedTokens2.length; j++) {
-				scoreMatrix[i][j] = isSynonymExact(expandedTokens1[i], expandedTokens2[j], wordNetTreshold, lemmaLookup);
+				if (expandedTokens1[i] >= 0 && expandedTokens2[j] >= 0)
+					scoreMatrix[i][j] = isSynonymExact(tokens, expandedTokens1[i], expandedTokens2[j], wordNetTreshold);
 			}
 		
 		for (int i=0; i<expandedTokens1.length; i++){
@@ -318,31 +364,34 @@ public class NLP {
       return sum  / (1.0 * Math.max(expandedTokens1.length, expandedTokens2.length));
 	}
 	
+	// the ids of the tokens in the table, -1 for a null token
+	private static int[] intern(TokenTable tokens, String[] words) {
+		int[] ids = new int[words.length];
+		for (int i=0; i<words.length; i++)
+			ids[i] = words[i] == null ? -1 : tokens.intern(words[i]);
+		return ids;
+	}
+	
+	// the token table of the given lemma lookup, reused as long as the same lookup is passed, which is not expected to change in the meantime
+	private TokenTable getLookupTokens(HashMap<String, String> lemmaLookup) {
+		if (lookupTokens == null || !lookupTokens.hasLemmaLookup(lemmaLookup))
+			lookupTokens = new TokenTable(this, lemmaLookup);
+		return lookupTokens;
+	}
+	
 		
 	private final IdentifierNameTokeniserFactory factory = new IdentifierNameTokeniserFactory();	
 	private final IdentifierNameTokeniser tokeniser;
  		                                             
-	private int minimum(int a, int b, int c) {                            
-		return Math.min(Math.min(a, b), c);                                      
-	}                                                                            
-	
-	// standard levenshtein distance computation
+	// normalized levenshtein distance, exact as long as it can be within the similarity threshold, otherwise reported as 1.0.
+	// The bound has one unit of slack, so that the comparison of the normalized distance with the threshold is still decided by the callers
 	private double compareNormalizedLevenshteinDistance(CharSequence lhs, CharSequence rhs) {
-		int[][] distance = new int[lhs.length() + 1][rhs.length() + 1];        
-
-		for (int i = 0; i <= lhs.length(); i++)                                 
-			distance[i][0] = i;                                                  
-		for (int j = 1; j <= rhs.length(); j++)                                 
-			distance[0][j] = j;                                                  
-
-		for (int i = 1; i <= lhs.length(); i++)                                 
-			for (int j = 1; j <= rhs.length(); j++)                             
-				distance[i][j] = minimum(                                        
-						distance[i - 1][j] + 1,                                  
-						distance[i][j - 1] + 1,                                  
-						distance[i - 1][j - 1] + ((lhs.charAt(i - 1) == rhs.charAt(j - 1)) ? 0 : 1));
-
-		return (1.0 * distance[lhs.length()][rhs.length()]) / Math.max(lhs.length(), rhs.length());
+		int length = Math.max(lhs.length(), rhs.length());
+		int bound = (int) (LevenshteinSimilarityTreshold * length) + 1;
+		int distance = threadLevenshtein.get().distance(lhs, rhs, bound);
+		if (distance > bound)
+			return 1.0;
+		return (1.0 * distance) / length;
 	}
 
 	// tokenise word using the intt library
@@ -402,7 +451,7 @@ public class NLP {
 	
 	// standard Porter stemmer
 	public String stem(String word){
-		Stemmer stemmer = new Stemmer(); // how does this affect performance?
+		Stemmer stemmer = threadStemmer.get(); // stem() resets the buffer, so the stemmer can be reused
 		stemmer.add(word.toCharArray(), word.length());
 		stemmer.stem();
 		return stemmer.toString();
@@ -411,106 +460,39 @@ public class NLP {
 	// check if word is in wordnet
 	public boolean isWordInWordnet(String word, POS pos){
 		if (word == null || pos == null) return false;
-		return dict.getIndexWord(word, pos) != null;
+		return getDictionary().getIndexWord(word, pos) != null;
 	}
 	
-	// This is the main method for comparing two words using various NLP techniques.
+	// This is the main method for comparing two words using various NLP techniques. The words are assumed to be lemmatized before.
 	public double isSynonymExact(String word1, String word2, double wordNetTreshold){
 		if (word1 == null || word2 == null) 
 			return 0.0;
-		String lemma1, lemma2;
-		if (word1.contains(".n.")) {
-			lemma1 = word1.substring(0, word1.indexOf('.'));
-		}
-		else 
-			lemma1 = word1;
-		
-		if (word2.contains(".n.")) {
-			lemma2 = word2.substring(0, word2.indexOf('.'));
-		}
-		else
-			lemma2 = word2;
-		String lowerCaseWord1 = toLowerCase(lemma1);
-		String lowerCaseWord2 = toLowerCase(lemma2);
-		
-		// if same lower case 
-		if (lowerCaseWord1.equals(lowerCaseWord2)) return 1.0;
-		
-		// if same stems, consider synonym
-		if (stem(lowerCaseWord1).equals(stem(lowerCaseWord2))) return 0.9; // WAS 1.0
-		
-		// assuming lemmatized before here
-//		if (lemmatizer.getLemma(lowerCaseWord1).equals(lemmatizer.getLemma(lowerCaseWord1))) return 0.9;
-		
-		// levenshtein  
-		double lev = compareNormalizedLevenshteinDistance(lowerCaseWord1, lowerCaseWord2);
-		if (lev <= LevenshteinSimilarityTreshold)  {
-			if (!(isWordInWordnet(lowerCaseWord1, POS.NOUN) && isWordInWordnet(lowerCaseWord2, POS.NOUN))) {
-			lev = 1 - lev;
-//			lev = 1.0; 
-			} else
-				lev = 0.0;
-		}
-		else lev = 0.0;
-
-		// wordnet
-		double wordnet = 0.0;
-		if (wordNetTreshold > 0.0) {
-			
-						
-			int sense1 = 1, //Integer.parseInt(word1.substring(word1.lastIndexOf('.')+1)),
-					sense2 = 1;//Integer.parseInt(word2.substring(word2.lastIndexOf('.')+1));
-			try{
-				wordnet = lin.lin(lemma1, sense1, lemma2, sense2, "n");
-				
-			} catch(Exception ex) {
-				wordnet = 0.0;
-			}
-			if (wordnet >= wordNetTreshold) {  
-				if (wordnet == 1) wordnet = 0.95;
-			}
-			else 
-				wordnet = 0.0;
-			
-			// end wordnet									
-			
-		}
-		
-		return Math.max(wordnet, lev);
+		return getSynonymScore(liveTokens.intern(word1), liveTokens.intern(word2), wordNetTreshold);
 	}
 
+	// same as above, with the lemmas of the (lower case) words from the given lookup
 	public double isSynonymExact(String word1, String word2, double wordNetTreshold, HashMap<String, String> lemmaLookup){
 		if (word1 == null || word2 == null) 
 			return 0.0;
-		String lemma1, lemma2;
-		if (word1.contains(".n.")) {
-			lemma1 = word1.substring(0, word1.indexOf('.'));
-		}
-		else 
-			lemma1 = word1;
-		
-		if (word2.contains(".n.")) {
-			lemma2 = word2.substring(0, word2.indexOf('.'));
-		}
-		else
-			lemma2 = word2;
-		String lowerCaseWord1 = toLowerCase(lemma1);
-		String lowerCaseWord2 = toLowerCase(lemma2);
-		
+		TokenTable tokens = getLookupTokens(lemmaLookup);
+		return isSynonymExact(tokens, tokens.intern(word1), tokens.intern(word2), wordNetTreshold);
+	}
+	
+	// compare two interned tokens: same lower case form, same stem, same lemma (if the table has lemmas), levenshtein and wordnet (lin)
+	double isSynonymExact(TokenTable tokens, int token1, int token2, double wordNetTreshold){
 		// if same lower case 
-		if (lowerCaseWord1.equals(lowerCaseWord2)) return 1.0;
+		if (tokens.getLowerCase(token1).equals(tokens.getLowerCase(token2))) return 1.0;
 		
 		// if same stems, consider synonym
-		if (stem(lowerCaseWord1).equals(stem(lowerCaseWord2))) return 0.9; // WAS 1.0
+		if (tokens.getStem(token1).equals(tokens.getStem(token2))) return 0.9; // WAS 1.0
 		
-		// TODO check lemmas, if not PREPROCESS_LEMMATIZE
-//		if (lemmatizer.getLemma(lowerCaseWord1).equals(lemmatizer.getLemma(lowerCaseWord1))) return 0.9;
-		if (lemmaLookup.get(lowerCaseWord1).equals(lemmaLookup.get(lowerCaseWord2))) return 0.9;
+		// without a lemma lookup, assuming lemmatized before here
+		if (tokens.hasLemmas() && tokens.getLemma(token1).equals(tokens.getLemma(token2))) return 0.9;
 		
 		// levenshtein  
-		double lev = compareNormalizedLevenshteinDistance(lowerCaseWord1, lowerCaseWord2);
+		double lev = compareNormalizedLevenshteinDistance(tokens.getLowerCase(token1), tokens.getLowerCase(token2));
 		if (lev <= LevenshteinSimilarityTreshold)  {
-			if (!(isWordInWordnet(lemmaLookup.get(lowerCaseWord1), POS.NOUN) && isWordInWordnet(lemmaLookup.get(lowerCaseWord2), POS.NOUN))) {
+			if (!(tokens.isInWordNet(token1) && tokens.isInWordNet(token2))) {
 			lev = 1 - lev;
 //			lev = 1.0; 
 			} else
@@ -526,15 +508,24 @@ public class NLP {
 			int sense1 = 1, 
 					sense2 = 1;
 			try{
-				wordnet = lin.lin(lemmaLookup.get(lowerCaseWord1), sense1, lemmaLookup.get(lowerCaseWord2), sense2, "n");
+				wordnet = getLin().lin(tokens.getLinWord(token1), sense1, tokens.getLinWord(token2), sense2, "n");
 
 			} catch(Exception ex) {
 				wordnet = 0.0;
 			}
-			if (wordnet >= wordNetTreshold)  
-				if (wordnet == 1) wordnet = 0.95;
+			if (tokens.hasLemmas()) {
+				// as the lookup tables have been computed so far: a score below the threshold is kept, one above it is kept only if it is 1
+				if (wordnet >= wordNetTreshold)  
+					if (wordnet == 1) wordnet = 0.95;
+					else 
+						wordnet = 0.0;
+			} else {
+				if (wordnet >= wordNetTreshold) {  
+					if (wordnet == 1) wordnet = 0.95;
+				}
 				else 
 					wordnet = 0.0;
+			}
 			// end wordnet									
 			
 		}
@@ -553,31 +544,43 @@ public class NLP {
 		HashMap<String, String> lemmaLookup = new HashMap<String, String>();
 		File lemmaFile = new File(sourceFolder + "/lemma.ser");
 		
-		// double calculation if there are unigrams of different units (e.g. SimpleName + TypedName) TODO improve
-		File[] featureFiles = new File(sourceFolder).listFiles(new FilenameFilter() { 
-	         public boolean accept(File dir, String filename)
-	         															// redundant: checks all the n-gram files (if present)
-	              { return filename.endsWith(Constants.featureFileSuffix) /*&& filename.contains(_STRUCTURE.toString())*/; }
-  	} );
-		Arrays.sort(featureFiles, (f1, f2) -> f1.getName().compareTo(f2.getName()));
-				
-		for(File ff : featureFiles)
-		{							
-			BufferedReader br = new BufferedReader(new FileReader(ff));
+		// use the already parsed features from the corpus if there is one, otherwise parse the feature files
+		FeatureCorpus corpus = FeatureCorpus.open(sourceFolder);
+		if (corpus != null) {
+			for (int i=0; i<corpus.size(); i++)
+				for (Feature f : corpus.getFeatures(i))
+					if (f != null)
+						processFeatureForTokens(f, tokenLookup, lemmaLookup, dictionary);
+		} else {
+			// double calculation if there are unigrams of different units (e.g. SimpleName + TypedName) TODO improve
+			File[] featureFiles = new File(sourceFolder).listFiles(new FilenameFilter() { 
+		         public boolean accept(File dir, String filename)
+		         															// redundant: checks all the n-gram files (if present)
+		              { return filename.endsWith(Constants.featureFileSuffix) /*&& filename.contains(_STRUCTURE.toString())*/; }
+	  	} );
+			Arrays.sort(featureFiles, (f1, f2) -> f1.getName().compareTo(f2.getName()));
+					
+			for(File ff : featureFiles)
+			{							
+				BufferedReader br = new BufferedReader(new FileReader(ff));
 
-			String s = null;
-			while((s = br.readLine()) != null) {
-				Feature f;
-				if (_SERIALIZATION == SERIALIZATION.PLAIN)
-					f = PlainTextParser.parseText(s);					
-				else // means JSON
-					f = JSONParser.parseText(s);
-				if (f != null)
-					processFeatureForTokens(f, tokenLookup, lemmaLookup, dictionary);
+				String s = null;
+				while((s = br.readLine()) != null) {
+					Feature f;
+					if (_SERIALIZATION == SERIALIZATION.PLAIN)
+						f = PlainTextParser.parseText(s);					
+					else // means JSON
+						f = JSONParser.parseText(s);
+					if (f != null)
+						processFeatureForTokens(f, tokenLookup, lemmaLookup, dictionary);
+				}
+				br.close();
 			}
-			br.close();
 		}
 		
+		Map<String, String> lemmas = lemmatizer.getLemmas(lemmaLookup.keySet());
+		lemmaLookup.replaceAll((token, lemma) -> lemmas.get(token));
+		
 		FileOutputStream fis = new FileOutputStream(tokenFile);  
 		ObjectOutputStream s = new ObjectOutputStream(fis);          
 		s.writeObject(tokenLookup);
@@ -626,9 +629,10 @@ public class NLP {
 				else
 					tokenLookup.put(dictionary.size()-1, expandedTokens);
 				
+				// the lemmas are filled in afterwards, in batches
 				for (String token : expandedTokens){
 					if (!lemmaLookup.containsKey(token))
-						lemmaLookup.put(token, lemmatizer.getLemma(token));
+						lemmaLookup.put(token, null);
 				}
 			}
 		} 
@@ -672,55 +676,329 @@ public class NLP {
 			s.close();
 		}
 		
-		Set<String> tokenSet = new HashSet<String>();
-		for (String[] tokens : tokenLookup.values()){
-			for (String token : tokens)
-				if (!tokenSet.contains(token)) tokenSet.add(token);
+		ArrayList<Integer> keys = new ArrayList<Integer>();
+		keys.addAll(tokenLookup.keySet());
+		int size = keys.size();
+		
+		// the unique tokens, interned in the order of their first occurrence, and the token ids of each name
+		TokenTable tokens = new TokenTable(this, lemmaLookup);
+		int[][] nameTokens = new int[size][];
+		for (int i=0; i<size; i++) {
+			String[] nameTokenStrings = tokenLookup.get(keys.get(i));
+			nameTokens[i] = new int[nameTokenStrings.length];
+			for (int k=0; k<nameTokenStrings.length; k++)
+				nameTokens[i][k] = tokens.intern(nameTokenStrings[k]);
 		}
-		logger.debug("token lookup table size:" + tokenLookup.keySet().size());
-		logger.debug("token set size:" + tokenSet.size());
+		logger.debug("token lookup table size:" + size);
+		logger.debug("token set size:" + tokens.size());
 		logger.debug("starting synonym lookup table computation, this can take a while...");
 		
+		// first stage: the similarities of the unique token pairs, as the score of a name pair only depends on those of its tokens.
+		// The token similarity is symmetric, so only the upper triangle is computed, in square tiles
+		int tileSize = Math.max(1, SYNONYM_TILE_SIZE);
+		int tokenCount = tokens.size();
+		int tokenBlocks = (tokenCount + tileSize - 1) / tileSize;
+		TokenTile[][] tokenTiles = new TokenTile[tokenBlocks][tokenBlocks];
+		ArrayList<TokenTile> tokenTileList = new ArrayList<TokenTile>();
+		SynonymProgress tokenProgress = new SynonymProgress("token similarities", (long) tokenCount * (tokenCount + 1) / 2);
+		for (int rb=0; rb<tokenBlocks; rb++)
+			for (int cb=rb; cb<tokenBlocks; cb++) {
+				tokenTiles[rb][cb] = new TokenTile(rb * tileSize, Math.min(tokenCount, (rb + 1) * tileSize), 
+						cb * tileSize, Math.min(tokenCount, (cb + 1) * tileSize), tokens, synonymThreshold, tokenProgress);
+				tokenTileList.add(tokenTiles[rb][cb]);
+			}
+		invokeSynonymTasks(tokenTileList);
+		TokenSimilarities similarities = new TokenSimilarities(tokenCount, tokenTiles, tileSize);
+		logger.debug("similar token pairs:" + similarities.pairCount);
+		
+		// second stage: the scores of the name pairs (i, j) with j >= i, visiting only the pairs which share at least one similar token pair.
+		// The rows are computed in blocks and merged in the sequential (i, j) order
+		int[][] tokenNames = getTokenNames(nameTokens, tokenCount);
+		ArrayList<SynonymRows> rowBlocks = new ArrayList<SynonymRows>();
+		SynonymProgress nameProgress = new SynonymProgress("name similarities", size);
+		for (int from=0; from<size; from+=tileSize)
+			rowBlocks.add(new SynonymRows(from, Math.min(size, from + tileSize), keys, nameTokens, tokenNames, similarities, 
+					synonymThreshold, tokenLookup, tokens, nameProgress));
+		invokeSynonymTasks(rowBlocks);
+		
 		HashMap<Pair<Integer, Integer>, Double> synonymLookup = new HashMap<Pair<Integer, Integer>, Double>();
+		for (SynonymRows rows : rowBlocks)
+			for (int k=0; k<rows.pairs.size(); k++)
+				synonymLookup.put(rows.pairs.get(k), rows.values.get(k));
 		
-		ArrayList<Integer> keys = new ArrayList<Integer>();
-		keys.addAll(tokenLookup.keySet());
+		String suffix = synonymThreshold>0?"_WNET":"_NOWNET";
+		File synFile = new File(sourceFolder + "/syn" + suffix + ".ser");  
 		
-		int size = keys.size();
-		for (int i=0; i<size; i++){
-			Integer word1 = keys.get(i);
-			if (!TRACE_SYNONYMS && (i % (size/10) == 0)) // debug every 10% of the the progress  
-				logger.debug("computing synonyms, progress " + (i / (size/10) * 10) + "%");
-			for (int j=i; j<size; j++) {
-				Integer word2 = keys.get(j);
-				Pair<Integer, Integer> key = new Pair<Integer,Integer>(word1, word2);
-				if (synonymLookup.containsKey(key)/* || synonymLookup.containsKey(reverseKey)*/)
-					;
-				else {
-					double d = compareMultiwordWithTokenLookup(word1, word2, synonymThreshold, tokenLookup, lemmaLookup);
+		FileOutputStream fis = new FileOutputStream(synFile);  
+		ObjectOutputStream s = new ObjectOutputStream(fis);          
+		s.writeObject(synonymLookup);
+		s.flush();
+		s.close();		
+	}
+	
+	// the ascending indices of the names which contain each token
+	private int[][] getTokenNames(int[][] nameTokens, int tokenCount) {
+		int[] counts = new int[tokenCount];
+		int[] last = new int[tokenCount];
+		Arrays.fill(last, -1);
+		for (int i=0; i<nameTokens.length; i++)
+			for (int token : nameTokens[i])
+				if (last[token] != i) {
+					last[token] = i;
+					counts[token]++;
+				}
+		int[][] tokenNames = new int[tokenCount][];
+		for (int t=0; t<tokenCount; t++)
+			tokenNames[t] = new int[counts[t]];
+		Arrays.fill(counts, 0);
+		Arrays.fill(last, -1);
+		for (int i=0; i<nameTokens.length; i++)
+			for (int token : nameTokens[i])
+				if (last[token] != i) {
+					last[token] = i;
+					tokenNames[token][counts[token]++] = i;
+				}
+		return tokenNames;
+	}
+	
+	// run the tasks of the synonym lookup table computation on a fork/join pool, or in the calling thread if SYNONYM_THREADS is 1
+	private void invokeSynonymTasks(List<? extends RecursiveAction> tasks) {
+		if (SYNONYM_THREADS <= 1 || tasks.size() <= 1) {
+			for (RecursiveAction task : tasks)
+				task.invoke();
+			return;
+		}
+		ForkJoinPool pool = new ForkJoinPool(SYNONYM_THREADS);
+		try {
+			pool.invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+			});
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	// same score as compareMultiwordWithTokenLookup, from the precomputed token similarities
+	private double compareMultiwordWithTokenSimilarities(int[] tokens1, int[] tokens2, TokenSimilarities similarities) {
+		double sum = 0.0;
+		for (int i=0; i<tokens1.length; i++){
+			double tempMax = 0;
+			for (int j=0; j<tokens2.length; j++) {
+				double score = similarities.get(tokens1[i], tokens2[j]);
+				if (score > 0)
+					tempMax = Math.max(tempMax, score);
+			}
+			if (tempMax > 0)
+				sum += tempMax;
+		}
+		return sum / (1.0 * Math.max(tokens1.length, tokens2.length));
+	}
+	
+	// progress of a stage of the synonym lookup table computation, logged every 10%
+	private class SynonymProgress {
+		private final String stage;
+		private final long total;
+		private final AtomicLong done = new AtomicLong();
+		
+		SynonymProgress(String stage, long total) {
+			this.stage = stage;
+			this.total = total;
+		}
+		
+		void add(long count) {
+			long after = done.addAndGet(count);
+			long before = after - count;
+			if (!TRACE_SYNONYMS && total > 0 && before * 10 / total < after * 10 / total)
+				logger.debug("computing " + stage + ", progress " + (after * 10 / total * 10) + "%");
+		}
+	}
+	
+	// a tile of the token similarities, i.e. the token pairs (a, b) with b >= a in a block of rows and a block of columns.
+	// The non-zero similarities are kept in row order.
+	private class TokenTile extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final int rowFrom, rowTo, colFrom, colTo;
+		private final TokenTable tokens;
+		private final double synonymThreshold;
+		private final SynonymProgress progress;
+		
+		private int[] cols = new int[16];
+		private double[] values = new double[16];
+		private int count = 0;
+		// end index in cols for each row of the tile
+		private final int[] rowEnds;
+		
+		TokenTile(int rowFrom, int rowTo, int colFrom, int colTo, TokenTable tokens, double synonymThreshold, SynonymProgress progress) {
+			this.rowFrom = rowFrom;
+			this.rowTo = rowTo;
+			this.colFrom = colFrom;
+			this.colTo = colTo;
+			this.tokens = tokens;
+			this.synonymThreshold = synonymThreshold;
+			this.progress = progress;
+			this.rowEnds = new int[rowTo - rowFrom];
+		}
+		
+		@Override
+		protected void compute() {
+			long pairCount = 0;
+			for (int a=rowFrom; a<rowTo; a++) {
+				for (int b=Math.max(a, colFrom); b<colTo; b++) {
+					double score = isSynonymExact(tokens, a, b, synonymThreshold);
+					if (score > 0) {
+						if (count == cols.length) {
+							cols = Arrays.copyOf(cols, 2 * count);
+							values = Arrays.copyOf(values, 2 * count);
+						}
+						cols[count] = b;
+						values[count] = score;
+						count++;
+					}
+					pairCount++;
+				}
+				rowEnds[a - rowFrom] = count;
+			}
+			progress.add(pairCount);
+		}
+		
+		int rowStart(int a) {
+			return a == rowFrom ? 0 : rowEnds[a - rowFrom - 1];
+		}
+		
+		int rowEnd(int a) {
+			return rowEnds[a - rowFrom];
+		}
+	}
+	
+	// the non-zero token similarities, as a sparse symmetric matrix with the similar tokens of each token in ascending order
+	private static class TokenSimilarities {
+		final int[][] similarTokens;
+		final double[][] scores;
+		long pairCount = 0;
+		
+		// rows are visited in ascending order, so that the similar tokens of each token are filled in ascending order as well
+		TokenSimilarities(int tokenCount, TokenTile[][] tiles, int tileSize) {
+			int[] counts = new int[tokenCount];
+			for (int a=0; a<tokenCount; a++) {
+				int rb = a / tileSize;
+				for (int cb=rb; cb<tiles.length; cb++) {
+					TokenTile tile = tiles[rb][cb];
+					for (int k=tile.rowStart(a); k<tile.rowEnd(a); k++) {
+						counts[a]++;
+						if (tile.cols[k] != a)
+							counts[tile.cols[k]]++;
+						pairCount++;
+					}
+				}
+			}
+			similarTokens = new int[tokenCount][];
+			scores = new double[tokenCount][];
+			for (int a=0; a<tokenCount; a++) {
+				similarTokens[a] = new int[counts[a]];
+				scores[a] = new double[counts[a]];
+			}
+			Arrays.fill(counts, 0);
+			for (int a=0; a<tokenCount; a++) {
+				int rb = a / tileSize;
+				for (int cb=rb; cb<tiles.length; cb++) {
+					TokenTile tile = tiles[rb][cb];
+					for (int k=tile.rowStart(a); k<tile.rowEnd(a); k++) {
+						int b = tile.cols[k];
+						similarTokens[a][counts[a]] = b;
+						scores[a][counts[a]++] = tile.values[k];
+						if (b != a) {
+							similarTokens[b][counts[b]] = a;
+							scores[b][counts[b]++] = tile.values[k];
+						}
+					}
+				}
+			}
+		}
+		
+		double get(int a, int b) {
+			int k = Arrays.binarySearch(similarTokens[a], b);
+			return k < 0 ? 0.0 : scores[a][k];
+		}
+	}
+	
+	// a block of rows of the synonym lookup table, i.e. the name pairs (i, j) with j >= i for i in the block.
+	// Only the names sharing a similar token pair with name i are compared, and the found synonyms are kept in (i, j) order.
+	private class SynonymRows extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final int rowFrom, rowTo;
+		private final List<Integer> keys;
+		private final int[][] nameTokens;
+		private final int[][] tokenNames;
+		private final TokenSimilarities similarities;
+		private final double synonymThreshold;
+		private final HashMap<Integer, String[]> tokenLookup;
+		private final TokenTable tokens;
+		private final SynonymProgress progress;
+		
+		private final ArrayList<Pair<Integer, Integer>> pairs = new ArrayList<Pair<Integer, Integer>>();
+		private final ArrayList<Double> values = new ArrayList<Double>();
+		
+		SynonymRows(int rowFrom, int rowTo, List<Integer> keys, int[][] nameTokens, int[][] tokenNames, TokenSimilarities similarities, 
+				double synonymThreshold, HashMap<Integer, String[]> tokenLookup, TokenTable tokens, SynonymProgress progress) {
+			this.rowFrom = rowFrom;
+			this.rowTo = rowTo;
+			this.keys = keys;
+			this.nameTokens = nameTokens;
+			this.tokenNames = tokenNames;
+			this.similarities = similarities;
+			this.synonymThreshold = synonymThreshold;
+			this.tokenLookup = tokenLookup;
+			this.tokens = tokens;
+			this.progress = progress;
+		}
+		
+		@Override
+		protected void compute() {
+			// the last row in which each name was found as a candidate
+			int[] seen = new int[nameTokens.length];
+			Arrays.fill(seen, -1);
+			int[] candidates = new int[nameTokens.length];
+			for (int i=rowFrom; i<rowTo; i++) {
+				int candidateCount = 0;
+				for (int a : nameTokens[i])
+					for (int b : similarities.similarTokens[a]) {
+						int[] names = tokenNames[b];
+						int start = Arrays.binarySearch(names, i);
+						for (int k=start < 0 ? -start - 1 : start; k<names.length; k++)
+							if (seen[names[k]] != i) {
+								seen[names[k]] = i;
+								candidates[candidateCount++] = names[k];
+							}
+					}
+				Arrays.sort(candidates, 0, candidateCount);
+				
+				Integer word1 = keys.get(i);
+				for (int k=0; k<candidateCount; k++) {
+					int j = candidates[k];
+					double d = compareMultiwordWithTokenSimilarities(nameTokens[i], nameTokens[j], similarities);
 					if (d>0 && d >= synonymThreshold) { // only because of the wordnet
+						Integer word2 = keys.get(j);
 						if (TRACE_SYNONYMS) {
-							double d0 = compareMultiwordWithTokenLookup(word1, word2, 0.0, tokenLookup, lemmaLookup);
+							double d0 = compareMultiwordWithTokenLookup(nameTokens[i], nameTokens[j], 0.0, tokens);
 							if (!word1.equals(word2) && (! (synonymThreshold > 0) || d != d0))
 								logger.trace(Arrays.toString(tokenLookup.get(word1))
 									+ "\t\t" + Arrays.toString(tokenLookup.get(word2)) + "\t\t" + d);
 						}
-							
+						
 						// TODO control what to do when wordnet returns 1.0 as synonym value
-						synonymLookup.put(key, d);
+						pairs.add(new Pair<Integer,Integer>(word1, word2));
+						values.add(d);
 					}
 				}
 			}
+			progress.add(rowTo - rowFrom);
 		}
-		
-		String suffix = synonymThreshold>0?"_WNET":"_NOWNET";
-		File synFile = new File(sourceFolder + "/syn" + suffix + ".ser");  
-		
-		FileOutputStream fis = new FileOutputStream(synFile);  
-		ObjectOutputStream s = new ObjectOutputStream(fis);          
-		s.writeObject(synonymLookup);
-		s.flush();
-		s.close();		
 	}
 
 
@@ -732,6 +1010,21 @@ public class NLP {
 		return result;
 	}
 	
+	// lemmatize in advance (in batches) the tokens which lemmatizeIfFlagSet would lemmatize for the given names
+	public void prefetchLemmas(Collection<String> names, boolean preToken) {
+		LinkedHashSet<String> tokens = new LinkedHashSet<String>();
+		for (String name : names) {
+			if (name == null) 
+				continue;
+			if (preToken)
+				tokens.add(name.toLowerCase());
+			else
+				for (String token : tokeniseIntt(name))
+					tokens.add(token.toLowerCase());
+		}
+		lemmatizer.prefetch(tokens);
+	}
+	
 	public String lemmatizeIfFlagSet_aux(String base, boolean preToken, boolean preLemma) {
 		if (preToken) {
 			if (preLemma)
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.nlp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import edu.mit.jwi.IDictionary;
+import edu.mit.jwi.item.ISynset;
+import edu.mit.jwi.item.ISynsetID;
+import edu.mit.jwi.item.POS;
+import edu.mit.jwi.item.Pointer;
+
+/**
+ * Compact in-memory WordNet noun hierarchy for Lin: the noun synsets are numbered by ascending offset, the hypernym (and instance 
+ * hypernym) edges are kept in compressed sparse row form, and the information content of each synset in a double array. 
+ * 
+ * The hypernym closure of every synset (including the synset itself) is computed once, as a sorted int array, so that the candidate 
+ * least common subsumers of two synsets are found by merging two sorted arrays, without any allocation. 
+ * 
+ * Immutable after construction, so it can be shared by several threads.
+ */
+public class NounHierarchy {
+	private final int[] offsets;
+	private final double[] ic;
+	private final int[] hypernymStarts;
+	private final int[] hypernyms;
+	private final int[][] ancestors;
+	
+	public NounHierarchy(IDictionary dict, ICFinder icfinder) {
+		ArrayList<ISynset> synsets = new ArrayList<ISynset>();
+		for (Iterator<ISynset> it = dict.getSynsetIterator(POS.NOUN); it.hasNext(); )
+			synsets.add(it.next());
+		synsets.sort((s1, s2) -> Integer.compare(s1.getOffset(), s2.getOffset()));
+		
+		int count = synsets.size();
+		offsets = new int[count];
+		ic = new double[count];
+		for (int id = 0; id < count; id++) {
+			offsets[id] = synsets.get(id).getOffset();
+			ic[id] = icfinder.getIC(offsets[id], "n");
+		}
+		
+		// noun hypernyms are nouns, a target outside the noun synsets would be skipped
+		hypernymStarts = new int[count + 1];
+		int[] edges = new int[2 * count];
+		int edgeCount = 0;
+		for (int id = 0; id < count; id++) {
+			hypernymStarts[id] = edgeCount;
+			for (Pointer pointer : new Pointer[] {Pointer.HYPERNYM, Pointer.HYPERNYM_INSTANCE})
+				for (ISynsetID target : synsets.get(id).getRelatedSynsets(pointer)) {
+					int targetId = getId(target.getOffset());
+					if (targetId < 0 || contains(edges, hypernymStarts[id], edgeCount, targetId))
+						continue;
+					if (edgeCount == edges.length)
+						edges = Arrays.copyOf(edges, 2 * edgeCount);
+					edges[edgeCount++] = targetId;
+				}
+		}
+		hypernymStarts[count] = edgeCount;
+		hypernyms = Arrays.copyOf(edges, edgeCount);
+		
+		ancestors = new int[count][];
+		for (int id = 0; id < count; id++)
+			computeAncestors(id);
+	}
+	
+	private static boolean contains(int[] values, int from, int to, int value) {
+		for (int i = from; i < to; i++)
+			if (values[i] == value)
+				return true;
+		return false;
+	}
+	
+	// the closure of a synset after those of its hypernyms, with an explicit stack as the hierarchy is a dag rather than a tree
+	private void computeAncestors(int root) {
+		if (ancestors[root] != null)
+			return;
+		int[] stack = new int[16];
+		int depth = 0;
+		stack[depth++] = root;
+		while (depth > 0) {
+			int id = stack[depth - 1];
+			boolean ready = true;
+			for (int e = hypernymStarts[id]; e < hypernymStarts[id + 1]; e++) {
+				int parent = hypernyms[e];
+				if (ancestors[parent] == null) {
+					if (depth == stack.length)
+						stack = Arrays.copyOf(stack, 2 * depth);
+					stack[depth++] = parent;
+					ready = false;
+				}
+			}
+			if (!ready)
+				continue;
+			depth--;
+			if (ancestors[id] != null)
+				continue;
+			int size = 1;
+			for (int e = hypernymStarts[id]; e < hypernymStarts[id + 1]; e++)
+				size += ancestors[hypernyms[e]].length;
+			int[] closure = new int[size];
+			closure[0] = id;
+			int k = 1;
+			for (int e = hypernymStarts[id]; e < hypernymStarts[id + 1]; e++) {
+				int[] parentClosure = ancestors[hypernyms[e]];
+				System.arraycopy(parentClosure, 0, closure, k, parentClosure.length);
+				k += parentClosure.length;
+			}
+			Arrays.sort(closure);
+			int unique = 0;
+			for (int i = 0; i < closure.length; i++)
+				if (unique == 0 || closure[i] != closure[unique - 1])
+					closure[unique++] = closure[i];
+			ancestors[id] = unique == closure.length ? closure : Arrays.copyOf(closure, unique);
+		}
+	}
+	
+	// the id of the noun synset with the given offset, or -1
+	public int getId(int offset) {
+		int id = Arrays.binarySearch(offsets, offset);
+		return id < 0 ? -1 : id;
+	}
+	
+	// the ids of the synsets of the given noun senses, in sense order. Ids of synsets outside the hierarchy are -1
+	public int[] getIds(List<ISynsetID> senses) {
+		int[] ids = new int[senses.size()];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = getId(senses.get(i).getOffset());
+		return ids;
+	}
+	
+	public int size() {
+		return offsets.length;
+	}
+	
+	public double getIC(int id) {
+		return ic[id];
+	}
+	
+	// the highest information content among the common ancestors (including the synsets themselves), or 0 if there are none
+	public double getLCSIC(int id1, int id2) {
+		int[] a = ancestors[id1], b = ancestors[id2];
+		double max = -Double.MAX_VALUE;
+		boolean found = false;
+		int i = 0, j = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j])
+				i++;
+			else if (a[i] > b[j])
+				j++;
+			else {
+				if (ic[a[i]] > max)
+					max = ic[a[i]];
+				found = true;
+				i++;
+				j++;
+			}
+		}
+		return found ? max : 0.0;
+	}
+}
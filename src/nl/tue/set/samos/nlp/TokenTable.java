@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.nlp;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.mit.jwi.item.POS;
+
+/**
+ * Interned tokens (token to int id) for the synonym checks, with the forms which NLP.isSynonymExact needs for a token computed once:
+ * the base word (without a ".n." sense suffix), its lower case form, its Porter stem, its lemma and whether it is a WordNet noun.
+ * 
+ * With a lemma lookup (as in the synonym precomputation) the lemma of a token is taken from it, and both the WordNet checks and Lin 
+ * use the lemma. Without one, the tokens are assumed to be lemmatized before, and the WordNet checks use the lower case form.
+ * 
+ * Interning is not thread-safe, whereas the lookups of the interned tokens can be shared by several threads.
+ */
+public class TokenTable {
+	private final NLP nlp;
+	private final Map<String, String> lemmaLookup;
+	
+	private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+	private String[] words = new String[64];
+	private String[] bases = new String[64];
+	private String[] lowerCases = new String[64];
+	private String[] stems = new String[64];
+	private String[] lemmas = new String[64];
+	// WordNet noun check per token: 0 not checked yet, 1 in WordNet, 2 not. Filled lazily, so that WordNet is loaded only if needed
+	private byte[] inWordNet = new byte[64];
+	private int size = 0;
+	
+	public TokenTable(NLP nlp, Map<String, String> lemmaLookup) {
+		this.nlp = nlp;
+		this.lemmaLookup = lemmaLookup;
+	}
+	
+	// the id of the token, interning it if it is new
+	public int intern(String word) {
+		Integer id = ids.get(word);
+		if (id != null)
+			return id;
+		if (size == words.length) {
+			words = Arrays.copyOf(words, 2 * size);
+			bases = Arrays.copyOf(bases, 2 * size);
+			lowerCases = Arrays.copyOf(lowerCases, 2 * size);
+			stems = Arrays.copyOf(stems, 2 * size);
+			lemmas = Arrays.copyOf(lemmas, 2 * size);
+			inWordNet = Arrays.copyOf(inWordNet, 2 * size);
+		}
+		String base = word.contains(".n.") ? word.substring(0, word.indexOf('.')) : word;
+		String lowerCase = nlp.toLowerCase(base);
+		words[size] = word;
+		bases[size] = base;
+		lowerCases[size] = lowerCase;
+		stems[size] = nlp.stem(lowerCase);
+		lemmas[size] = lemmaLookup != null ? lemmaLookup.get(lowerCase) : null;
+		ids.put(word, size);
+		return size++;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean hasLemmas() {
+		return lemmaLookup != null;
+	}
+	
+	// whether the lemmas of the table come from the given lookup (the same instance)
+	public boolean hasLemmaLookup(Map<String, String> lemmaLookup) {
+		return this.lemmaLookup == lemmaLookup;
+	}
+	
+	public String getWord(int token) {
+		return words[token];
+	}
+	
+	public String getLowerCase(int token) {
+		return lowerCases[token];
+	}
+	
+	public String getStem(int token) {
+		return stems[token];
+	}
+	
+	public String getLemma(int token) {
+		return lemmas[token];
+	}
+	
+	// the word which is looked up in WordNet for Lin
+	public String getLinWord(int token) {
+		return hasLemmas() ? lemmas[token] : bases[token];
+	}
+	
+	// whether the token is a WordNet noun. Concurrent first checks of a token may both look it up, with the same result
+	public boolean isInWordNet(int token) {
+		if (inWordNet[token] == 0)
+			inWordNet[token] = nlp.isWordInWordnet(hasLemmas() ? lemmas[token] : lowerCases[token], POS.NOUN) ? (byte) 1 : (byte) 2;
+		return inWordNet[token] == 1;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.nlp;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.mit.jwi.IDictionary;
+import edu.mit.jwi.RAMDictionary;
+
+/**
+ * WordNet dictionary and the semcor information content (IC) file, shared by all the NLP instances in the JVM. 
+ * They are loaded only once, the first time a code path actually needs WordNet.
+ */
+public class WordNet {
+	static final Logger logger = LoggerFactory.getLogger(WordNet.class);
+	
+	// locations of the wordnet dictionary folder and the IC file, can be set via system properties or before the first use
+	public static String DICT_FOLDER = System.getProperty("samos.wordnet.dict", "/scripts/SCICO-D-21-00209/wordnet/dict");
+	public static String IC_FILE = System.getProperty("samos.wordnet.ic", "/scripts/SCICO-D-21-00209/wordnet/semcor/ic-semcor.dat");
+	
+	static WordNet m_wordNet;
+	
+	public final IDictionary dict;
+	public final ICFinder icfinder;
+	public final Lin lin;
+	// compact noun hierarchy for lin, built on first use as reading all the noun synsets takes a few seconds
+	private NounHierarchy nouns;
+	private boolean nounsLoaded = false;
+	
+	private WordNet(String dictFolder, String icFile) throws MalformedURLException {
+		long start = System.currentTimeMillis();
+		dict = new RAMDictionary(new File(dictFolder).toURI().toURL());
+		try {
+			dict.open();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		icfinder = new ICFinder(icFile);
+		lin = new Lin(dict, icfinder);
+		logger.info("loaded wordnet from " + dictFolder + " in " + (System.currentTimeMillis() - start) + " ms");
+	}
+	
+	// the compact noun hierarchy, or null if it could not be built from the dictionary. Synchronized, so that it is built only once
+	public synchronized NounHierarchy getNounHierarchy() {
+		if (!nounsLoaded) {
+			nounsLoaded = true;
+			long start = System.currentTimeMillis();
+			try {
+				nouns = new NounHierarchy(dict, icfinder);
+				logger.info("built the wordnet noun hierarchy of " + nouns.size() + " synsets in " + (System.currentTimeMillis() - start) + " ms");
+			} catch (RuntimeException e) {
+				logger.warn("could not build the wordnet noun hierarchy, lin falls back to the dictionary: " + e);
+			}
+		}
+		return nouns;
+	}
+	
+	// synchronized, so that concurrent first users wait for a single load
+	public static synchronized WordNet getInstance() {
+		if (m_wordNet == null) {
+			try {
+				m_wordNet = new WordNet(DICT_FOLDER, IC_FILE);
+			} catch (MalformedURLException e) {
+				throw new IllegalStateException("invalid wordnet folder " + DICT_FOLDER, e);
+			}
+		}
+		return m_wordNet;
+	}
+}
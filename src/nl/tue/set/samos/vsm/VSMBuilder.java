@@ -52,12 +52,15 @@ import nl.tue.set.samos.common.enums.IDF;
 import nl.tue.set.samos.common.enums.STRUCTURE;
 import nl.tue.set.samos.common.enums.VSM_MODE;
 import nl.tue.set.samos.common.enums.WEIGHT;
+import nl.tue.set.samos.extract.FragmentHierarchy;
+import nl.tue.set.samos.extract.FragmentHierarchy.ComposedFragment;
 import nl.tue.set.samos.feature.Feature;
 import nl.tue.set.samos.feature.NGram;
 import nl.tue.set.samos.feature.NTreeApted;
 import nl.tue.set.samos.feature.SimpleType;
 import nl.tue.set.samos.feature.TypedFeature;
 import nl.tue.set.samos.feature.compare.FeatureComparator;
+import nl.tue.set.samos.feature.corpus.FeatureCorpus;
 import nl.tue.set.samos.feature.parser.JSONParser;
 import nl.tue.set.samos.feature.parser.PlainTextParser;
 import nl.tue.set.samos.main.SAMOSRunner;
@@ -96,15 +99,6 @@ public class VSMBuilder {
 		featureComparator = new FeatureComparator(params);
 		featureComparator.loadUpCache(featureFolder);
 
-		File dir = new File(featureFolder);
-		
-		midfix = "";
-		File[] ngramFiles = dir.listFiles(new FilenameFilter() { 
-	         public boolean accept(File dir, String filename)
-	              { return filename.endsWith(midfix + Constants.featureFileSuffix); }
-   	} );
-		Arrays.sort(ngramFiles, (f1, f2) -> f1.getName().compareTo(f2.getName()));
-		
 		ArrayList<String> allModelNames = new ArrayList<String>();
 		ArrayList<ArrayList<Feature>> allFeatures = new ArrayList<ArrayList<Feature>>();
 		LinkedHashSet<Feature> maximalFeatureSet = new LinkedHashSet<Feature>();
@@ -115,47 +109,26 @@ public class VSMBuilder {
 		double[] idfArray = null;
 		Matrix targetTfSparseMatrix = null;
 		
-		// process each feature file
-		for(File uf : ngramFiles)
-		{
-			logger.info("vsm processing model feature file " + uf.getName());
-			try {				
-				// add model name
-				allModelNames.add(uf.getName().replaceFirst(Constants.featureFileSuffix, ""));
-				
-				BufferedReader br = new BufferedReader(new FileReader(uf));
-				
-				ArrayList<Feature> features = new ArrayList<Feature>();
-				String s = null;
-				
-				// process all the features per feature file
-				while((s = br.readLine()) != null) {
-					Feature f = null;
-					if (params._STRUCTURE == STRUCTURE.NTREE)
-						f = JSONParser.parseText(s);
-					else
-						f = PlainTextParser.parseText(s);
-					 
-					if (f == null){
-						logger.info("ERROR: parsed null feature: " + f);
-					} else {
-						features.add(f);
-						if (!maximalFeatureSet.contains(f)) // construct a maximal feature set (i.e. all features in all files)
-							maximalFeatureSet.add(f);					
-					}
-				}
-				
+		// read the already parsed features from the corpus if there is one, otherwise parse the feature files
+		FeatureCorpus corpus = FeatureCorpus.open(featureFolder);
+		// for the fragments of a coarser scope composed from a hierarchical extraction, the rows are computed for the extracted fragments 
+		// and then summed up into the rows of the composed ones, see composeRows 
+		List<ComposedFragment> composed = getComposedFragments(params);
+		int[] composedRows = null;
+		if (composed != null)
+			composedRows = readComposedFragments(composed, corpus, params, allModelNames, allFeatures, maximalFeatureSet);
+		else if (corpus != null) {
+			for (int i=0; i<corpus.size(); i++) {
+				logger.info("vsm processing model fragment " + corpus.getName(i));
+				allModelNames.add(corpus.getName(i));
+				ArrayList<Feature> features = corpus.getFeatures(i);
+				for (Feature f : features)
+					if (!maximalFeatureSet.contains(f)) // construct a maximal feature set (i.e. all features in all files)
+						maximalFeatureSet.add(f);
 				allFeatures.add(features);
-								
-				// clean up
-				br.close();
-				
-			} catch (FileNotFoundException e) {
-				e.printStackTrace();
-			} catch (IOException e) {
-				e.printStackTrace();
-			} 
-		}
+			}
+		} else
+			readFeatureFiles(params, allModelNames, allFeatures, maximalFeatureSet);
 		
 		logger.info("Total unique feature count:" + maximalFeatureSet.size());
 		
@@ -227,8 +200,11 @@ public class VSMBuilder {
 			}
 		}
 			
+		if (composed != null)
+			rawTfSparseMatrix = composeRows(rawTfSparseMatrix, composedRows, composed.size(), maximalFeatureSet.size(), params._FREQ);
+			
 		totalVocabularyCount = maximalFeatureSet.size();
-		double totalDocs = allFeatures.size();
+		double totalDocs = allModelNames.size();
 	
 		if (params._WEIGHT == WEIGHT.RAW)
 			targetTfSparseMatrix = rawTfSparseMatrix;
@@ -400,6 +376,126 @@ public class VSMBuilder {
 		logger.info("ELAPSED TIME: " + (System.currentTimeMillis() - startTime));
 	}
 	
+	// the fragments of the scope in the parameters, composed from the hierarchy in the features folder. Null if no scope is given, or if the 
+	// features are not extracted hierarchically (then they are taken as extracted)
+	public List<ComposedFragment> getComposedFragments(Parameters params) {
+		if (params._SCOPE == null)
+			return null;
+		FragmentHierarchy hierarchy = FragmentHierarchy.load(new File(featureFolder));
+		if (hierarchy == null) {
+			logger.info("no fragment hierarchy in " + featureFolder + ", taking the fragments as extracted");
+			return null;
+		}
+		return hierarchy.compose(params._SCOPE);
+	}
+	
+	// read the features of the extracted fragments the composed ones consist of, each into its own row. 
+	// Returns the index of the composed fragment for each row
+	private int[] readComposedFragments(List<ComposedFragment> composed, FeatureCorpus corpus, Parameters params, ArrayList<String> allModelNames, 
+			ArrayList<ArrayList<Feature>> allFeatures, LinkedHashSet<Feature> maximalFeatureSet) throws IOException {
+		ArrayList<Integer> rows = new ArrayList<Integer>();
+		for (int i=0; i<composed.size(); i++) {
+			logger.info("vsm processing model fragment " + composed.get(i).name);
+			allModelNames.add(composed.get(i).name);
+			for (String key : composed.get(i).keys) {
+				ArrayList<Feature> features;
+				if (corpus != null) {
+					int index = corpus.indexOf(key);
+					if (index < 0)
+						throw new IOException("fragment " + key + " not found in the corpus " + corpus.getFile().getPath());
+					features = corpus.getFeatures(index);
+				} else
+					features = readFeatureFile(new File(featureFolder, key + Constants.featureFileSuffix), params);
+				for (Feature f : features)
+					if (!maximalFeatureSet.contains(f))
+						maximalFeatureSet.add(f);
+				allFeatures.add(features);
+				rows.add(i);
+			}
+		}
+		int[] result = new int[rows.size()];
+		for (int k=0; k<result.length; k++)
+			result[k] = rows.get(k);
+		return result;
+	}
+	
+	// the term frequencies of the composed fragments: the sums of the rows of the fragments they consist of (the maxima for FREQ_MAX). 
+	// Same as computing them from all their features together, as each row is a sum (or maximum) over its features 
+	private Matrix composeRows(Matrix tfSparseMatrix, int[] rows, int rowCount, int columnCount, FREQ _FREQ) {
+		Matrix composedSparseMatrix = SparseMatrix.Factory.zeros(rowCount, columnCount);
+		for (long[] coordinates : tfSparseMatrix.nonZeroCoordinates()) {
+			int row = rows[(int) coordinates[0]];
+			double value = tfSparseMatrix.getAsDouble(coordinates);
+			double temp = composedSparseMatrix.getAsDouble(row, coordinates[1]);
+			if (_FREQ == FREQ.FREQ_MAX)
+				composedSparseMatrix.setAsDouble(Math.max(temp, value), row, coordinates[1]);
+			else // if (_FREQ == FREQ.FREQ_SUM)
+				composedSparseMatrix.setAsDouble(temp + value, row, coordinates[1]);
+		}
+		return composedSparseMatrix;
+	}
+	
+	// parse the features from the feature files in the features folder
+	private void readFeatureFiles(Parameters params, ArrayList<String> allModelNames, ArrayList<ArrayList<Feature>> allFeatures, 
+			LinkedHashSet<Feature> maximalFeatureSet) {
+		File dir = new File(featureFolder);
+		
+		midfix = "";
+		File[] ngramFiles = dir.listFiles(new FilenameFilter() { 
+	         public boolean accept(File dir, String filename)
+	              { return filename.endsWith(midfix + Constants.featureFileSuffix); }
+   	} );
+		Arrays.sort(ngramFiles, (f1, f2) -> f1.getName().compareTo(f2.getName()));
+		
+		// process each feature file
+		for(File uf : ngramFiles)
+		{
+			logger.info("vsm processing model feature file " + uf.getName());
+			try {				
+				// add model name
+				allModelNames.add(uf.getName().replaceFirst(Constants.featureFileSuffix, ""));
+				
+				ArrayList<Feature> features = readFeatureFile(uf, params);
+				for (Feature f : features)
+					if (!maximalFeatureSet.contains(f)) // construct a maximal feature set (i.e. all features in all files)
+						maximalFeatureSet.add(f);					
+				
+				allFeatures.add(features);
+				
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			} catch (IOException e) {
+				e.printStackTrace();
+			} 
+		}
+	}
+	
+	// parse the features in a feature file, skipping the unparseable ones
+	private ArrayList<Feature> readFeatureFile(File uf, Parameters params) throws IOException {
+		BufferedReader br = new BufferedReader(new FileReader(uf));
+		
+		ArrayList<Feature> features = new ArrayList<Feature>();
+		String s = null;
+		
+		// process all the features per feature file
+		while((s = br.readLine()) != null) {
+			Feature f = null;
+			if (params._STRUCTURE == STRUCTURE.NTREE)
+				f = JSONParser.parseText(s);
+			else
+				f = PlainTextParser.parseText(s);
+			 
+			if (f == null){
+				logger.info("ERROR: parsed null feature: " + f);
+			} else 
+				features.add(f);
+		}
+		
+		// clean up
+		br.close();
+		return features;
+	}
+	
 	// export matrix to a csv file
 	public void DumpSparseMatrixToCsv(LinkedHashSet<Feature> maximalFeatureSet, Matrix sparseMatrix, String filename) throws IOException
 	{
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongDoubleHashMapTest {
+	
+	private static final long[] SPECIAL_KEYS = {Long.MIN_VALUE, Long.MAX_VALUE, 0, -1, 1, Long.MIN_VALUE + 1};
+	
+	private static void assertSameContents(HashMap<Long, Double> expected, LongDoubleHashMap map, long[] probes) {
+		assertEquals(expected.size(), map.size());
+		for (Map.Entry<Long, Double> entry : expected.entrySet())
+			assertEquals(entry.getValue(), map.get(entry.getKey(), Double.NaN), 0.0);
+		for (long key : probes)
+			if (!expected.containsKey(key))
+				assertTrue(Double.isNaN(map.get(key, Double.NaN)));
+	}
+	
+	// random puts of a pool of keys, with overwrites, checked against a HashMap while the table grows
+	private static void assertSameAsHashMap(long[] pool, int operations, int expectedSize, long seed) {
+		Random random = new Random(seed);
+		HashMap<Long, Double> expected = new HashMap<Long, Double>();
+		LongDoubleHashMap map = new LongDoubleHashMap(expectedSize);
+		for (int i = 0; i < operations; i++) {
+			long key = pool[random.nextInt(pool.length)];
+			double value = random.nextDouble();
+			expected.put(key, value);
+			map.put(key, value);
+			if (i % 997 == 0)
+				assertSameContents(expected, map, pool);
+		}
+		assertSameContents(expected, map, pool);
+	}
+	
+	@Test
+	public void testRandomKeys() {
+		Random random = new Random(1);
+		long[] pool = new long[5000];
+		for (int i = 0; i < pool.length; i++)
+			pool[i] = random.nextLong();
+		System.arraycopy(SPECIAL_KEYS, 0, pool, 0, SPECIAL_KEYS.length);
+		assertSameAsHashMap(pool, 20000, 16, 2);
+		assertSameAsHashMap(pool, 20000, 10000, 3);
+	}
+	
+	@Test
+	public void testTokenPairKeys() {
+		// keys as in the synonym memo of NLP, i.e. two token ids in the high and low bits, which differ only in few bits
+		long[] pool = new long[64 * 64];
+		for (int a = 0; a < 64; a++)
+			for (int b = 0; b < 64; b++)
+				pool[64 * a + b] = ((long) a << 32) | b;
+		assertSameAsHashMap(pool, 10000, 1, 4);
+	}
+	
+	@Test
+	public void testSpecialKeys() {
+		LongDoubleHashMap map = new LongDoubleHashMap(1);
+		for (int i = 0; i < SPECIAL_KEYS.length; i++)
+			assertEquals(-1.0, map.get(SPECIAL_KEYS[i], -1.0), 0.0);
+		for (int i = 0; i < SPECIAL_KEYS.length; i++)
+			map.put(SPECIAL_KEYS[i], i);
+		for (int i = 0; i < SPECIAL_KEYS.length; i++)
+			map.put(SPECIAL_KEYS[i], 10 + i);
+		assertEquals(SPECIAL_KEYS.length, map.size());
+		for (int i = 0; i < SPECIAL_KEYS.length; i++)
+			assertEquals(10 + i, map.get(SPECIAL_KEYS[i], -1.0), 0.0);
+	}
+	
+	@Test
+	public void testClear() {
+		LongDoubleHashMap map = new LongDoubleHashMap();
+		for (long key = -100; key < 100; key++)
+			map.put(key, key);
+		map.put(Long.MIN_VALUE, 1.0);
+		map.clear();
+		assertEquals(0, map.size());
+		assertEquals(-1.0, map.get(5, -1.0), 0.0);
+		assertEquals(-1.0, map.get(Long.MIN_VALUE, -1.0), 0.0);
+		map.put(5, 2.0);
+		assertEquals(1, map.size());
+		assertEquals(2.0, map.get(5, -1.0), 0.0);
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.extract;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import nl.tue.set.samos.common.enums.SCOPE;
+import nl.tue.set.samos.common.enums.STRUCTURE;
+import nl.tue.set.samos.common.enums.UNIT;
+
+public class EcoreStreamExtractorImplTest {
+	
+	private static final SCOPE[] SCOPES = {SCOPE.MODEL, SCOPE.EPACKAGE, SCOPE.ECLASS, SCOPE.HIERARCHY};
+	private static final UNIT[] UNITS = {UNIT.NAME, UNIT.TYPEDNAME};
+	private static final STRUCTURE[] STRUCTURES = {STRUCTURE.UNIGRAM, STRUCTURE.UNIGRAM};
+	
+	private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<ecore:EPackage xmi:version=\"2.0\" xmlns:xmi=\"http://www.omg.org/XMI\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n"
+			+ "    xmlns:ecore=\"http://www.eclipse.org/emf/2002/Ecore\" name=\"library\" nsURI=\"http://library\" nsPrefix=\"library\">\n";
+	
+	// nested packages, a type parameter, enums and operations, and the features of a class before its operations in the file
+	private static final String LIBRARY = HEADER
+			+ "  <eClassifiers xsi:type=\"ecore:EClass\" name=\"Book\" eSuperTypes=\"#//Item\">\n"
+			+ "    <!-- the features come first here, eContents lists the operations first -->\n"
+			+ "    <eStructuralFeatures xsi:type=\"ecore:EAttribute\" name=\"title\" eType=\"ecore:EDataType http://www.eclipse.org/emf/2002/Ecore#//EString\"/>\n"
+			+ "    <eStructuralFeatures xsi:type=\"ecore:EReference\" name=\"authors\" upperBound=\"-1\" eType=\"#//Author\" eOpposite=\"#//Author/books\"/>\n"
+			+ "    <eStructuralFeatures xsi:type=\"ecore:EAttribute\" name=\"tags\" upperBound=\"-1\" eType=\"ecore:EDataType http://www.eclipse.org/emf/2002/Ecore#//EString\"/>\n"
+			+ "    <eOperations name=\"lend\" eType=\"ecore:EDataType http://www.eclipse.org/emf/2002/Ecore#//EBoolean\">\n"
+			+ "      <eParameters name=\"member\" eType=\"#//Author\"/>\n"
+			+ "    </eOperations>\n"
+			+ "  </eClassifiers>\n"
+			+ "  <eClassifiers xsi:type=\"ecore:EClass\" name=\"Item\" abstract=\"true\">\n"
+			+ "    <eTypeParameters name=\"T\"/>\n"
+			+ "    <eStructuralFeatures xsi:type=\"ecore:EAttribute\" name=\"shelf\" eType=\"#//Genre\"/>\n"
+			+ "  </eClassifiers>\n"
+			+ "  <eClassifiers xsi:type=\"ecore:EClass\" name=\"Author\">\n"
+			+ "    <eStructuralFeatures xsi:type=\"ecore:EReference\" name=\"books\" upperBound=\"-1\" eType=\"#//Book\" eOpposite=\"#//Book/authors\"/>\n"
+			+ "  </eClassifiers>\n"
+			+ "  <eClassifiers xsi:type=\"ecore:EEnum\" name=\"Genre\">\n"
+			+ "    <eLiterals name=\"novel\"/>\n"
+			+ "    <eLiterals name=\"poetry\" value=\"1\"/>\n"
+			+ "  </eClassifiers>\n"
+			+ "  <eClassifiers xsi:type=\"ecore:EDataType\" name=\"Isbn\" instanceClassName=\"java.lang.String\"/>\n"
+			+ "  <eSubpackages name=\"media\" nsURI=\"http://media\" nsPrefix=\"media\">\n"
+			+ "    <eClassifiers xsi:type=\"ecore:EClass\" name=\"Disc\" eSuperTypes=\"#//Item\">\n"
+			+ "      <eStructuralFeatures xsi:type=\"ecore:EAttribute\" name=\"length\" eType=\"ecore:EDataType http://www.eclipse.org/emf/2002/Ecore#//EInt\"/>\n"
+			+ "    </eClassifiers>\n"
+			+ "    <eSubpackages name=\"audio\" nsURI=\"http://audio\" nsPrefix=\"audio\">\n"
+			+ "      <eClassifiers xsi:type=\"ecore:EClass\" name=\"Track\">\n"
+			+ "        <eStructuralFeatures xsi:type=\"ecore:EAttribute\" name=\"duration\" eType=\"ecore:EDataType http://www.eclipse.org/emf/2002/Ecore#//EInt\"/>\n"
+			+ "      </eClassifiers>\n"
+			+ "    </eSubpackages>\n"
+			+ "  </eSubpackages>\n"
+			+ "</ecore:EPackage>\n";
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	// records the calls of the extractor, including the places of the fragments in the hierarchy
+	private static class RecordingSink implements FeatureSink {
+		final List<String> calls = new ArrayList<String>();
+		
+		@Override
+		public void beginFragment(String key) {
+			calls.add("begin " + key);
+		}
+		
+		@Override
+		public void feature(String feature, int size) {
+			calls.add(feature + " " + size);
+		}
+		
+		@Override
+		public void endFragment() {
+			calls.add("end");
+		}
+		
+		@Override
+		public void fragmentHierarchy(String parent, SCOPE scope, String name) {
+			calls.add("hierarchy " + parent + " " + scope + " " + name);
+		}
+	}
+	
+	private ModelInput write(String name, String content) throws IOException {
+		File file = new File(folder.getRoot(), name);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return ModelInput.of(file);
+	}
+	
+	private static List<List<String>> process(IExtractor extractor, ModelInput input, SCOPE _SCOPE) {
+		RecordingSink[] sinks = new RecordingSink[UNITS.length];
+		for (int i = 0; i < sinks.length; i++)
+			sinks[i] = new RecordingSink();
+		extractor.process(input, _SCOPE, UNITS, STRUCTURES, sinks);
+		List<List<String>> calls = new ArrayList<List<String>>();
+		for (RecordingSink sink : sinks)
+			calls.add(sink.calls);
+		return calls;
+	}
+	
+	private static void assertSameAsEMF(ModelInput input, boolean tokenize, int maxElements) {
+		EcoreExtractorImpl emf = new EcoreExtractorImpl();
+		EcoreStreamExtractorImpl stream = new EcoreStreamExtractorImpl();
+		emf.PREPROCESS_TOKENIZE = stream.PREPROCESS_TOKENIZE = tokenize;
+		emf.MAX_ELEMENTS_PER_MODEL = stream.MAX_ELEMENTS_PER_MODEL = maxElements;
+		for (SCOPE _SCOPE : SCOPES) {
+			List<List<String>> expected = process(emf, input, _SCOPE);
+			assertTrue(input.getName() + " " + _SCOPE, maxElements > 0 || expected.get(0).size() > 2);
+			assertEquals(input.getName() + " " + _SCOPE + " " + maxElements, expected, process(stream, input, _SCOPE));
+		}
+	}
+	
+	@Test
+	public void testSameFeaturesAsEMF() throws IOException {
+		ModelInput input = write("library.ecore", LIBRARY);
+		assertNotNull(new EcoreStreamExtractorImpl().read(input));
+		assertSameAsEMF(input, false, 0);
+		assertSameAsEMF(input, true, 0);
+	}
+	
+	@Test
+	public void testSameFeaturesAsEMFOnDataset() {
+		File[] files = new File("data/atlzoo").listFiles((dir, name) -> name.endsWith(".ecore"));
+		assertNotNull(files);
+		Arrays.sort(files);
+		for (File file : files) {
+			ModelInput input = ModelInput.of(file);
+			assertNotNull(file.getName(), new EcoreStreamExtractorImpl().read(input));
+			assertSameAsEMF(input, false, 0);
+		}
+	}
+	
+	@Test
+	public void testUnsupportedContentFallsBackToEMF() throws IOException {
+		// an annotation, a generic type, and a processing instruction
+		String[] unsupported = {
+				LIBRARY.replace("<!-- the features come first here, eContents lists the operations first -->", 
+						"<eAnnotations source=\"http://www.eclipse.org/emf/2002/GenModel\"><details key=\"documentation\" value=\"A book\"/></eAnnotations>"), 
+				LIBRARY.replace("<eTypeParameters name=\"T\"/>", 
+						"<eTypeParameters name=\"T\"/><eGenericSuperTypes eClassifier=\"#//Author\"/>"), 
+				LIBRARY.replace("<!-- the features come first here, eContents lists the operations first -->", "<?generator samos?>")};
+		for (int k = 0; k < unsupported.length; k++) {
+			ModelInput input = write("unsupported" + k + ".ecore", unsupported[k]);
+			assertNull(new EcoreStreamExtractorImpl().read(input));
+			assertSameAsEMF(input, false, 0);
+		}
+	}
+	
+	@Test
+	public void testElementBudget() throws IOException {
+		ModelInput input = write("library.ecore", LIBRARY);
+		// 33 elements in eContents, including the (filtered) type parameter and the generic types of 9 eTypes and 2 eSuperTypes
+		EcoreStreamExtractorImpl stream = new EcoreStreamExtractorImpl();
+		stream.MAX_ELEMENTS_PER_MODEL = 33;
+		assertNotNull(stream.read(input));
+		stream.MAX_ELEMENTS_PER_MODEL = 32;
+		assertNull(stream.read(input));
+		
+		// beyond the budget, the file is extracted with EMF within the budget
+		for (int maxElements = 1; maxElements <= 34; maxElements++)
+			assertSameAsEMF(input, false, maxElements);
+	}
+}
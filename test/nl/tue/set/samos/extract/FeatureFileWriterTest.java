@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.extract;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import nl.tue.set.samos.common.enums.STRUCTURE;
+import nl.tue.set.samos.feature.corpus.FeatureCorpus;
+import nl.tue.set.samos.feature.corpus.FeatureCorpusWriter;
+
+public class FeatureFileWriterTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private static void write(FeatureFileWriter writer, String key, String... names) {
+		writer.beginFragment(key);
+		for (String name : names)
+			writer.feature("[NG] [SN] " + name, 1);
+		writer.endFragment();
+	}
+	
+	// the fragments of two model files, extracted in the given order and flushed in the order of the files
+	private byte[] extract(boolean secondFirst) throws IOException {
+		File target = folder.newFolder();
+		FeatureCorpusWriter corpus = new FeatureCorpusWriter(target.getPath());
+		FeatureFileWriter first = new FeatureFileWriter(target, 2, STRUCTURE.UNIGRAM, true, corpus).deferCorpus();
+		FeatureFileWriter second = new FeatureFileWriter(target, 2, STRUCTURE.UNIGRAM, true, corpus).deferCorpus();
+		for (int k = 0; k < 2; k++) {
+			if ((k == 0) == secondFirst) {
+				write(second, "b.ecore", "publisher", "book", "isbn");
+			} else {
+				write(first, "a.ecore$Book", "title", "year");
+				write(first, "a.ecore$Author", "name"); // below the minimum size
+				// a fragment with the same key replaces the earlier one
+				write(first, "a.ecore$Book", "title", "year", "publisher");
+			}
+		}
+		first.flushCorpus();
+		second.flushCorpus();
+		corpus.close();
+		assertEquals(3, (int) first.getFragments().get("a.ecore$Book"));
+		assertEquals(1, first.getFragments().size());
+		assertEquals(1, second.getFragments().size());
+		return Files.readAllBytes(new File(target, FeatureCorpus.CORPUS_FILE).toPath());
+	}
+	
+	@Test
+	public void testDeferredCorpusInFileOrder() throws IOException {
+		assertArrayEquals(extract(false), extract(true));
+	}
+	
+	@Test
+	public void testDeferredCorpus() throws IOException {
+		File target = folder.newFolder();
+		FeatureCorpusWriter corpus = new FeatureCorpusWriter(target.getPath());
+		FeatureFileWriter writer = new FeatureFileWriter(target, 1, STRUCTURE.UNIGRAM, true, corpus).deferCorpus();
+		write(writer, "a.ecore", "title", "year");
+		writer.flushCorpus();
+		FeatureFileWriter failed = new FeatureFileWriter(target, 1, STRUCTURE.UNIGRAM, true, corpus).deferCorpus();
+		write(failed, "b.ecore", "name");
+		failed.discard();
+		failed.flushCorpus();
+		corpus.close();
+		
+		assertTrue(new File(target, "a.ecore.features").exists());
+		assertFalse(new File(target, "b.ecore.features").exists());
+		FeatureCorpus read = FeatureCorpus.open(target.getPath());
+		assertEquals(1, read.size());
+		assertEquals("a.ecore", read.getName(0));
+		assertEquals(2, read.getFeatureCount(0));
+		assertEquals("[(title), (year)]", read.getFeatures(0).toString());
+	}
+}
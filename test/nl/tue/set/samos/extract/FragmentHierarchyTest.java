@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.extract;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.emf.ecore.EPackage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import nl.tue.set.samos.common.Constants;
+import nl.tue.set.samos.common.enums.SCOPE;
+import nl.tue.set.samos.common.enums.STRUCTURE;
+import nl.tue.set.samos.common.enums.UNIT;
+import nl.tue.set.samos.extract.FragmentHierarchy.ComposedFragment;
+import nl.tue.set.samos.extract.FragmentHierarchy.Fragment;
+
+public class FragmentHierarchyTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private static Fragment fragment(String key, String parent, SCOPE scope, String name, int featureCount) {
+		Fragment fragment = new Fragment(key, parent, scope, name);
+		fragment.featureCount = featureCount;
+		fragment.featureSize = featureCount;
+		return fragment;
+	}
+	
+	// m { p { C, q { C } }, D }, where the two classes named C are keyed by their paths
+	private static FragmentHierarchy createHierarchy(int minSize) {
+		FragmentHierarchy hierarchy = new FragmentHierarchy(STRUCTURE.UNIGRAM, minSize);
+		hierarchy.fragments.addAll(Arrays.asList(
+				fragment("m", null, SCOPE.MODEL, "m", 1), 
+				fragment("m$p", "m", SCOPE.EPACKAGE, "m$p", 2), 
+				fragment("m$p$C", "m$p", SCOPE.ECLASS, "m$C", 3), 
+				fragment("m$p$q", "m$p", SCOPE.EPACKAGE, "m$q", 0), 
+				fragment("m$p$q$C", "m$p$q", SCOPE.ECLASS, "m$C", 4), 
+				fragment("m$D", "m", SCOPE.ECLASS, "m$D", 5)));
+		return hierarchy;
+	}
+	
+	private static List<String> getNames(List<ComposedFragment> composed) {
+		List<String> names = new ArrayList<String>();
+		for (ComposedFragment fragment : composed)
+			names.add(fragment.name);
+		return names;
+	}
+	
+	@Test
+	public void testComposeIncludesTheFragmentsUnderARoot() {
+		FragmentHierarchy hierarchy = createHierarchy(0);
+		
+		List<ComposedFragment> models = hierarchy.compose(SCOPE.MODEL);
+		assertEquals(1, models.size());
+		assertEquals(Arrays.asList("m", "m$p", "m$p$C", "m$p$q", "m$p$q$C", "m$D"), models.get(0).keys);
+		assertEquals(15, models.get(0).size);
+		
+		List<ComposedFragment> packages = hierarchy.compose(SCOPE.EPACKAGE);
+		assertEquals(Arrays.asList("m$p", "m$q"), getNames(packages));
+		assertEquals(Arrays.asList("m$p", "m$p$C", "m$p$q", "m$p$q$C"), packages.get(0).keys);
+		assertEquals(9, packages.get(0).size);
+		assertEquals(Arrays.asList("m$p$q", "m$p$q$C"), packages.get(1).keys);
+		assertEquals(4, packages.get(1).size);
+	}
+	
+	@Test
+	public void testComposeReplacesFragmentsWithTheSameName() {
+		// as in the extraction of the class scope, the later class named C replaces the earlier one
+		List<ComposedFragment> classes = createHierarchy(0).compose(SCOPE.ECLASS);
+		assertEquals(Arrays.asList("m$C", "m$D"), getNames(classes));
+		assertEquals(Arrays.asList("m$p$q$C"), classes.get(0).keys);
+		assertEquals(4, classes.get(0).size);
+	}
+	
+	@Test
+	public void testComposeLeavesOutSmallFragments() {
+		FragmentHierarchy hierarchy = createHierarchy(5);
+		assertEquals(Arrays.asList("m$p"), getNames(hierarchy.compose(SCOPE.EPACKAGE)));
+		assertEquals(Arrays.asList("m$D"), getNames(hierarchy.compose(SCOPE.ECLASS)));
+	}
+	
+	@Test
+	public void testSaveAndLoad() throws IOException {
+		assertNull(FragmentHierarchy.load(folder.getRoot()));
+		createHierarchy(2).save(folder.getRoot());
+		FragmentHierarchy loaded = FragmentHierarchy.load(folder.getRoot());
+		assertEquals(STRUCTURE.UNIGRAM, loaded.structure);
+		assertEquals(2, loaded.minSize);
+		assertEquals(6, loaded.fragments.size());
+		assertEquals("m$p$q$C", loaded.fragments.get(4).key);
+		assertEquals("m$p$q", loaded.fragments.get(4).parent);
+		assertEquals(SCOPE.ECLASS, loaded.fragments.get(4).scope);
+		assertEquals(4, loaded.fragments.get(4).featureCount);
+		for (SCOPE _SCOPE : new SCOPE[] {SCOPE.MODEL, SCOPE.EPACKAGE, SCOPE.ECLASS})
+			assertEquals(getNames(createHierarchy(2).compose(_SCOPE)), getNames(loaded.compose(_SCOPE)));
+	}
+	
+	@Test
+	public void testComposedFragmentsMatchTheExtractionOfEachScope() throws IOException {
+		UNIT[] units = {UNIT.NAME, UNIT.TYPEDNAME, UNIT.TYPEDNAME};
+		STRUCTURE[] structures = {STRUCTURE.UNIGRAM, STRUCTURE.BIGRAM, STRUCTURE.NTREE};
+		EcoreExtractorImpl extractor = new EcoreExtractorImpl();
+		EPackage model = LibraryModel.create();
+		
+		for (int i = 0; i < units.length; i++) {
+			File targetFolder = folder.newFolder();
+			FeatureFileWriter writer = new FeatureFileWriter(targetFolder, 0, structures[i]);
+			extractor.process(LibraryModel.getContents(model, SCOPE.HIERARCHY, extractor), "library.ecore", SCOPE.HIERARCHY, units[i], structures[i], writer);
+			FragmentHierarchy hierarchy = new FragmentHierarchy(structures[i], 0);
+			hierarchy.fragments.addAll(writer.getHierarchy());
+			
+			for (SCOPE _SCOPE : new SCOPE[] {SCOPE.MODEL, SCOPE.EPACKAGE, SCOPE.ECLASS}) {
+				FeatureCollector expected = new FeatureCollector();
+				extractor.process(LibraryModel.getContents(model, _SCOPE, extractor), "library.ecore", _SCOPE, units[i], structures[i], expected);
+				List<ComposedFragment> composed = hierarchy.compose(_SCOPE);
+				assertEquals(expected.featureMap.size(), composed.size());
+				for (ComposedFragment fragment : composed) {
+					List<String> features = new ArrayList<String>();
+					for (String key : fragment.keys)
+						features.addAll(Files.readAllLines(new File(targetFolder, key + Constants.featureFileSuffix).toPath(), StandardCharsets.UTF_8));
+					List<String> expectedFeatures = expected.featureMap.get(fragment.name);
+					int featureSize = 0;
+					for (String feature : expectedFeatures)
+						featureSize += extractor.getFeatureSize(feature, structures[i]);
+					assertEquals(FeatureFileWriter.getFragmentSize(structures[i], expectedFeatures.size(), featureSize), fragment.size);
+					
+					// the same features, in the order of the fragments instead of the traversal
+					Collections.sort(features);
+					expectedFeatures = new ArrayList<String>(expectedFeatures);
+					Collections.sort(expectedFeatures);
+					assertEquals(expectedFeatures, features);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.extract;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.junit.Before;
+import org.junit.Test;
+
+import nl.tue.set.samos.common.enums.SCOPE;
+import nl.tue.set.samos.common.enums.STRUCTURE;
+import nl.tue.set.samos.common.enums.UNIT;
+
+public class IExtractorTest {
+	
+	private static final UNIT[] UNITS = {UNIT.NAME, UNIT.TYPEDNAME};
+	private static final STRUCTURE[] STRUCTURES = {STRUCTURE.UNIGRAM, STRUCTURE.BIGRAM};
+	
+	private EcoreExtractorImpl extractor;
+	private EPackage model;
+	
+	@Before
+	public void setUp() {
+		extractor = new EcoreExtractorImpl();
+		model = LibraryModel.create();
+	}
+	
+	private List<Object> getContents(SCOPE _SCOPE) {
+		return LibraryModel.getContents(model, _SCOPE, extractor);
+	}
+	
+	private FeatureCollector[] process(SCOPE _SCOPE) {
+		FeatureCollector[] collectors = new FeatureCollector[UNITS.length];
+		for (int i = 0; i < collectors.length; i++)
+			collectors[i] = new FeatureCollector();
+		extractor.process(getContents(_SCOPE), "library.ecore", _SCOPE, UNITS, STRUCTURES, collectors);
+		return collectors;
+	}
+	
+	// the features of an element and the elements under it, by the recursive definition of a fragment
+	private ArrayList<String> getSubtreeFeatures(Object root, int i) {
+		ArrayList<String> features = new ArrayList<String>();
+		extractor.process(root, features, UNITS[i], STRUCTURES[i]);
+		return features;
+	}
+	
+	@Test
+	public void testModelScopeExtractsEachElementOnce() {
+		FeatureCollector[] collectors = process(SCOPE.MODEL);
+		for (int i = 0; i < UNITS.length; i++) {
+			ArrayList<String> expected = new ArrayList<String>();
+			for (Object o : getContents(SCOPE.MODEL)) {
+				List<String> features = extractor.extractFeatures(o, UNITS[i], STRUCTURES[i]);
+				if (features != null)
+					expected.addAll(features);
+			}
+			assertEquals(1, collectors[i].featureMap.size());
+			assertEquals(expected, collectors[i].featureMap.get("library.ecore"));
+			// the whole model is a single traversal from its root
+			assertEquals(getSubtreeFeatures(model, i), collectors[i].featureMap.get("library.ecore"));
+		}
+	}
+	
+	@Test
+	public void testLegacyModelScopeRepeatsPerAncestor() {
+		extractor.LEGACY_MULTIPLICITY = true;
+		FeatureCollector[] collectors = process(SCOPE.MODEL);
+		for (int i = 0; i < UNITS.length; i++) {
+			ArrayList<String> expected = new ArrayList<String>();
+			for (Object o : getContents(SCOPE.MODEL))
+				expected.addAll(getSubtreeFeatures(o, i));
+			assertEquals(expected, collectors[i].featureMap.get("library.ecore"));
+		}
+		
+		// e.g. the name of an attribute of a class in the root package: once for the package, the class and the attribute itself
+		List<String> names = collectors[0].featureMap.get("library.ecore");
+		EObject attribute = ((EClass) model.getEClassifiers().get(0)).getEStructuralFeatures().get(1);
+		String year = extractor.extractFeatures(attribute, UNIT.NAME, STRUCTURE.UNIGRAM).get(0);
+		assertEquals(3, names.stream().filter(year::equals).count());
+	}
+	
+	@Test
+	public void testNestedPackagesMatchTheirSubtrees() {
+		assertFragmentsMatchSubtrees(SCOPE.EPACKAGE, 3);
+	}
+	
+	@Test
+	public void testClassesMatchTheirSubtrees() {
+		assertFragmentsMatchSubtrees(SCOPE.ECLASS, 4);
+	}
+	
+	private void assertFragmentsMatchSubtrees(SCOPE _SCOPE, int fragmentCount) {
+		FeatureCollector[] collectors = process(_SCOPE);
+		List<Object> fragments = getContents(_SCOPE);
+		assertEquals(fragmentCount, fragments.size());
+		for (int i = 0; i < UNITS.length; i++) {
+			assertEquals(fragmentCount, collectors[i].featureMap.size());
+			for (Object fragment : fragments) {
+				ArrayList<String> features = collectors[i].featureMap.get("library.ecore$" + extractor.getName(fragment));
+				assertFalse(features.isEmpty());
+				assertEquals(getSubtreeFeatures(fragment, i), features);
+			}
+		}
+	}
+}
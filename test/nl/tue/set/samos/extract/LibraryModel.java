@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.extract;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.EcorePackage;
+
+import nl.tue.set.samos.common.enums.SCOPE;
+
+/**
+ * Small in-memory metamodel with nested packages for the extraction tests: library { Book, Author, media { Disc, audio { Track } } }
+ */
+class LibraryModel {
+	
+	static EPackage create() {
+		EPackage model = createPackage("library");
+		EClass book = createClass(model, "Book", "title", "year");
+		EClass author = createClass(model, "Author", "name");
+		EReference writtenBy = EcoreFactory.eINSTANCE.createEReference();
+		writtenBy.setName("writtenBy");
+		writtenBy.setEType(author);
+		book.getEStructuralFeatures().add(writtenBy);
+		EPackage media = createPackage("media");
+		model.getESubpackages().add(media);
+		createClass(media, "Disc", "length");
+		EPackage audio = createPackage("audio");
+		media.getESubpackages().add(audio);
+		createClass(audio, "Track", "duration", "title");
+		return model;
+	}
+	
+	private static EPackage createPackage(String name) {
+		EPackage p = EcoreFactory.eINSTANCE.createEPackage();
+		p.setName(name);
+		p.setNsURI("http://" + name);
+		p.setNsPrefix(name);
+		return p;
+	}
+	
+	private static EClass createClass(EPackage p, String name, String... attributes) {
+		EClass c = EcoreFactory.eINSTANCE.createEClass();
+		c.setName(name);
+		for (String attribute : attributes) {
+			EAttribute a = EcoreFactory.eINSTANCE.createEAttribute();
+			a.setName(attribute);
+			a.setEType(EcorePackage.Literals.ESTRING);
+			c.getEStructuralFeatures().add(a);
+		}
+		p.getEClassifiers().add(c);
+		return c;
+	}
+	
+	// the elements of the scope in preorder, as getAllContainedObjectsByType returns them
+	static List<Object> getContents(EPackage model, SCOPE _SCOPE, IExtractor extractor) {
+		List<Object> contents = new ArrayList<Object>();
+		contents.add(model);
+		for (Iterator<EObject> it = model.eAllContents(); it.hasNext();)
+			contents.add(it.next());
+		if (_SCOPE != SCOPE.MODEL && _SCOPE != SCOPE.HIERARCHY)
+			contents.removeIf(o -> !extractor.getType(o).equalsIgnoreCase(_SCOPE.toString()));
+		return contents;
+	}
+}
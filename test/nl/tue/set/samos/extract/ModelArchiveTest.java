@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.extract;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ModelArchiveTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	// a path longer than the 100 bytes of the name field of a tar header
+	private static final String LONG_PATH = "models/" + repeat("nested/", 20) + "Long.ecore";
+	
+	private static String repeat(String s, int count) {
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < count; i++)
+			b.append(s);
+		return b.toString();
+	}
+	
+	// writes tar files block by block, with the header formats of the different tar implementations
+	static class TarBuilder {
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		
+		TarBuilder ustar(String prefix, String name, String content) {
+			return entry(header(name, prefix, content.length(), '0', "ustar\u000000"), content.getBytes(StandardCharsets.UTF_8));
+		}
+		
+		TarBuilder directory(String name) {
+			return entry(header(name, "", 0, '5', "ustar\u000000"), new byte[0]);
+		}
+		
+		// gnu tar: the long name in a preceding 'L' entry, and a truncated name in the header of the file itself
+		TarBuilder gnuLongName(String name, String content) {
+			byte[] longName = (name + "\u0000").getBytes(StandardCharsets.UTF_8);
+			entry(header("././@LongLink", "", longName.length, 'L', "ustar  \u0000"), longName);
+			return entry(header(name.substring(0, 99), "", content.length(), '0', "ustar  \u0000"), content.getBytes(StandardCharsets.UTF_8));
+		}
+		
+		// pax: the path in a preceding extended header with "<length> <key>=<value>\n" records
+		TarBuilder paxPath(String path, String content) {
+			String records = paxRecord("mtime", "1600000000.5") + paxRecord("path", path);
+			byte[] data = records.getBytes(StandardCharsets.UTF_8);
+			entry(header("PaxHeaders/x", "", data.length, 'x', "ustar\u000000"), data);
+			return entry(header("truncated.ecore", "", content.length(), '0', "ustar\u000000"), content.getBytes(StandardCharsets.UTF_8));
+		}
+		
+		// old (v7) tar, without the ustar magic and with a nul type for regular files
+		TarBuilder v7(String name, String content) {
+			return entry(header(name, "", content.length(), '\u0000', ""), content.getBytes(StandardCharsets.UTF_8));
+		}
+		
+		private static String paxRecord(String key, String value) {
+			String record = " " + key + "=" + value + "\n";
+			int length = record.length();
+			while (length != Integer.toString(length).length() + record.length())
+				length = Integer.toString(length).length() + record.length();
+			return length + record;
+		}
+		
+		private static byte[] header(String name, String prefix, long size, char type, String magic) {
+			byte[] block = new byte[ModelArchive.TAR_BLOCK];
+			put(block, 0, name);
+			put(block, 100, "0000644");
+			put(block, 108, "0000000");
+			put(block, 116, "0000000");
+			put(block, 124, String.format("%011o", size));
+			put(block, 136, String.format("%011o", 1600000000L));
+			block[156] = (byte) type;
+			put(block, 257, magic);
+			put(block, 345, prefix);
+			// the checksum is computed with the checksum field filled with spaces
+			Arrays.fill(block, 148, 156, (byte) ' ');
+			int sum = 0;
+			for (byte b : block)
+				sum += b & 0xff;
+			put(block, 148, String.format("%06o\u0000 ", sum));
+			return block;
+		}
+		
+		private static void put(byte[] block, int offset, String value) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			System.arraycopy(bytes, 0, block, offset, bytes.length);
+		}
+		
+		private TarBuilder entry(byte[] header, byte[] data) {
+			out.write(header, 0, header.length);
+			out.write(data, 0, data.length);
+			int padding = (ModelArchive.TAR_BLOCK - data.length % ModelArchive.TAR_BLOCK) % ModelArchive.TAR_BLOCK;
+			out.write(new byte[padding], 0, padding);
+			return this;
+		}
+		
+		byte[] build() {
+			byte[] end = new byte[2 * ModelArchive.TAR_BLOCK];
+			out.write(end, 0, end.length);
+			return out.toByteArray();
+		}
+	}
+	
+	private TarBuilder createTar() {
+		return new TarBuilder()
+				.directory("models/")
+				.ustar("", "models/A.ecore", "a")
+				.ustar("models" + repeat("/deep", 20), "B.ecore", repeat("b", 1000))
+				.gnuLongName(LONG_PATH, "long")
+				.paxPath("models/pax/C.ecore", "c")
+				.v7("D.ecore", "")
+				.ustar("", "models/notes.txt", "not a model")
+				.ustar("", "other/A.ecore", "duplicate name");
+	}
+	
+	private File write(String name, byte[] content) throws IOException {
+		File f = new File(folder.getRoot(), name);
+		Files.write(f.toPath(), content);
+		return f;
+	}
+	
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[7];
+		int read;
+		while ((read = in.read(buffer)) >= 0)
+			out.write(buffer, 0, read);
+		in.close();
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	private static List<String> getNames(List<ModelInput> inputs) {
+		List<String> names = new ArrayList<String>();
+		for (ModelInput input : inputs)
+			names.add(input.getName());
+		return names;
+	}
+	
+	private void assertEntries(ModelArchive archive) throws IOException {
+		assertEquals(Arrays.asList("A.ecore", "B.ecore", "C.ecore", "D.ecore", "Long.ecore"), getNames(archive.getInputs(".ecore")));
+		assertEquals("a", read(archive.open("models/A.ecore")));
+		assertEquals(repeat("b", 1000), read(archive.open("models/" + repeat("deep/", 20) + "B.ecore")));
+		assertEquals("long", read(archive.open(LONG_PATH)));
+		assertEquals("c", read(archive.open("models/pax/C.ecore")));
+		assertEquals("", read(archive.open("D.ecore")));
+		assertEquals("duplicate name", read(archive.open("other/A.ecore")));
+		assertTrue(archive.contains("models/notes.txt"));
+		assertFalse(archive.contains("models/"));
+		assertFalse(archive.contains("truncated.ecore"));
+		assertFalse(archive.contains(LONG_PATH.substring(0, 99)));
+	}
+	
+	@Test
+	public void testTarHeaders() throws IOException {
+		try (ModelArchive archive = ModelArchive.open(write("models.tar", createTar().build()))) {
+			assertEntries(archive);
+		}
+	}
+	
+	@Test
+	public void testGzipTar() throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (OutputStream out = new GZIPOutputStream(compressed)) {
+			out.write(createTar().build());
+		}
+		for (String name : new String[] {"models.tar.gz", "models.tgz"})
+			try (ModelArchive archive = ModelArchive.open(write(name, compressed.toByteArray()))) {
+				assertEntries(archive);
+			}
+	}
+	
+	@Test
+	public void testZip() throws IOException {
+		File f = new File(folder.getRoot(), "models.zip");
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(f))) {
+			for (String[] entry : new String[][] {{"models/B.ecore", "b"}, {"models/A.ecore", "a"}, {"__MACOSX/models/._A.ecore", "x"}}) {
+				out.putNextEntry(new ZipEntry(entry[0]));
+				out.write(entry[1].getBytes(StandardCharsets.UTF_8));
+				out.closeEntry();
+			}
+		}
+		try (ModelArchive archive = ModelArchive.open(f)) {
+			assertEquals(Arrays.asList("A.ecore", "B.ecore"), getNames(archive.getInputs(".ecore")));
+			assertEquals("b", read(archive.open("models/B.ecore")));
+		}
+	}
+	
+	@Test
+	public void testEntriesAreReadThroughTheirURIs() throws IOException {
+		try (ModelArchive archive = ModelArchive.open(write("models.tar", createTar().build()))) {
+			ModelInput input = archive.getInputs(".ecore").get(4);
+			assertTrue(archive.getURIHandler().canHandle(input.getURI()));
+			assertTrue(archive.getURIHandler().exists(input.getURI(), null));
+			assertEquals("long", read(archive.getURIHandler().createInputStream(input.getURI(), null)));
+		}
+	}
+	
+	@Test
+	public void testIsArchive() throws IOException {
+		assertTrue(ModelArchive.isArchive(write("a.zip", new byte[0])));
+		assertTrue(ModelArchive.isArchive(write("a.TAR", new byte[0])));
+		assertTrue(ModelArchive.isArchive(write("a.tar.gz", new byte[0])));
+		assertTrue(ModelArchive.isArchive(write("a.tgz", new byte[0])));
+		assertFalse(ModelArchive.isArchive(write("a.ecore", new byte[0])));
+		assertFalse(ModelArchive.isArchive(folder.newFolder("b.zip")));
+	}
+}
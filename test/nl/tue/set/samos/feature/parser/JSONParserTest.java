@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.feature.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import nl.tue.set.samos.common.Pair;
+import nl.tue.set.samos.common.enums.UNIT;
+import nl.tue.set.samos.extract.EcoreExtractorImpl;
+import nl.tue.set.samos.feature.Feature;
+import nl.tue.set.samos.feature.NTreeApted;
+import nl.tue.set.samos.feature.compare.AptedNodeCustom;
+
+public class JSONParserTest {
+	
+	private static String typedName(String type, String name) {
+		return "{\"ftype\":\"TypedName\",\"type\":\"" + type + "\",\"name\":\"" + name + "\"}";
+	}
+	
+	private static String merged(String node, String... contents) {
+		return "{\"ftype\":\"MergedNTree\",\"node\":" + node + ",\"contents\":[" + String.join(",", contents) + "]}";
+	}
+	
+	private static String child(String edge, String node, String... contents) {
+		return "{\"edge\":\"" + edge + "\",\"node\":" + node + ",\"contents\":[" + String.join(",", contents) + "]}";
+	}
+	
+	// the same tree in the legacy form, with a node for each group of consecutive children with the same edge
+	private static JSONObject toLegacy(JSONObject merged) {
+		JSONObject tree = new JSONObject();
+		tree.put("ftype", "NTree");
+		tree.put("node", merged.getJSONObject("node"));
+		JSONArray groups = new JSONArray();
+		// the leaves written by the extractor have no contents
+		JSONArray contents = merged.optJSONArray("contents");
+		if (contents == null)
+			contents = new JSONArray();
+		String edge = null;
+		JSONArray group = null;
+		for (int i = 0; i < contents.length(); i++) {
+			JSONObject child = contents.getJSONObject(i);
+			if (!child.getString("edge").equals(edge)) {
+				edge = child.getString("edge");
+				group = new JSONArray();
+				JSONObject edgeNode = new JSONObject();
+				edgeNode.put("ftype", "NTree");
+				edgeNode.put("node", new JSONObject().put("ftype", "SimpleType").put("type", edge));
+				edgeNode.put("contents", group);
+				groups.put(edgeNode);
+			}
+			group.put(toLegacy(child));
+		}
+		tree.put("contents", groups);
+		return tree;
+	}
+	
+	private static void assertSameAsLegacy(String merged) {
+		Feature parsed = JSONParser.parseText(merged);
+		assertTrue(parsed instanceof NTreeApted);
+		Feature legacy = JSONParser.parseText(toLegacy(new JSONObject(merged)).toString());
+		assertEquals(legacy.toString(), parsed.toString());
+		assertEquals(((NTreeApted) legacy).size(), ((NTreeApted) parsed).size());
+		assertEquals(legacy, parsed);
+	}
+	
+	@Test
+	public void testMergedTreeMatchesLegacyTree() {
+		assertSameAsLegacy(merged(typedName("EClass", "located_element"), 
+				child("contains", typedName("EAttribute", "location")), 
+				child("contains", typedName("EOperation", "operation_black_hawk")), 
+				child("supertypeOf", typedName("EClass", "lord_of_the_ring")), 
+				child("contains", typedName("EReference", "book_reference_sw"))));
+	}
+	
+	@Test
+	public void testNestedMergedTreeMatchesLegacyTree() {
+		assertSameAsLegacy(merged(typedName("EPackage", "library"), 
+				child("contains", typedName("EClass", "book"), 
+						child("contains", typedName("EAttribute", "title")), 
+						child("typeOf", typedName("EDataType", "string"), 
+								child("contains", typedName("EAnnotation", "doc")))), 
+				child("contains", typedName("EClass", "author"))));
+	}
+	
+	@Test
+	public void testMergedTreeOfOtherFeatureTypes() {
+		assertSameAsLegacy(merged("{\"ftype\":\"Attributed\",\"type\":\"EClass\",\"name\":\"book\",\"abstract\":true,\"lowerBound\":0,\"weight\":1.5}", 
+				child("contains", "{\"ftype\":\"Attributed\",\"type\":\"EAttribute\",\"name\":\"year\",\"many\":false,\"upperBound\":-1}"), 
+				child("contains", "{\"ftype\":\"SimpleName\",\"name\":\"title\"}"), 
+				child("contains", "{\"ftype\":\"TypedValueName\",\"type\":\"EAttribute\",\"name\":\"isbn\",\"typeValueType\":\"EString\"}")));
+	}
+	
+	@Test
+	public void testMergedTreeWithoutChildren() {
+		assertSameAsLegacy(merged(typedName("EClass", "book")));
+	}
+	
+	@Test
+	public void testUnmergeRestoresLegacyTree() {
+		String[] trees = {
+				merged(typedName("EClass", "located_element"), 
+						child("contains", typedName("EAttribute", "location")), 
+						child("contains", typedName("EOperation", "operation_black_hawk")), 
+						child("supertypeOf", typedName("EClass", "lord_of_the_ring"), 
+								child("contains", typedName("EAttribute", "title"))), 
+						child("contains", typedName("EReference", "book_reference_sw"))), 
+				merged(typedName("EClass", "book"))};
+		for (String tree : trees) {
+			// the unmerged tree, as parseJSON returns it without MERGE_EGDE_NODES
+			AptedNodeCustom<Feature> legacy = JSONParser.parseJSONAsNode(toLegacy(new JSONObject(tree)));
+			AptedNodeCustom<Feature> unmerged = JSONParser.unmerge(JSONParser.merge(legacy), true);
+			assertEquals(new NTreeApted(legacy), new NTreeApted(unmerged));
+			assertEquals(new NTreeApted(legacy).toString(), new NTreeApted(unmerged).toString());
+		}
+	}
+	
+	@Test
+	public void testMalformedMergedTree() {
+		// a child without its edge label, and a node of an unknown type
+		assertNull(JSONParser.parseText(merged(typedName("EClass", "book"), "{\"node\":" + typedName("EAttribute", "title") + ",\"contents\":[]}")));
+		assertNull(JSONParser.parseText(merged("{\"ftype\":\"Unknown\"}")));
+	}
+	
+	@Test
+	public void testExtractedTreesMatchLegacyTrees() {
+		EPackage p = EcoreFactory.eINSTANCE.createEPackage();
+		p.setName("library");
+		EClass named = EcoreFactory.eINSTANCE.createEClass();
+		named.setName("NamedElement");
+		named.setAbstract(true);
+		p.getEClassifiers().add(named);
+		EClass book = EcoreFactory.eINSTANCE.createEClass();
+		book.setName("Book");
+		book.getESuperTypes().add(named);
+		p.getEClassifiers().add(book);
+		for (String name : Arrays.asList("title", "year", "isbn")) {
+			EAttribute a = EcoreFactory.eINSTANCE.createEAttribute();
+			a.setName(name);
+			a.setEType(EcorePackage.Literals.ESTRING);
+			a.setUpperBound(-1);
+			book.getEStructuralFeatures().add(a);
+		}
+		
+		EcoreExtractorImpl extractor = new EcoreExtractorImpl();
+		int trees = 0;
+		for (UNIT _UNIT : new UNIT[] {UNIT.NAME, UNIT.TYPEDNAME, UNIT.ATTRIBUTED})
+			for (EObject object : Arrays.<EObject>asList(p, named, book)) {
+				Pair<String, Integer> tree = extractor.generateTreeFromChildren(object, _UNIT);
+				if (tree == null)
+					continue;
+				assertSameAsLegacy(tree.x);
+				assertEquals((int) tree.y, ((NTreeApted) JSONParser.parseText(tree.x)).size());
+				trees++;
+			}
+		assertTrue(trees >= 6);
+	}
+	
+	@Test
+	public void testSimpleFeatures() {
+		List<String> features = Arrays.asList(typedName("EClass", "book"), "{\"ftype\":\"SimpleName\",\"name\":\"book\"}", 
+				"{\"ftype\":\"SimpleType\",\"type\":\"EClass\"}");
+		for (String feature : features)
+			assertNotNull(JSONParser.parseText(feature));
+		assertNull(JSONParser.parseText(" "));
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.nlp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BoundedLevenshteinTest {
+	
+	// the full dynamic programming matrix, row by row
+	private static int fullDistance(String a, String b) {
+		int[] previous = new int[b.length() + 1], current = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++)
+			previous[j] = j;
+		for (int i = 1; i <= a.length(); i++) {
+			current[0] = i;
+			for (int j = 1; j <= b.length(); j++) {
+				int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+				current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[b.length()];
+	}
+	
+	private static String randomString(Random random, String alphabet, int length) {
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < length; i++)
+			s.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		return s.toString();
+	}
+	
+	// a few random edits of a string, so that the distances are mostly around the bounds
+	private static String edit(Random random, String alphabet, String s) {
+		StringBuilder b = new StringBuilder(s);
+		for (int edits = random.nextInt(6); edits > 0; edits--) {
+			int position = random.nextInt(b.length() + 1);
+			char c = alphabet.charAt(random.nextInt(alphabet.length()));
+			switch (random.nextInt(3)) {
+			case 0: b.insert(position, c); break;
+			case 1: if (position < b.length()) b.deleteCharAt(position); break;
+			default: if (position < b.length()) b.setCharAt(position, c);
+			}
+		}
+		return b.toString();
+	}
+	
+	private static void assertSameAsFullDistance(BoundedLevenshtein levenshtein, String a, String b) {
+		int full = fullDistance(a, b);
+		for (int k = 0; k <= Math.max(a.length(), b.length()) + 1; k++)
+			assertEquals(a + " " + b + " " + k, full <= k ? full : k + 1, levenshtein.distance(a, b, k));
+	}
+	
+	@Test
+	public void testRandomStrings() {
+		// characters from 256 on are not in the table of pattern masks
+		String[] alphabets = {"ab", "abcdefghij", "a\u00e9\u0416\u4e2d"};
+		Random random = new Random(7);
+		BoundedLevenshtein levenshtein = new BoundedLevenshtein();
+		for (int i = 0; i < 3000; i++) {
+			String alphabet = alphabets[i % alphabets.length];
+			// up to 80 characters, so that both the bit-parallel (up to 64) and the banded algorithm are used
+			String a = randomString(random, alphabet, random.nextInt(81));
+			String b = random.nextBoolean() ? edit(random, alphabet, a) : randomString(random, alphabet, random.nextInt(81));
+			assertSameAsFullDistance(levenshtein, a, b);
+			assertSameAsFullDistance(levenshtein, b, a);
+		}
+	}
+	
+	@Test
+	public void testPatternLengthsAroundTheWordSize() {
+		Random random = new Random(11);
+		BoundedLevenshtein levenshtein = new BoundedLevenshtein();
+		for (int m = 60; m <= 68; m++)
+			for (int i = 0; i < 20; i++) {
+				String a = randomString(random, "abc", m);
+				assertSameAsFullDistance(levenshtein, a, edit(random, "abc", a));
+				assertSameAsFullDistance(levenshtein, a, a);
+			}
+	}
+	
+	@Test
+	public void testEmptyAndEqualStrings() {
+		BoundedLevenshtein levenshtein = new BoundedLevenshtein();
+		assertEquals(0, levenshtein.distance("", "", 0));
+		assertEquals(3, levenshtein.distance("", "abc", 3));
+		assertEquals(3, levenshtein.distance("abc", "", 2));
+		assertEquals(0, levenshtein.distance("book", "book", 0));
+		assertEquals(1, levenshtein.distance("book", "books", 1));
+		assertEquals(2, levenshtein.distance("colour", "colors", 1));
+		assertEquals(2, levenshtein.distance("colour", "colors", 2));
+	}
+}
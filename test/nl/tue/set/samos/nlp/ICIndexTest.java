@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.nlp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ICIndexTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private File write(String name, String... lines) throws IOException {
+		File f = new File(folder.getRoot(), name);
+		Files.write(f.toPath(), String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+		return f;
+	}
+	
+	@Test
+	public void testCountsAndSums() throws IOException {
+		File ic = write("ic.dat", 
+				"wnver::eOS9lXC6GvMWznF1wkZofDdtbBU", 
+				"1740n 120.5 ROOT", 
+				"2137n 10.0", 
+				"100v 4.0 ROOT", 
+				"200v 2.5", 
+				"2137n 12.0");
+		ICIndex index = ICIndex.open(ic.getPath());
+		
+		assertEquals(120.5, index.getCount(1740, "n"), 0.0);
+		assertEquals(4.0, index.getCount(100, "v"), 0.0);
+		assertEquals(2.5, index.getCount(200, "v"), 0.0);
+		// a synset listed twice keeps its last count, while the sums add up every line
+		assertEquals(12.0, index.getCount(2137, "n"), 0.0);
+		assertEquals(120.5 + 10.0 + 12.0, index.nounSum, 0.0);
+		assertEquals(6.5, index.verbSum, 0.0);
+		assertEquals(120.5, index.nounRootSum, 0.0);
+		assertEquals(4.0, index.verbRootSum, 0.0);
+		assertArrayEquals(new int[] {1740}, index.getNounRoots());
+		assertArrayEquals(new int[] {100}, index.getVerbRoots());
+		
+		// the counts are kept per part of speech
+		assertEquals(0.0, index.getCount(1740, "v"), 0.0);
+		assertEquals(0.0, index.getCount(100, "n"), 0.0);
+		assertEquals(0.0, index.getCount(999, "n"), 0.0);
+		assertEquals(0.0, index.getCount(1740, "a"), 0.0);
+	}
+	
+	@Test
+	public void testLookupInLargeIndex() throws IOException {
+		String[] lines = new String[1001];
+		for (int i = 0; i < lines.length; i++)
+			lines[i] = (7 * i + 3) + (i % 2 == 0 ? "n " : "v ") + i;
+		ICIndex index = ICIndex.open(write("ic.dat", lines).getPath());
+		for (int i = 0; i < lines.length; i++) {
+			assertEquals(i, index.getCount(7 * i + 3, i % 2 == 0 ? "n" : "v"), 0.0);
+			assertEquals(0.0, index.getCount(7 * i + 4, "n"), 0.0);
+		}
+	}
+	
+	@Test
+	public void testCacheIsReusedAndRebuiltWhenStale() throws IOException {
+		File ic = write("ic.dat", "1740n 1.0 ROOT");
+		ICIndex.open(ic.getPath());
+		File cache = new File(ic.getPath() + ICIndex.CACHE_SUFFIX);
+		assertTrue(cache.isFile());
+		assertEquals(1.0, ICIndex.open(ic.getPath()).getCount(1740, "n"), 0.0);
+		
+		write("ic.dat", "1740n 2.0 ROOT", "2137n 3.0");
+		ic.setLastModified(ic.lastModified() + 2000);
+		ICIndex index = ICIndex.open(ic.getPath());
+		assertEquals(2.0, index.getCount(1740, "n"), 0.0);
+		assertEquals(3.0, index.getCount(2137, "n"), 0.0);
+		assertEquals(5.0, index.nounSum, 0.0);
+	}
+	
+	@Test
+	public void testOffsetsMustBeUnpadded() {
+		assertEquals(Integer.valueOf(1740), ICIndex.parseOffsetDigits("1740"));
+		assertNull(ICIndex.parseOffsetDigits("01740"));
+		assertNull(ICIndex.parseOffsetDigits("wnver::x"));
+		assertNull(ICIndex.parseOffsetDigits(""));
+	}
+}
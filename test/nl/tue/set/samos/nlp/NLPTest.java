@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.nlp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import nl.tue.set.samos.common.Pair;
+
+public class NLPTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	// lemmas of the (lower case) tokens, a token without one is its own lemma
+	private static final String[][] LEMMAS = {
+			{"books", "book"}, {"booking", "booking"}, {"book", "book"}, {"author", "author"}, {"authors", "author"}, {"writer", "writer"}, 
+			{"title", "title"}, {"titles", "title"}, {"name", "name"}, {"names", "name"}, {"library", "library"}, {"librarian", "librarian"}, 
+			{"isbn", "isbn"}, {"year", "year"}, {"years", "year"}, {"publisher", "publisher"}, {"publish", "publish"}, {"color", "color"}, 
+			{"colour", "colour"}, {"car", "car"}, {"automobile", "automobile"}, {"person", "person"}, {"human", "human"}, {"date", "date"}, 
+			{"data", "data"}, {"went", "go"}, {"gone", "go"}, {"element", "element"}, {"elements", "element"}, {"elem", "elem"}};
+	
+	private HashMap<Integer, String[]> tokenLookup;
+	private HashMap<String, String> lemmaLookup;
+	
+	@Before
+	public void setUp() throws IOException {
+		assumeTrue("needs the wordnet dictionary", new File(WordNet.DICT_FOLDER).isDirectory() && new File(WordNet.IC_FILE).isFile());
+		
+		// names of one to three random tokens, with some tokens capitalized as in the token files of mixed case names
+		Random random = new Random(42);
+		tokenLookup = new HashMap<Integer, String[]>();
+		for (int i = 0; i < 60; i++) {
+			String[] tokens = new String[1 + random.nextInt(3)];
+			for (int k = 0; k < tokens.length; k++) {
+				String token = LEMMAS[random.nextInt(LEMMAS.length)][0];
+				tokens[k] = random.nextInt(4) == 0 ? Character.toUpperCase(token.charAt(0)) + token.substring(1) : token;
+			}
+			tokenLookup.put(String.join("", tokens).hashCode() + i, tokens);
+		}
+		lemmaLookup = new HashMap<String, String>();
+		for (String[] lemma : LEMMAS)
+			lemmaLookup.put(lemma[0], lemma[1]);
+		
+		write(new File(folder.getRoot(), "tokens.ser"), tokenLookup);
+		write(new File(folder.getRoot(), "lemma.ser"), lemmaLookup);
+	}
+	
+	private static void write(File file, Object object) throws IOException {
+		try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+			out.writeObject(object);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private HashMap<Pair<Integer, Integer>, Double> read(File file) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+			return (HashMap<Pair<Integer, Integer>, Double>) in.readObject();
+		}
+	}
+	
+	// the synonym lookup table by comparing all the name pairs, as before the token similarities were precomputed
+	private HashMap<Pair<Integer, Integer>, Double> computeAllPairs(NLP nlp, double synonymThreshold) {
+		ArrayList<Integer> keys = new ArrayList<Integer>(tokenLookup.keySet());
+		HashMap<Pair<Integer, Integer>, Double> synonymLookup = new HashMap<Pair<Integer, Integer>, Double>();
+		for (int i = 0; i < keys.size(); i++)
+			for (int j = i; j < keys.size(); j++) {
+				double d = nlp.compareMultiwordWithTokenLookup(keys.get(i), keys.get(j), synonymThreshold, tokenLookup, lemmaLookup);
+				if (d > 0 && d >= synonymThreshold)
+					synonymLookup.put(new Pair<Integer, Integer>(keys.get(i), keys.get(j)), d);
+			}
+		return synonymLookup;
+	}
+	
+	private void assertSameAsAllPairs(double synonymThreshold, String suffix) throws IOException, ClassNotFoundException {
+		NLP nlp = new NLP();
+		HashMap<Pair<Integer, Integer>, Double> expected = computeAllPairs(nlp, synonymThreshold);
+		assertTrue(expected.size() > tokenLookup.size());
+		
+		// small tiles and row blocks, so that the similar token pairs and the candidate names span several of them
+		for (int threads : new int[] {1, 4})
+			for (int tileSize : new int[] {1, 7, 128}) {
+				nlp.SYNONYM_THREADS = threads;
+				nlp.SYNONYM_TILE_SIZE = tileSize;
+				nlp.precomputeSynonymLookupTable(folder.getRoot().getPath(), synonymThreshold);
+				assertEquals("threads " + threads + ", tile size " + tileSize, expected, read(new File(folder.getRoot(), "syn" + suffix + ".ser")));
+			}
+	}
+	
+	@Test
+	public void testTokensPerLemmaLookup() {
+		// the interned tokens are reused for the same lemma lookup, and not for another one
+		HashMap<String, String> otherLemmaLookup = new HashMap<String, String>();
+		otherLemmaLookup.put("went", "went");
+		otherLemmaLookup.put("gone", "gone");
+		NLP nlp = new NLP();
+		assertEquals(0.9, nlp.isSynonymExact("went", "gone", 0.0, lemmaLookup), 0.0);
+		assertEquals(0.9, nlp.isSynonymExact("went", "gone", 0.0, lemmaLookup), 0.0);
+		assertEquals(0.0, nlp.isSynonymExact("went", "gone", 0.0, otherLemmaLookup), 0.0);
+		assertEquals(0.9, nlp.isSynonymExact("went", "gone", 0.0, lemmaLookup), 0.0);
+	}
+	
+	@Test
+	public void testSynonymLookupTableWithoutWordNet() throws IOException, ClassNotFoundException {
+		assertSameAsAllPairs(0.0, "_NOWNET");
+	}
+	
+	@Test
+	public void testSynonymLookupTableWithWordNet() throws IOException, ClassNotFoundException {
+		assertSameAsAllPairs(0.8, "_WNET");
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015-2022 Onder Babur
+ * 
+ * This file is part of SAMOS Model Analytics and Management Framework.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this 
+ * software and associated documentation files (the "Software"), to deal in the Software 
+ * without restriction, including without limitation the rights to use, copy, modify, 
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies
+ *  or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, 
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A 
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT 
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR 
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * 
+ * @author Onder Babur
+ * @version 1.0
+ */
+
+package nl.tue.set.samos.nlp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.mit.jwi.item.ISynset;
+import edu.mit.jwi.item.POS;
+import edu.mit.jwi.item.Pointer;
+
+public class NounHierarchyTest {
+	
+	// words with several senses, instances (paris, einstein) and words that are not wordnet nouns
+	private static final String[] WORDS = {"book", "author", "writer", "title", "name", "library", "car", "automobile", "person", "human", 
+			"dog", "cat", "entity", "element", "class", "package", "attribute", "paris", "einstein", "go", "qwertyuiop"};
+	
+	private WordNet wordNet;
+	private NounHierarchy nouns;
+	
+	@Before
+	public void setUp() {
+		assumeTrue("needs the wordnet dictionary", new File(WordNet.DICT_FOLDER).isDirectory() && new File(WordNet.IC_FILE).isFile());
+		wordNet = WordNet.getInstance();
+		nouns = wordNet.getNounHierarchy();
+		assertNotNull(nouns);
+	}
+	
+	@Test
+	public void testLCSICSameAsDictionary() {
+		ArrayList<ISynset> synsets = new ArrayList<ISynset>();
+		for (Iterator<ISynset> it = wordNet.dict.getSynsetIterator(POS.NOUN); it.hasNext(); )
+			synsets.add(it.next());
+		assertEquals(synsets.size(), nouns.size());
+		
+		Random random = new Random(5);
+		for (int i = 0; i < 2000; i++) {
+			ISynset synset1 = synsets.get(random.nextInt(synsets.size()));
+			// also pairs of a synset and one of its hypernyms, whose subsumer is the hypernym itself
+			ISynset synset2 = i % 4 == 0 && !synset1.getRelatedSynsets(Pointer.HYPERNYM).isEmpty() 
+					? wordNet.dict.getSynset(synset1.getRelatedSynsets(Pointer.HYPERNYM).get(0)) : synsets.get(random.nextInt(synsets.size()));
+			if (synset2.getPOS() != POS.NOUN)
+				continue;
+			int id1 = nouns.getId(synset1.getOffset()), id2 = nouns.getId(synset2.getOffset());
+			assertEquals(wordNet.icfinder.getIC(synset1.getOffset(), "n"), nouns.getIC(id1), 0.0);
+			
+			// the dictionary returns no subsumer if the synsets do not share a root, which has no information content
+			ISynset lcs = wordNet.lin.getLCS(synset1, synset2, "n");
+			double expected = lcs == null ? 0.0 : wordNet.icfinder.getIC(lcs.getOffset(), "n");
+			assertEquals(synset1 + " " + synset2, expected, nouns.getLCSIC(id1, id2), 0.0);
+			assertEquals(expected, nouns.getLCSIC(id2, id1), 0.0);
+		}
+	}
+	
+	@Test
+	public void testLinSameAsDictionary() {
+		Lin dictionaryLin = new Lin(wordNet.dict, wordNet.icfinder);
+		Lin hierarchyLin = new Lin(wordNet.dict, wordNet.icfinder, nouns);
+		// twice, the second time with the senses of the words cached
+		for (int pass = 0; pass < 2; pass++)
+			for (String word1 : WORDS)
+				for (String word2 : WORDS)
+					for (int sense1 = 1; sense1 <= 3; sense1++)
+						for (int sense2 = 1; sense2 <= 3; sense2++)
+							assertEquals(word1 + "#" + sense1 + " " + word2 + "#" + sense2, 
+									dictionaryLin.lin(word1, sense1, word2, sense2, "n"), hierarchyLin.lin(word1, sense1, word2, sense2, "n"), 1e-12);
+	}
+	
+	@Test
+	public void testUnknownOffset() {
+		assertEquals(-1, nouns.getId(-1));
+		assertEquals(-1, nouns.getId(Integer.MAX_VALUE));
+	}
+}